@@ -0,0 +1,113 @@
+package plc.project;
+
+/**
+ * Decides whether an analyzed script may run, before it starts, from the
+ * {@link CostModel} estimate of its cost.
+ *
+ * The cost is evaluated assuming every loop runs {@link #getAssumedIterations()}
+ * times. Scripts within the budget are admitted, scripts within
+ * {@link #getDeprioritizeFactor()} times the budget are admitted at a lower
+ * priority, and anything more expensive is rejected. Recursive scripts have
+ * no static bound on their depth, so they are deprioritized even when within
+ * the budget, or rejected if {@link #setRejectRecursion(boolean)} is set.
+ */
+public final class AdmissionControl {
+
+    public enum Decision {
+        ADMIT,
+        DEPRIORITIZE,
+        REJECT
+    }
+
+    public static final long DEFAULT_ITERATIONS = 1000;
+    public static final long DEFAULT_DEPRIORITIZE_FACTOR = 10;
+
+    private final long budget;
+    private long assumedIterations = DEFAULT_ITERATIONS;
+    private long deprioritizeFactor = DEFAULT_DEPRIORITIZE_FACTOR;
+    private boolean rejectRecursion = false;
+
+    /**
+     * Creates an admission control admitting scripts costing at most the
+     * given number of units (nodes evaluated, see {@link CostModel}).
+     */
+    public AdmissionControl(long budget) {
+
+        if (budget < 0) {
+            throw new IllegalArgumentException("The budget must not be negative.");
+        }
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getAssumedIterations() {
+        return assumedIterations;
+    }
+
+    public void setAssumedIterations(long assumedIterations) {
+
+        if (assumedIterations < 0) {
+            throw new IllegalArgumentException("The assumed iterations must not be negative.");
+        }
+        this.assumedIterations = assumedIterations;
+    }
+
+    public long getDeprioritizeFactor() {
+        return deprioritizeFactor;
+    }
+
+    public void setDeprioritizeFactor(long deprioritizeFactor) {
+
+        if (deprioritizeFactor < 1) {
+            throw new IllegalArgumentException("The deprioritize factor must be at least 1.");
+        }
+        this.deprioritizeFactor = deprioritizeFactor;
+    }
+
+    public boolean isRejectRecursion() {
+        return rejectRecursion;
+    }
+
+    public void setRejectRecursion(boolean rejectRecursion) {
+        this.rejectRecursion = rejectRecursion;
+    }
+
+    /**
+     * Decides on a source that has already been resolved by the
+     * {@link Analyzer}.
+     */
+    public Decision decide(Ast.Source source) {
+        return decide(CostModel.estimate(source).getCost());
+    }
+
+    public Decision decide(CostModel.Cost cost) {
+
+        long estimate = cost.evaluate(assumedIterations);
+        long limit = budget > Long.MAX_VALUE / deprioritizeFactor ? Long.MAX_VALUE : budget * deprioritizeFactor;
+        if (estimate > limit || cost.isRecursive() && rejectRecursion) {
+            return Decision.REJECT;
+        } else if (estimate > budget || cost.isRecursive()) {
+            return Decision.DEPRIORITIZE;
+        }
+        return Decision.ADMIT;
+    }
+
+    /**
+     * Throws if a source would be rejected, returning whether it is admitted
+     * at full or lower priority otherwise.
+     */
+    public Decision admit(Ast.Source source) {
+
+        CostModel.Cost cost = CostModel.estimate(source).getCost();
+        Decision decision = decide(cost);
+        if (decision == Decision.REJECT) {
+            throw new RuntimeException("The script was rejected: its estimated cost " + cost + " exceeds the budget of "
+                    + budget + " at " + assumedIterations + " iterations per loop.");
+        }
+        return decision;
+    }
+
+}
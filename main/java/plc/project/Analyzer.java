@@ -4,8 +4,16 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * See the specification for information about what the different visit
@@ -13,12 +21,105 @@ import java.util.Objects;
  */
 public final class Analyzer implements Ast.Visitor<Void> {
 
+    /**
+     * Sources with fewer methods than this are analyzed on the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * Number of method bodies analyzed by a single fork-join leaf task.
+     */
+    private static final int BODIES_PER_TASK = 64;
+
     public Scope scope;
     private Ast.Method method ;
 
+    //slot resolution state: fields live in the global frame, everything else in the method frame
+    private final Map<String, Integer> globals;
+    //functions of the methods in the source, as opposed to builtins
+    private final Set<Environment.Function> methods;
+    //slots of the CONST fields
+    private final Set<Integer> constants;
+    private final List<Map<String, Integer>> blocks = new ArrayList<>();
+    private int frameSize = 0;
+    private boolean inferConstants = false;
+    private boolean demandDriven = false;
+    private boolean lint = false;
+    private List<PerformanceLinter.Warning> warnings = Collections.emptyList();
+
+    //state kept by the demand-driven mode to analyze deferred methods later
+    private Ast.Source source = null;
+    private Scope signatures = null;
+    private final Set<Ast.Method> deferred = Collections.newSetFromMap(new IdentityHashMap<>());
+
     public Analyzer(Scope parent) {
         scope = new Scope(parent);
         scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        globals = new HashMap<>();
+        methods = Collections.newSetFromMap(new IdentityHashMap<>());
+        constants = new HashSet<>();
+    }
+
+    /**
+     * Creates an analyzer for method bodies only, sharing the (already
+     * populated) signature scope, field slots and constants of the source
+     * analyzer.
+     */
+    private Analyzer(Scope signatures, Map<String, Integer> globals, Set<Environment.Function> methods, Set<Integer> constants) {
+        this.scope = signatures;
+        this.globals = globals;
+        this.methods = methods;
+        this.constants = constants;
+    }
+
+    /**
+     * Sets whether LET fields with a value that the source never assigns are
+     * marked as effectively constant (see
+     * {@link Ast.Field#isEffectivelyConstant()}), so they are propagated like
+     * CONST fields by {@link ConstantPropagation}.
+     */
+    public void setInferConstants(boolean inferConstants) {
+        this.inferConstants = inferConstants;
+    }
+
+    /**
+     * Sets whether only the bodies of {@code main} and the methods it (or a
+     * field initializer) can transitively call are analyzed. Every signature
+     * is still declared and checked, but the bodies of the other methods are
+     * deferred (see {@link #getDeferred()}) until
+     * {@link #analyzeDeferred(Ast.Method)} is called for one of them.
+     */
+    public void setDemandDriven(boolean demandDriven) {
+        this.demandDriven = demandDriven;
+    }
+
+    /**
+     * Sets whether the source is checked by the {@link PerformanceLinter}
+     * once analyzed, with the warnings available from {@link #getWarnings()}.
+     */
+    public void setLint(boolean lint) {
+        this.lint = lint;
+    }
+
+    public List<PerformanceLinter.Warning> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Returns the methods whose bodies the demand-driven mode has not
+     * analyzed, in source order.
+     */
+    public List<Ast.Method> getDeferred() {
+
+        List<Ast.Method> methods = new ArrayList<>();
+        if (source != null) {
+            for (Ast.Method method : source.getMethods()) {
+                if (deferred.contains(method)) {
+                    methods.add(method);
+                }
+            }
+        }
+        return Collections.unmodifiableList(methods);
     }
 
     public Scope getScope() {
@@ -33,35 +134,55 @@ public final class Analyzer implements Ast.Visitor<Void> {
             for (Ast.Field field : ast.getFields()) {
                 visit(field);
             }
-        }
-        finally {
-            scope = scope.getParent();
-        }
-        try {
-            scope = new Scope(scope);
+            //phase one: every signature is defined before any body is analyzed, after which the scope is read-only
             for (Ast.Method method : ast.getMethods()) {
-                visit(method);
+                declareSignature(method);
+            }
+            //phase two: bodies only read the signature scope, so they can be analyzed independently
+            deferred.clear();
+            if (demandDriven) {
+                source = ast;
+                signatures = scope;
+                deferred.addAll(ast.getMethods());
+                analyzeOnDemand(ast.getFields(), Collections.singletonList(lookupMethod(ast)));
+            } else {
+                analyzeBodies(ast.getMethods());
+            }
+
+            requireAssignable(Environment.Type.INTEGER, scope.lookupFunction("main", 0).getReturnType());
+            if (inferConstants) {
+                inferConstants(ast);
+            }
+            PurityAnalyzer.analyze(ast);
+            NullabilityAnalyzer.analyze(ast);
+            if (lint) {
+                warnings = PerformanceLinter.lint(ast);
             }
         }
         finally {
             scope = scope.getParent();
         }
 
-        scope.lookupFunction("main", 0);
-        requireAssignable(Environment.Type.INTEGER, scope.lookupFunction("main", 0).getReturnType());
-
         return null;
     } //FINISHED
 
     @Override
     public Void visit(Ast.Field ast) {
 
+        Environment.Type type = TypeLattice.forName(ast.getTypeName());
         if (ast.getValue().isPresent()) {
             visit(ast.getValue().get());
-            requireAssignable(ast.getVariable().getValue().getField(ast.getName()).getType(), ast.getValue().get().getType());
+            requireAssignable(type, ast.getValue().get().getType());
+        } else if (ast.isConstant()) {
+            throw new RuntimeException("The constant field " + ast.getName() + " must have a value.");
         }
 
-        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), ast.getVariable().getType(), Environment.NIL));
+        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), type, Environment.NIL));
+        ast.setSlot(globals.size());
+        globals.put(ast.getName(), ast.getSlot());
+        if (ast.isConstant()) {
+            constants.add(ast.getSlot());
+        }
 
         return null;
     } //FINISHED
@@ -69,23 +190,236 @@ public final class Analyzer implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Method ast) {
 
+        declareSignature(ast);
+        analyzeBody(ast);
+
+        return null;
+    }
+
+    /**
+     * Defines the function for a method in the current scope without looking
+     * at its body.
+     */
+    private void declareSignature(Ast.Method ast) {
+
         List<Environment.Type> parameterTypes = new ArrayList<>();
         for (int i = 0; i < ast.getParameterTypeNames().size(); i++) {
-            parameterTypes.add(Environment.getType(ast.getParameterTypeNames().get(i)));
+            parameterTypes.add(TypeLattice.forName(ast.getParameterTypeNames().get(i)));
         }
         Environment.Type returnType = Environment.Type.NIL;
         if (ast.getReturnTypeName().isPresent())
-            returnType = Environment.getType(ast.getReturnTypeName().get());
+            returnType = TypeLattice.forName(ast.getReturnTypeName().get());
 
         scope.defineFunction(ast.getName(), ast.getName(), parameterTypes, returnType, args -> Environment.NIL);
+        ast.setFunction(scope.lookupFunction(ast.getName(), ast.getParameters().size()));
+        methods.add(ast.getFunction());
+    }
+
+    /**
+     * Analyzes the body of a method whose signature has already been declared.
+     */
+    private void analyzeBody(Ast.Method ast) {
 
-        for (int i = 0; i < ast.getStatements().size(); i++) {
-            visit(ast.getStatements().get(i));
+        List<Environment.Type> parameterTypes = ast.getFunction().getParameterTypes();
+        method = ast;
+
+        frameSize = 0;
+        blocks.clear();
+        try {
+            scope = new Scope(scope);
+            beginBlock();
+            for (int i = 0; i < ast.getParameters().size(); i++) {
+                scope.defineVariable(ast.getParameters().get(i), ast.getParameters().get(i), parameterTypes.get(i), Environment.NIL);
+                declareSlot(ast.getParameters().get(i));
+            }
+            for (int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
         }
+        finally {
+            endBlock();
+            scope = scope.getParent();
+        }
+        ast.setFrameSize(frameSize);
+        RangeAnalyzer.analyze(ast);
+        InductionAnalyzer.analyze(ast);
+    }
 
-        ast.setFunction(scope.lookupFunction(ast.getName(), ast.getParameters().size()));
+    private void analyzeBodies(List<Ast.Method> bodies) {
+
+        if (bodies.size() < PARALLEL_THRESHOLD) {
+            for (Ast.Method method : bodies) {
+                analyzeBody(method);
+            }
+        } else {
+            analyzeBodiesInParallel(bodies);
+        }
+    }
+
+    /**
+     * Analyzes the roots and then, wave by wave, the deferred methods called
+     * by the bodies analyzed in the previous wave, leaving the methods never
+     * reached deferred.
+     */
+    private void analyzeOnDemand(List<Ast.Field> fields, List<Ast.Method> roots) {
+
+        Map<Environment.Function, Ast.Method> declared = new IdentityHashMap<>();
+        for (Ast.Method method : deferred) {
+            declared.put(method.getFunction(), method);
+        }
+        List<Ast.Method> wave = new ArrayList<>(roots);
+        for (Ast.Field field : fields) {
+            wave.addAll(callees(field, declared));
+        }
+        while (!wave.isEmpty()) {
+            for (Ast.Method method : wave) {
+                declared.remove(method.getFunction());
+                deferred.remove(method);
+            }
+            analyzeBodies(wave);
+            List<Ast.Method> next = new ArrayList<>();
+            Set<Ast.Method> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Ast.Method method : wave) {
+                for (Ast.Method callee : callees(method, declared)) {
+                    if (seen.add(callee)) {
+                        next.add(callee);
+                    }
+                }
+            }
+            wave = next;
+        }
+    }
+
+    /**
+     * Returns the deferred methods called from an analyzed node.
+     */
+    private static List<Ast.Method> callees(Ast ast, Map<Environment.Function, Ast.Method> declared) {
+
+        List<Ast.Method> callees = new ArrayList<>();
+        Set<Ast.Method> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Expr.Function ast) {
+                Ast.Method callee = ast.getReceiver().isPresent() ? null : declared.get(ast.getFunction());
+                if (callee != null && seen.add(callee)) {
+                    callees.add(callee);
+                }
+                return super.visit(ast);
+            }
+        }.visit(ast);
+        return callees;
+    }
+
+    private static Ast.Method lookupMethod(Ast.Source ast) {
+
+        for (Ast.Method method : ast.getMethods()) {
+            if (method.getName().equals("main") && method.getParameters().isEmpty()) {
+                return method;
+            }
+        }
+        throw new RuntimeException("The source does not define main/0.");
+    }
+
+    /**
+     * Analyzes the body of a method deferred by the demand-driven mode once it
+     * is referenced, along with the deferred methods it can call, and then
+     * updates the whole-source annotations of the source.
+     */
+    public void analyzeDeferred(Ast.Method method) {
+
+        if (!deferred.contains(method)) {
+            throw new RuntimeException("The method " + method.getName() + " is not deferred.");
+        }
+        Scope enclosing = scope;
+        try {
+            scope = signatures;
+            analyzeOnDemand(Collections.emptyList(), Collections.singletonList(method));
+        } finally {
+            scope = enclosing;
+        }
+        if (inferConstants) {
+            inferConstants(source);
+        }
+        PurityAnalyzer.analyze(source);
+        NullabilityAnalyzer.analyze(source);
+    }
+
+    /**
+     * Marks the LET fields with a value that no method assigns as
+     * effectively constant. The bodies still deferred by the demand-driven
+     * mode are not resolved, so any assignment there to a name without a
+     * receiver is conservatively taken to write the field of that name; the
+     * marks are recomputed as deferred bodies are analyzed.
+     */
+    private static void inferConstants(Ast.Source ast) {
+
+        Set<Integer> assigned = new HashSet<>();
+        Set<String> assignedNames = new HashSet<>();
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Stmt.Assignment ast) {
+                Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+                if (access.getDepth() == Ast.Expr.Access.GLOBAL) {
+                    assigned.add(access.getSlot());
+                } else if (access.getDepth() < 0 && !access.getReceiver().isPresent()) {
+                    assignedNames.add(access.getName());
+                }
+                return super.visit(ast);
+            }
+        }.visit(ast);
+        for (Ast.Field field : ast.getFields()) {
+            field.setEffectivelyConstant(field.getValue().isPresent() && !assigned.contains(field.getSlot())
+                    && !assignedNames.contains(field.getName()));
+        }
+    }
+
+    /**
+     * Analyzes method bodies on the common fork-join pool. Each leaf task uses
+     * its own analyzer (and therefore its own scopes), and errors are collected
+     * per method so the one reported is always the first in source order.
+     */
+    private void analyzeBodiesInParallel(List<Ast.Method> bodies) {
+
+        RuntimeException[] errors = new RuntimeException[bodies.size()];
+        ForkJoinPool.commonPool().invoke(new BodyTask(bodies, errors, 0, bodies.size()));
+        for (RuntimeException error : errors) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private final class BodyTask extends RecursiveAction {
+
+        private final List<Ast.Method> bodies;
+        private final RuntimeException[] errors;
+        private final int start;
+        private final int end;
+
+        private BodyTask(List<Ast.Method> bodies, RuntimeException[] errors, int start, int end) {
+            this.bodies = bodies;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BODIES_PER_TASK) {
+                Analyzer analyzer = new Analyzer(scope, globals, methods, constants);
+                for (int i = start; i < end; i++) {
+                    try {
+                        analyzer.analyzeBody(bodies.get(i));
+                    } catch (RuntimeException e) {
+                        errors[i] = e;
+                    }
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new BodyTask(bodies, errors, start, middle), new BodyTask(bodies, errors, middle, end));
+            }
+        }
 
-        return null;
     }
 
     @Override
@@ -102,7 +436,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         Environment.Type type;
         if (ast.getTypeName().isPresent()) {
-            type = Environment.getType(ast.getTypeName().get());
+            type = TypeLattice.forName(ast.getTypeName().get());
         } else if (ast.getValue().isPresent()) {
             visit(ast.getValue().get());
             type = ast.getValue().get().getType();
@@ -112,6 +446,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         scope.defineVariable(ast.getName(),ast.getName(), type, Environment.NIL);
         ast.setVariable(scope.lookupVariable(ast.getName()));
+        ast.setSlot(declareSlot(ast.getName()));
 
         return null;
     } //FINISHED
@@ -124,6 +459,10 @@ public final class Analyzer implements Ast.Visitor<Void> {
         if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
             throw new RuntimeException("The expression is not an Ast.Expr.Function");
         }
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        if (access.getDepth() == Ast.Expr.Access.GLOBAL && constants.contains(access.getSlot())) {
+            throw new RuntimeException("The constant field " + access.getName() + " cannot be assigned.");
+        }
         requireAssignable(ast.getReceiver().getType(), ast.getValue().getType());
 
         return null;
@@ -141,21 +480,25 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         try {
             scope = new Scope(scope);
+            beginBlock();
             for (Ast.Stmt stmt : ast.getThenStatements()) {
                 visit(stmt);
             }
         }
         finally {
+            endBlock();
             scope = scope.getParent();
         }
 
         try {
             scope = new Scope(scope);
+            beginBlock();
             for (Ast.Stmt stmt : ast.getElseStatements()) {
                 visit(stmt);
             }
         }
         finally {
+            endBlock();
             scope = scope.getParent();
         }
 
@@ -174,12 +517,15 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         try {
             scope = new Scope(scope);
+            beginBlock();
+            scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+            ast.setSlot(declareSlot(ast.getName()));
             for (Ast.Stmt stmt : ast.getStatements()) {
                 visit(stmt);
             }
         }
         finally {
-            scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+            endBlock();
             scope = scope.getParent();
         }
 
@@ -193,11 +539,13 @@ public final class Analyzer implements Ast.Visitor<Void> {
         requireAssignable(Environment.Type.BOOLEAN, ast.getCondition().getType());
         try {
             scope = new Scope(scope);
+            beginBlock();
             for (Ast.Stmt stmt : ast.getStatements()) {
                 visit(stmt);
             }
         }
         finally {
+            endBlock();
             scope = scope.getParent();
         }
         return null;
@@ -208,6 +556,12 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         visit(ast.getValue());
         requireAssignable(method.getFunction().getReturnType(), ast.getValue().getType());
+
+        //a call to a method of the source in a RETURN can replace the current activation
+        if (ast.getValue() instanceof Ast.Expr.Function) {
+            Ast.Expr.Function call = (Ast.Expr.Function) ast.getValue();
+            ast.setTailCall(!call.getReceiver().isPresent() && methods.contains(call.getFunction()));
+        }
         return null;
     } //FINISHED
 
@@ -262,120 +616,11 @@ public final class Analyzer implements Ast.Visitor<Void> {
         visit(ast.getLeft());
         visit(ast.getRight());
 
-        switch (ast.getOperator()) {
-
-            case "AND": //check if both left and right operands are boolean and if so, set ast type to boolean
-
-                requireAssignable(Environment.Type.BOOLEAN, ast.getLeft().getType());
-                requireAssignable(Environment.Type.BOOLEAN, ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "OR":
-
-                requireAssignable(Environment.Type.BOOLEAN, ast.getLeft().getType());
-                requireAssignable(Environment.Type.BOOLEAN, ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "<": //check if left hand operand is a Comparable
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "<=":
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case ">":
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case ">=":
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "==":
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "!=":
-
-                requireAssignable(Environment.Type.COMPARABLE, ast.getLeft().getType());
-                requireAssignable(Environment.Type.COMPARABLE, ast.getRight().getType());
-                requireAssignable(ast.getLeft().getType(), ast.getRight().getType());
-
-                ast.setType(Environment.Type.BOOLEAN);
-
-            case "+":
-
-                if (ast.getLeft().getType().getName().equals(Environment.Type.STRING.getName()) || ast.getRight().getType().getName().equals(Environment.Type.STRING.getName()))
-                    ast.setType(Environment.Type.STRING);
-
-                try {
-                    requireAssignable(Environment.Type.INTEGER, ast.getLeft().getType());
-                    requireAssignable(Environment.Type.INTEGER, ast.getRight().getType());
-                    ast.setType(Environment.Type.INTEGER);
-                } catch (RuntimeException e) { }
-
-                try {
-                    requireAssignable(Environment.Type.DECIMAL, ast.getLeft().getType());
-                    requireAssignable(Environment.Type.DECIMAL, ast.getRight().getType());
-                    ast.setType(Environment.Type.DECIMAL);
-                } catch (RuntimeException e) { }
-
-            case "-":
-
-                if (ast.getLeft().getType().getName().equals(Environment.Type.INTEGER.getName())) {
-                    requireAssignable(Environment.Type.INTEGER, ast.getRight().getType());
-                    ast.setType(Environment.Type.INTEGER);
-                }
-                else if (ast.getLeft().getType().getName().equals(Environment.Type.DECIMAL.getName())) {
-                    requireAssignable(Environment.Type.DECIMAL, ast.getRight().getType());
-                    ast.setType(Environment.Type.DECIMAL);
-                }
-
-            case "*":
-
-                if (ast.getLeft().getType().getName().equals(Environment.Type.INTEGER.getName())) {
-                    requireAssignable(Environment.Type.INTEGER, ast.getRight().getType());
-                    ast.setType(Environment.Type.INTEGER);
-                }
-                else if (ast.getLeft().getType().getName().equals(Environment.Type.DECIMAL.getName())) {
-                    requireAssignable(Environment.Type.DECIMAL, ast.getRight().getType());
-                    ast.setType(Environment.Type.DECIMAL);
-                }
-
-            case "/":
-
-                if (ast.getLeft().getType().getName().equals(Environment.Type.INTEGER.getName())) {
-                    requireAssignable(Environment.Type.INTEGER, ast.getRight().getType());
-                    ast.setType(Environment.Type.INTEGER);
-                }
-                else if (ast.getLeft().getType().getName().equals(Environment.Type.DECIMAL.getName())) {
-                    requireAssignable(Environment.Type.DECIMAL, ast.getRight().getType());
-                    ast.setType(Environment.Type.DECIMAL);
-                }
+        Environment.Type type = TypeLattice.binary(ast.getOperator(), ast.getLeft().getType(), ast.getRight().getType());
+        if (type == null) {
+            throw new RuntimeException("The operator " + ast.getOperator() + " is not defined for " + ast.getLeft().getType().getName() + " and " + ast.getRight().getType().getName() + ".");
         }
+        ast.setType(type);
         return null;
     } //FINISHED
 
@@ -388,6 +633,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
         }
         else {
             ast.setVariable(getScope().lookupVariable(ast.getName()));
+            resolveSlot(ast);
         }
 
         return null;
@@ -415,22 +661,45 @@ public final class Analyzer implements Ast.Visitor<Void> {
         return null;
     } //FINISHED
 
-    public static void requireAssignable(Environment.Type target, Environment.Type type) {
+    /**
+     * Opens a new lexical block for slot resolution. Blocks never reuse the
+     * slots of their siblings, so a method's frame size is simply the total
+     * number of locals declared within it.
+     */
+    private void beginBlock() {
+        blocks.add(new HashMap<>());
+    }
+
+    private void endBlock() {
+        blocks.remove(blocks.size() - 1);
+    }
+
+    private int declareSlot(String name) {
+        blocks.get(blocks.size() - 1).put(name, frameSize);
+        return frameSize++;
+    }
 
-        //if statement with all the situations that would cause an error to be thrown
-        if (target.getName().equals(Environment.Type.COMPARABLE.getName())) {
-            if (type.getName().equals(Environment.Type.ANY.getName()) ||
-                    type.getName().equals(Environment.Type.NIL.getName()) ||
-                    type.getName().equals(Environment.Type.INTEGER_ITERABLE.getName()))
-            {
-                throw new RuntimeException("Comparable assignment not of correct type");
+    /**
+     * Resolves a receiver-less access to a (depth, slot) pair, searching the
+     * innermost block first and falling back to the fields of the source.
+     */
+    private void resolveSlot(Ast.Expr.Access ast) {
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Integer slot = blocks.get(i).get(ast.getName());
+            if (slot != null) {
+                ast.setSlot(Ast.Expr.Access.LOCAL, slot);
+                return;
             }
         }
+        if (globals.containsKey(ast.getName())) {
+            ast.setSlot(Ast.Expr.Access.GLOBAL, globals.get(ast.getName()));
+        }
+    }
+
+    public static void requireAssignable(Environment.Type target, Environment.Type type) {
 
-        //if the target is not any (meaning it could fail) check if they're not the same
-        else if (!target.getName().equals(Environment.Type.ANY.getName())) {
-            if (!target.getName().equals(type.getName()))
-                throw new RuntimeException("Assignment not of same type");
+        if (!TypeLattice.isAssignable(target, type)) {
+            throw new RuntimeException("The type " + type.getName() + " is not assignable to " + target.getName() + ".");
         }
     } //FINISHED
 }
@@ -9,6 +9,20 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    private int index = -1;
+
+    /**
+     * Returns the index of the first token of this node, as set by the
+     * {@link Parser} for methods, statements and accesses and calls, or -1.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Field> fields;
@@ -49,10 +63,16 @@ public abstract class Ast {
     public static final class Field extends Ast {
 
         private final String name;
+        private final String typeName;
+        private final boolean constant;
         private final Optional<Expr> value;
+        private int slot = -1;
+        private boolean effectivelyConstant = false;
 
-        public Field(String name, Optional<Expr> value) {
+        public Field(String name, String typeName, boolean constant, Optional<Expr> value) {
             this.name = name;
+            this.typeName = typeName;
+            this.constant = constant;
             this.value = value;
         }
 
@@ -60,14 +80,44 @@ public abstract class Ast {
             return name;
         }
 
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public boolean isConstant() {
+            return constant;
+        }
+
+        /**
+         * Returns true if this field is {@code CONST}, or if the
+         * {@link Analyzer} inferred that it is never assigned.
+         */
+        public boolean isEffectivelyConstant() {
+            return constant || effectivelyConstant;
+        }
+
+        public void setEffectivelyConstant(boolean effectivelyConstant) {
+            this.effectivelyConstant = effectivelyConstant;
+        }
+
         public Optional<Expr> getValue() {
             return value;
         }
 
+        public int getSlot() {
+            return slot;
+        }
+
+        public void setSlot(int slot) {
+            this.slot = slot;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Field &&
                     name.equals(((Field) obj).name) &&
+                    typeName.equals(((Field) obj).typeName) &&
+                    constant == ((Field) obj).constant &&
                     value.equals(((Field) obj).value);
         }
 
@@ -75,6 +125,8 @@ public abstract class Ast {
         public String toString() {
             return "Ast.Field{" +
                     "name='" + name + '\'' +
+                    ", typeName='" + typeName + '\'' +
+                    ", constant=" + constant +
                     ", value=" + value +
                     '}';
         }
@@ -86,6 +138,9 @@ public abstract class Ast {
         private final String name;
         private final List<String> parameters;
         private final List<Stmt> statements;
+        private int frameSize = -1;
+        private boolean unboxed = false;
+        private boolean pure = false;
 
         public Method(String name, List<String> parameters, List<Stmt> statements) {
             this.name = name;
@@ -105,6 +160,42 @@ public abstract class Ast {
             return statements;
         }
 
+        /**
+         * Returns the number of local slots needed by this method, or -1 if the
+         * method has not been resolved by the {@link Analyzer}.
+         */
+        public int getFrameSize() {
+            return frameSize;
+        }
+
+        public void setFrameSize(int frameSize) {
+            this.frameSize = frameSize;
+        }
+
+        /**
+         * Returns true if the {@link RangeAnalyzer} found locals in this method
+         * that can be kept unboxed.
+         */
+        public boolean isUnboxed() {
+            return unboxed;
+        }
+
+        public void setUnboxed(boolean unboxed) {
+            this.unboxed = unboxed;
+        }
+
+        /**
+         * Returns true if the {@link PurityAnalyzer} found this method's result
+         * to depend only on its arguments.
+         */
+        public boolean isPure() {
+            return pure;
+        }
+
+        public void setPure(boolean pure) {
+            this.pure = pure;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Method &&
@@ -126,6 +217,20 @@ public abstract class Ast {
 
     public static abstract class Stmt extends Ast {
 
+        private Superinstructions.Pattern fused = null;
+
+        /**
+         * Returns the pattern this statement is executed as a single step of,
+         * as marked by {@link Superinstructions}, or null.
+         */
+        public Superinstructions.Pattern getFused() {
+            return fused;
+        }
+
+        public void setFused(Superinstructions.Pattern fused) {
+            this.fused = fused;
+        }
+
         public static final class Expression extends Stmt {
 
             private final Expr expression;
@@ -157,6 +262,9 @@ public abstract class Ast {
 
             private String name;
             private Optional<Expr> value;
+            private int slot = -1;
+            private RangeAnalyzer.Representation representation = RangeAnalyzer.Representation.BOXED;
+            private boolean nonNil = false;
 
             public Declaration(String name, Optional<Expr> value) {
                 this.name = name;
@@ -171,6 +279,34 @@ public abstract class Ast {
                 return value;
             }
 
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int slot) {
+                this.slot = slot;
+            }
+
+            public RangeAnalyzer.Representation getRepresentation() {
+                return representation;
+            }
+
+            public void setRepresentation(RangeAnalyzer.Representation representation) {
+                this.representation = representation;
+            }
+
+            /**
+             * Returns true if the {@link NullabilityAnalyzer} proved that the
+             * declared local never holds {@code NIL}.
+             */
+            public boolean isNonNil() {
+                return nonNil;
+            }
+
+            public void setNonNil(boolean nonNil) {
+                this.nonNil = nonNil;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
@@ -272,6 +408,7 @@ public abstract class Ast {
             private final String name;
             private final Expr value;
             private final List<Stmt> statements;
+            private int slot = -1;
 
             public For(String name, Expr value, List<Stmt> statements) {
                 this.name = name;
@@ -291,6 +428,14 @@ public abstract class Ast {
                 return statements;
             }
 
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int slot) {
+                this.slot = slot;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof For &&
@@ -314,6 +459,7 @@ public abstract class Ast {
 
             private final Expr condition;
             private final List<Stmt> statements;
+            private InductionAnalyzer.CountedLoop countedLoop = null;
 
             public While(Expr condition, List<Stmt> statements) {
                 this.condition = condition;
@@ -328,6 +474,18 @@ public abstract class Ast {
                 return statements;
             }
 
+            /**
+             * Returns the counted form of this loop found by the
+             * {@link InductionAnalyzer}, or null if it is not one.
+             */
+            public InductionAnalyzer.CountedLoop getCountedLoop() {
+                return countedLoop;
+            }
+
+            public void setCountedLoop(InductionAnalyzer.CountedLoop countedLoop) {
+                this.countedLoop = countedLoop;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
@@ -348,6 +506,7 @@ public abstract class Ast {
         public static final class Return extends Stmt {
 
             private final Expr value;
+            private boolean tailCall = false;
 
             public Return(Expr value) {
                 this.value = value;
@@ -357,6 +516,18 @@ public abstract class Ast {
                 return value;
             }
 
+            /**
+             * Returns true if the value is a call to a method of the source,
+             * which the {@link Interpreter} can run without growing the stack.
+             */
+            public boolean isTailCall() {
+                return tailCall;
+            }
+
+            public void setTailCall(boolean tailCall) {
+                this.tailCall = tailCall;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -376,6 +547,29 @@ public abstract class Ast {
 
     public static abstract class Expr extends Ast {
 
+        private RangeAnalyzer.Representation representation = RangeAnalyzer.Representation.BOXED;
+        private boolean nonNil = false;
+
+        public RangeAnalyzer.Representation getRepresentation() {
+            return representation;
+        }
+
+        public void setRepresentation(RangeAnalyzer.Representation representation) {
+            this.representation = representation;
+        }
+
+        /**
+         * Returns true if the {@link NullabilityAnalyzer} proved that this
+         * expression never evaluates to {@code NIL}.
+         */
+        public boolean isNonNil() {
+            return nonNil;
+        }
+
+        public void setNonNil(boolean nonNil) {
+            this.nonNil = nonNil;
+        }
+
         public static final class Literal extends Expr {
 
             private final Object literal;
@@ -437,17 +631,26 @@ public abstract class Ast {
             private final String operator;
             private final Expr left;
             private final Expr right;
+            private final Operator code;
 
             public Binary(String operator, Expr left, Expr right) {
                 this.operator = operator;
                 this.left = left;
                 this.right = right;
+                this.code = Operator.of(operator);
             }
 
             public String getOperator() {
                 return operator;
             }
 
+            /**
+             * Returns the operator resolved from its text, or null if unknown.
+             */
+            public Operator getOperatorCode() {
+                return code;
+            }
+
             public Expr getLeft() {
                 return left;
             }
@@ -477,8 +680,13 @@ public abstract class Ast {
 
         public static final class Access extends Expr {
 
+            public static final int LOCAL = 0;
+            public static final int GLOBAL = 1;
+
             private final Optional<Expr> receiver;
             private final String name;
+            private int depth = -1;
+            private int slot = -1;
 
             public Access(Optional<Expr> receiver, String name) {
                 this.receiver = receiver;
@@ -493,6 +701,24 @@ public abstract class Ast {
                 return name;
             }
 
+            /**
+             * Returns {@link #LOCAL} if this access was resolved to a slot in the
+             * enclosing method's frame, {@link #GLOBAL} if it was resolved to a
+             * field, or -1 if it is unresolved (or has a receiver).
+             */
+            public int getDepth() {
+                return depth;
+            }
+
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int depth, int slot) {
+                this.depth = depth;
+                this.slot = slot;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
@@ -515,6 +741,7 @@ public abstract class Ast {
             private final Optional<Expr> receiver;
             private final String name;
             private final List<Expr> arguments;
+            private Object link = null;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
                 this.receiver = receiver;
@@ -534,6 +761,18 @@ public abstract class Ast {
                 return arguments;
             }
 
+            /**
+             * Returns the runtime target this call site was linked to by the
+             * {@link Interpreter}, or null if it has not been called yet.
+             */
+            public Object getLink() {
+                return link;
+            }
+
+            public void setLink(Object link) {
+                this.link = link;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Function &&
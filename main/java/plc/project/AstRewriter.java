@@ -0,0 +1,202 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for passes that rewrite an analyzed AST. Each visit method
+ * rebuilds its node from the rewritten children and carries over the
+ * annotations set by the {@link Analyzer} (types, variables, functions and
+ * slots) and the token index set by the {@link Parser}, so a pass only needs
+ * to override the nodes it changes.
+ *
+ * While a statement is being rewritten, a pass may {@link #prepend(Ast.Stmt)}
+ * statements that are inserted immediately before it.
+ */
+public abstract class AstRewriter implements Ast.Visitor<Ast> {
+
+    private List<Ast.Stmt> pending = new ArrayList<>();
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+
+        List<Ast.Field> fields = new ArrayList<>();
+        for (Ast.Field field : ast.getFields()) {
+            fields.add((Ast.Field) visit(field));
+        }
+        List<Ast.Method> methods = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            methods.add((Ast.Method) visit(method));
+        }
+        return at(ast, new Ast.Source(fields, methods));
+    }
+
+    @Override
+    public Ast.Field visit(Ast.Field ast) {
+
+        Ast.Field field = new Ast.Field(ast.getName(), ast.getTypeName(), ast.isConstant(), rewrite(ast.getValue()));
+        field.setEffectivelyConstant(ast.isEffectivelyConstant());
+        field.setVariable(ast.getVariable());
+        field.setSlot(ast.getSlot());
+        return at(ast, field);
+    }
+
+    @Override
+    public Ast.Method visit(Ast.Method ast) {
+
+        Ast.Method method = new Ast.Method(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), rewriteStatements(ast.getStatements()));
+        method.setFunction(ast.getFunction());
+        method.setFrameSize(ast.getFrameSize());
+        method.setUnboxed(ast.isUnboxed());
+        method.setPure(ast.isPure());
+        return at(ast, method);
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.Expression ast) {
+        return at(ast, new Ast.Stmt.Expression(rewrite(ast.getExpression())));
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.Declaration ast) {
+
+        Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(ast.getName(), ast.getTypeName(), rewrite(ast.getValue()));
+        declaration.setVariable(ast.getVariable());
+        declaration.setSlot(ast.getSlot());
+        declaration.setRepresentation(ast.getRepresentation());
+        declaration.setNonNil(ast.isNonNil());
+        return at(ast, declaration);
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.Assignment ast) {
+        return at(ast, new Ast.Stmt.Assignment(rewrite(ast.getReceiver()), rewrite(ast.getValue())));
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.If ast) {
+        return at(ast, new Ast.Stmt.If(rewrite(ast.getCondition()), rewriteStatements(ast.getThenStatements()), rewriteStatements(ast.getElseStatements())));
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.For ast) {
+
+        Ast.Stmt.For loop = new Ast.Stmt.For(ast.getName(), rewrite(ast.getValue()), rewriteStatements(ast.getStatements()));
+        loop.setSlot(ast.getSlot());
+        return at(ast, loop);
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.While ast) {
+        return InductionAnalyzer.recognize(at(ast, new Ast.Stmt.While(rewrite(ast.getCondition()), rewriteStatements(ast.getStatements()))));
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.Return ast) {
+
+        Ast.Stmt.Return stmt = new Ast.Stmt.Return(rewrite(ast.getValue()));
+        stmt.setTailCall(ast.isTailCall() && stmt.getValue() instanceof Ast.Expr.Function);
+        return at(ast, stmt);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Literal ast) {
+
+        Ast.Expr.Literal literal = new Ast.Expr.Literal(ast.getLiteral());
+        literal.setType(ast.getType());
+        literal.setRepresentation(ast.getRepresentation());
+        literal.setNonNil(ast.isNonNil());
+        return at(ast, literal);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Group ast) {
+
+        Ast.Expr.Group group = new Ast.Expr.Group(rewrite(ast.getExpression()));
+        group.setType(ast.getType());
+        group.setRepresentation(ast.getRepresentation());
+        group.setNonNil(ast.isNonNil());
+        return at(ast, group);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Binary ast) {
+
+        Ast.Expr.Binary binary = new Ast.Expr.Binary(ast.getOperator(), rewrite(ast.getLeft()), rewrite(ast.getRight()));
+        binary.setType(ast.getType());
+        binary.setRepresentation(ast.getRepresentation());
+        binary.setNonNil(ast.isNonNil());
+        return at(ast, binary);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Access ast) {
+
+        Ast.Expr.Access access = new Ast.Expr.Access(rewrite(ast.getReceiver()), ast.getName());
+        access.setVariable(ast.getVariable());
+        access.setSlot(ast.getDepth(), ast.getSlot());
+        access.setRepresentation(ast.getRepresentation());
+        access.setNonNil(ast.isNonNil());
+        return at(ast, access);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Function ast) {
+
+        List<Ast.Expr> arguments = new ArrayList<>();
+        for (Ast.Expr argument : ast.getArguments()) {
+            arguments.add(rewrite(argument));
+        }
+        Ast.Expr.Function function = new Ast.Expr.Function(rewrite(ast.getReceiver()), ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        function.setRepresentation(ast.getRepresentation());
+        function.setNonNil(ast.isNonNil());
+        return at(ast, function);
+    }
+
+    /**
+     * Gives a rewritten node the token index of the node it replaces.
+     */
+    protected static <T extends Ast> T at(Ast original, T rewritten) {
+        rewritten.setIndex(original.getIndex());
+        return rewritten;
+    }
+
+    protected Ast.Expr rewrite(Ast.Expr expr) {
+        return (Ast.Expr) visit(expr);
+    }
+
+    protected Optional<Ast.Expr> rewrite(Optional<Ast.Expr> expr) {
+        return expr.map(this::rewrite);
+    }
+
+    /**
+     * Rewrites a statement list, inserting any statements prepended while
+     * rewriting each statement directly before it.
+     */
+    protected List<Ast.Stmt> rewriteStatements(List<Ast.Stmt> statements) {
+
+        List<Ast.Stmt> enclosing = pending;
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        try {
+            for (Ast.Stmt stmt : statements) {
+                pending = new ArrayList<>();
+                Ast.Stmt result = (Ast.Stmt) visit(stmt);
+                rewritten.addAll(pending);
+                rewritten.add(result);
+            }
+        } finally {
+            pending = enclosing;
+        }
+        return rewritten;
+    }
+
+    /**
+     * Inserts a statement before the statement currently being rewritten.
+     */
+    protected void prepend(Ast.Stmt stmt) {
+        pending.add(stmt);
+    }
+
+}
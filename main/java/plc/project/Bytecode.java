@@ -0,0 +1,180 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * A compact register-based bytecode, compiled from an analyzed source by the
+ * {@link BytecodeCompiler} and run by the {@link BytecodeVM}.
+ *
+ * The code of a function is a flat {@code int[]}: each instruction is an
+ * {@link Opcode} ordinal followed by its operands, whose meaning is given by
+ * {@link Opcode#getOperands()}. Literals and names live in the constant pool
+ * of the program, fields are numbered by the slots the {@link Analyzer}
+ * assigned them, and the functions called are listed once per program so the
+ * VM can link them before running.
+ *
+ * Registers are typed by the compiler: a register holds either the unwrapped
+ * value of a Boolean, Integer, Decimal, Character or String (operated on
+ * directly by the typed instructions) or an {@link Environment.PlcObject}
+ * (for any other type), converted with {@code BOX} and {@code UNBOX}. NIL
+ * in a value register is the value of {@link Environment#NIL}, which
+ * {@code BOX} turns back into NIL itself. Locals
+ * occupy the registers of their slot: the object register {@code slot}, or the
+ * value register {@code frameSize + slot}, and parameters arrive in the first
+ * object registers.
+ */
+public final class Bytecode {
+
+    private Bytecode() {}
+
+    /**
+     * The instructions, with one character per operand: {@code r} a register,
+     * {@code k} a constant, {@code t} a jump target, {@code g} a field,
+     * {@code f} a function called, {@code o} an {@link Operator} ordinal and
+     * {@code n} an argument count.
+     */
+    public enum Opcode {
+        CONST("rk"),
+        MOVE("rr"),
+        BOX("rr"),
+        UNBOX("rr"),
+        ADD_INT("rrr"),
+        SUB_INT("rrr"),
+        MUL_INT("rrr"),
+        DIV_INT("rrr"),
+        ADD_DEC("rrr"),
+        SUB_DEC("rrr"),
+        MUL_DEC("rrr"),
+        DIV_DEC("rrr"),
+        CONCAT("rrr"),
+        LT_INT("rrr"),
+        LE_INT("rrr"),
+        GT_INT("rrr"),
+        GE_INT("rrr"),
+        EQ("rrr"),
+        NE("rrr"),
+        BINARY("rrro"),
+        JUMP("t"),
+        JUMP_FALSE("rt"),
+        JUMP_TRUE("rt"),
+        GET_GLOBAL("rg"),
+        SET_GLOBAL("gr"),
+        GET_FIELD("rrk"),
+        SET_FIELD("rkr"),
+        CALL("rfrn"),
+        CALL_METHOD("rrkrn"),
+        ITER("rr"),
+        NEXT("rrt"),
+        RETURN("r");
+
+        private final String operands;
+
+        Opcode(String operands) {
+            this.operands = operands;
+        }
+
+        public String getOperands() {
+            return operands;
+        }
+
+        /**
+         * Returns the number of ints the instruction occupies.
+         */
+        public int getLength() {
+            return operands.length() + 1;
+        }
+    }
+
+    public static final class Program {
+
+        private final List<Object> constants;
+        private final List<String> fields;
+        private final List<String> callees;
+        private final List<Integer> arities;
+        private final Function initializer;
+        private final List<Function> functions;
+
+        public Program(List<Object> constants, List<String> fields, List<String> callees, List<Integer> arities,
+                       Function initializer, List<Function> functions) {
+            this.constants = constants;
+            this.fields = fields;
+            this.callees = callees;
+            this.arities = arities;
+            this.initializer = initializer;
+            this.functions = functions;
+        }
+
+        /**
+         * Returns the constant pool: unwrapped literals, names, and
+         * {@link Environment#NIL}.
+         */
+        public List<Object> getConstants() {
+            return constants;
+        }
+
+        /**
+         * Returns the names of the fields, by slot.
+         */
+        public List<String> getFields() {
+            return fields;
+        }
+
+        /**
+         * Returns the names of the functions called, with the number of
+         * arguments of each in {@link #getArities()}.
+         */
+        public List<String> getCallees() {
+            return callees;
+        }
+
+        public List<Integer> getArities() {
+            return arities;
+        }
+
+        /**
+         * Returns the function computing the initial values of the fields,
+         * which is run before {@code main}.
+         */
+        public Function getInitializer() {
+            return initializer;
+        }
+
+        public List<Function> getFunctions() {
+            return functions;
+        }
+
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final int parameters;
+        private final int registers;
+        private final int[] code;
+
+        public Function(String name, int parameters, int registers, int[] code) {
+            this.name = name;
+            this.parameters = parameters;
+            this.registers = registers;
+            this.code = code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getParameters() {
+            return parameters;
+        }
+
+        public int getRegisters() {
+            return registers;
+        }
+
+        public int[] getCode() {
+            return code;
+        }
+
+    }
+
+}
@@ -0,0 +1,481 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed source into {@link Bytecode}.
+ *
+ * Expressions are compiled to the register holding their value, in the kind
+ * of register (value or object) given by their static type; reading a local
+ * uses its register directly, without a copy. Temporaries are allocated
+ * above the locals and released at the end of each statement. Arithmetic and
+ * comparisons on operands the {@link Analyzer} typed as both Integer or both
+ * Decimal use the typed instructions, concatenation with a String uses
+ * {@code CONCAT}, and anything else the generic {@code BINARY}.
+ *
+ * Locals are identified by the slots assigned by the Analyzer, so only
+ * resolved methods can be compiled. Every call, including a tail call or a
+ * call to a pure method, compiles to a plain {@code CALL} (see
+ * {@link BytecodeVM}).
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Integer> {
+
+    private final Map<Object, Integer> constants = new LinkedHashMap<>();
+    //indices of the functions called by name and arity, with the names and arities by index
+    private final Map<String, Integer> callees = new LinkedHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> arities = new ArrayList<>();
+
+    //the function being compiled
+    private int[] code = new int[64];
+    private int length = 0;
+    private int frameSize = 0;
+    private int next = 0;
+    private int registers = 0;
+
+    private Bytecode.Program program;
+
+    private BytecodeCompiler() {}
+
+    public static Bytecode.Program compile(Ast.Source source) {
+
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        compiler.visit(source);
+        return compiler.program;
+    }
+
+    private void begin(int frameSize) {
+
+        length = 0;
+        this.frameSize = frameSize;
+        next = 2 * frameSize;
+        registers = next;
+    }
+
+    /**
+     * Ends the function being compiled by returning NIL, for bodies that do
+     * not return on every path.
+     */
+    private Bytecode.Function finish(String name, int parameters) {
+
+        int nil = temp();
+        emit(Bytecode.Opcode.CONST, nil, constant(Environment.NIL));
+        emit(Bytecode.Opcode.RETURN, nil);
+        return new Bytecode.Function(name, parameters, registers, Arrays.copyOf(code, length));
+    }
+
+    /**
+     * Compiles the field initializers and every method of a source into the
+     * program returned by {@link #compile(Ast.Source)}. A source has no
+     * register, so this returns null.
+     */
+    @Override
+    public Integer visit(Ast.Source ast) {
+
+        int size = 0;
+        for (Ast.Field field : ast.getFields()) {
+            size = Math.max(size, field.getSlot() + 1);
+        }
+        String[] fields = new String[size];
+        begin(0);
+        for (Ast.Field field : ast.getFields()) {
+            if (field.getSlot() < 0) {
+                throw new RuntimeException("The field " + field.getName() + " has not been analyzed.");
+            }
+            fields[field.getSlot()] = field.getName();
+            visit(field);
+        }
+        Bytecode.Function initializer = finish("<fields>", 0);
+
+        List<Bytecode.Function> functions = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            if (method.getFrameSize() < 0) {
+                throw new RuntimeException("The method " + method.getName() + " has not been analyzed.");
+            }
+            begin(method.getFrameSize());
+            visit(method);
+            functions.add(finish(method.getName(), method.getParameters().size()));
+        }
+        program = new Bytecode.Program(new ArrayList<>(constants.keySet()), Arrays.asList(fields), names, arities, initializer, functions);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Field ast) {
+
+        if (ast.getValue().isPresent()) {
+            int mark = next;
+            emit(Bytecode.Opcode.SET_GLOBAL, ast.getSlot(), object(ast.getValue().get()));
+            next = mark;
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Method ast) {
+
+        List<Environment.Type> types = ast.getFunction().getParameterTypes();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            if (isValue(types.get(i))) {
+                emit(Bytecode.Opcode.UNBOX, frameSize + i, i);
+            }
+        }
+        statements(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Expression ast) {
+
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Declaration ast) {
+
+        Environment.Type type = ast.getVariable().getType();
+        int local = local(ast.getSlot(), type);
+        if (ast.getValue().isPresent()) {
+            move(local, isValue(type) ? value(ast.getValue().get()) : object(ast.getValue().get()));
+        } else {
+            emit(Bytecode.Opcode.CONST, local, constant(nil(type)));
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Assignment ast) {
+
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            int object = object(receiver.getReceiver().get());
+            emit(Bytecode.Opcode.SET_FIELD, object, constant(receiver.getName()), object(ast.getValue()));
+        } else if (receiver.getDepth() == Ast.Expr.Access.LOCAL) {
+            Environment.Type type = receiver.getType();
+            move(local(receiver.getSlot(), type), isValue(type) ? value(ast.getValue()) : object(ast.getValue()));
+        } else {
+            emit(Bytecode.Opcode.SET_GLOBAL, global(receiver), object(ast.getValue()));
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.If ast) {
+
+        int otherwise = jump(Bytecode.Opcode.JUMP_FALSE, value(ast.getCondition()));
+        statements(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            patch(otherwise);
+        } else {
+            int end = jump(Bytecode.Opcode.JUMP, -1);
+            patch(otherwise);
+            statements(ast.getElseStatements());
+            patch(end);
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.For ast) {
+
+        int iterator = temp();
+        emit(Bytecode.Opcode.ITER, iterator, object(ast.getValue()));
+        int top = length;
+        //the loop variable is an Integer, read from its value register
+        emit(Bytecode.Opcode.NEXT, ast.getSlot(), iterator, -1);
+        int end = length - 1;
+        emit(Bytecode.Opcode.UNBOX, frameSize + ast.getSlot(), ast.getSlot());
+        statements(ast.getStatements());
+        emit(Bytecode.Opcode.JUMP, top);
+        code[end] = length;
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.While ast) {
+
+        int top = length;
+        int end = jump(Bytecode.Opcode.JUMP_FALSE, value(ast.getCondition()));
+        statements(ast.getStatements());
+        emit(Bytecode.Opcode.JUMP, top);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Return ast) {
+
+        emit(Bytecode.Opcode.RETURN, object(ast.getValue()));
+        return null;
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Literal ast) {
+
+        int register = temp();
+        Object literal = ast.getLiteral();
+        emit(Bytecode.Opcode.CONST, register, constant(literal == null ? nil(ast.getType()) : literal));
+        return register;
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Binary ast) {
+
+        Operator operator = ast.getOperatorCode();
+        if (operator == null) {
+            throw new ScriptException("Unknown operator " + ast.getOperator() + ".");
+        }
+        int result = temp();
+        if (operator.getShortCircuit() != null) {
+            //the left operand is the result if it decides it, the right one otherwise
+            move(result, value(ast.getLeft()));
+            int end = jump(operator == Operator.AND ? Bytecode.Opcode.JUMP_FALSE : Bytecode.Opcode.JUMP_TRUE, result);
+            move(result, value(ast.getRight()));
+            patch(end);
+            return converted(ast, result);
+        }
+
+        int left = value(ast.getLeft());
+        int right = value(ast.getRight());
+        Bytecode.Opcode opcode = opcode(operator, ast.getLeft(), ast.getRight());
+        if (opcode == Bytecode.Opcode.BINARY) {
+            emit(opcode, result, left, right, operator.ordinal());
+        } else {
+            emit(opcode, result, left, right);
+        }
+        return converted(ast, result);
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Access ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            int object = object(ast.getReceiver().get());
+            int register = temp();
+            emit(Bytecode.Opcode.GET_FIELD, register, object, constant(ast.getName()));
+            return unboxed(ast, register);
+        } else if (ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            return local(ast.getSlot(), ast.getType());
+        }
+        int register = temp();
+        emit(Bytecode.Opcode.GET_GLOBAL, register, global(ast));
+        return unboxed(ast, register);
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Function ast) {
+
+        int count = ast.getArguments().size();
+        int first = next;
+        next += count;
+        registers = Math.max(registers, next);
+        for (int i = 0; i < count; i++) {
+            move(first + i, object(ast.getArguments().get(i)));
+        }
+        int register = temp();
+        if (ast.getReceiver().isPresent()) {
+            //the receiver is evaluated after the arguments, as in the Interpreter
+            int object = object(ast.getReceiver().get());
+            emit(Bytecode.Opcode.CALL_METHOD, register, object, constant(ast.getName()), first, count);
+        } else {
+            emit(Bytecode.Opcode.CALL, register, callee(ast.getName(), count), first, count);
+        }
+        return unboxed(ast, register);
+    }
+
+    private void statements(List<Ast.Stmt> statements) {
+
+        for (Ast.Stmt stmt : statements) {
+            int mark = next;
+            visit(stmt);
+            next = mark;
+        }
+    }
+
+    /**
+     * Compiles an expression into a value register.
+     */
+    private int value(Ast.Expr expr) {
+
+        int register = visit(expr);
+        if (isValue(expr.getType())) {
+            return register;
+        }
+        int value = temp();
+        emit(Bytecode.Opcode.UNBOX, value, register);
+        return value;
+    }
+
+    /**
+     * Compiles an expression into an object register.
+     */
+    private int object(Ast.Expr expr) {
+
+        int register = visit(expr);
+        if (!isValue(expr.getType())) {
+            return register;
+        }
+        int object = temp();
+        emit(Bytecode.Opcode.BOX, object, register);
+        return object;
+    }
+
+    /**
+     * Converts the object register produced for an expression to a value
+     * register if its type calls for one, in place (the object is not needed
+     * afterwards).
+     */
+    private int unboxed(Ast.Expr expr, int register) {
+
+        if (isValue(expr.getType())) {
+            emit(Bytecode.Opcode.UNBOX, register, register);
+        }
+        return register;
+    }
+
+    /**
+     * Converts the value register produced for an expression to an object
+     * register if its type is not a value type, in place.
+     */
+    private int converted(Ast.Expr expr, int register) {
+
+        if (!isValue(expr.getType())) {
+            emit(Bytecode.Opcode.BOX, register, register);
+        }
+        return register;
+    }
+
+    /**
+     * Returns the instruction for a binary operator. The typed instructions
+     * do not check their operands, so they are only used for operands the
+     * {@link NullabilityAnalyzer} proved non-NIL; anything else goes through
+     * {@code BINARY}, which reports a NIL operand as the Interpreter does.
+     */
+    private static Bytecode.Opcode opcode(Operator operator, Ast.Expr leftOperand, Ast.Expr rightOperand) {
+
+        Environment.Type left = leftOperand.getType();
+        Environment.Type right = rightOperand.getType();
+        boolean checked = leftOperand.isNonNil() && rightOperand.isNonNil();
+        boolean integers = checked && left == Environment.Type.INTEGER && right == Environment.Type.INTEGER;
+        boolean decimals = checked && left == Environment.Type.DECIMAL && right == Environment.Type.DECIMAL;
+        switch (operator) {
+            case ADD:
+                if (left == Environment.Type.STRING || right == Environment.Type.STRING) {
+                    return Bytecode.Opcode.CONCAT;
+                }
+                return integers ? Bytecode.Opcode.ADD_INT : decimals ? Bytecode.Opcode.ADD_DEC : Bytecode.Opcode.BINARY;
+            case SUBTRACT: return integers ? Bytecode.Opcode.SUB_INT : decimals ? Bytecode.Opcode.SUB_DEC : Bytecode.Opcode.BINARY;
+            case MULTIPLY: return integers ? Bytecode.Opcode.MUL_INT : decimals ? Bytecode.Opcode.MUL_DEC : Bytecode.Opcode.BINARY;
+            case DIVIDE: return integers ? Bytecode.Opcode.DIV_INT : decimals ? Bytecode.Opcode.DIV_DEC : Bytecode.Opcode.BINARY;
+            case LESS: return integers ? Bytecode.Opcode.LT_INT : Bytecode.Opcode.BINARY;
+            case LESS_EQUAL: return integers ? Bytecode.Opcode.LE_INT : Bytecode.Opcode.BINARY;
+            case GREATER: return integers ? Bytecode.Opcode.GT_INT : Bytecode.Opcode.BINARY;
+            case GREATER_EQUAL: return integers ? Bytecode.Opcode.GE_INT : Bytecode.Opcode.BINARY;
+            case EQUAL: return Bytecode.Opcode.EQ;
+            case NOT_EQUAL: return Bytecode.Opcode.NE;
+            default: return Bytecode.Opcode.BINARY;
+        }
+    }
+
+    /**
+     * Returns true if values of the type are held unwrapped in registers.
+     */
+    static boolean isValue(Environment.Type type) {
+        return type == Environment.Type.BOOLEAN || type == Environment.Type.INTEGER || type == Environment.Type.DECIMAL
+                || type == Environment.Type.CHARACTER || type == Environment.Type.STRING;
+    }
+
+    /**
+     * Returns the constant for NIL in a register of the type: NIL itself in
+     * an object register, and the value {@code UNBOX} takes from NIL in a
+     * value register.
+     */
+    private static Object nil(Environment.Type type) {
+        return isValue(type) ? Environment.NIL.getValue() : Environment.NIL;
+    }
+
+    private int local(int slot, Environment.Type type) {
+        return isValue(type) ? frameSize + slot : slot;
+    }
+
+    private static int global(Ast.Expr.Access ast) {
+
+        if (ast.getDepth() != Ast.Expr.Access.GLOBAL) {
+            throw new RuntimeException("The variable " + ast.getName() + " has not been analyzed.");
+        }
+        return ast.getSlot();
+    }
+
+    private int temp() {
+
+        registers = Math.max(registers, next + 1);
+        return next++;
+    }
+
+    private void move(int target, int source) {
+
+        if (target != source) {
+            emit(Bytecode.Opcode.MOVE, target, source);
+        }
+    }
+
+    private int constant(Object value) {
+        return constants.computeIfAbsent(value, key -> constants.size());
+    }
+
+    private int callee(String name, int arity) {
+
+        String key = name + "/" + arity;
+        Integer index = callees.get(key);
+        if (index == null) {
+            index = callees.size();
+            callees.put(key, index);
+            names.add(name);
+            arities.add(arity);
+        }
+        return index;
+    }
+
+    /**
+     * Emits a jump with its target still to be patched, returning the index
+     * of the target operand.
+     */
+    private int jump(Bytecode.Opcode opcode, int condition) {
+
+        if (opcode == Bytecode.Opcode.JUMP) {
+            emit(opcode, -1);
+        } else {
+            emit(opcode, condition, -1);
+        }
+        return length - 1;
+    }
+
+    /**
+     * Points a jump emitted by {@link #jump} at the next instruction.
+     */
+    private void patch(int target) {
+        code[target] = length;
+    }
+
+    private void emit(Bytecode.Opcode opcode, int... operands) {
+
+        if (length + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + operands.length + 1));
+        }
+        code[length++] = opcode.ordinal();
+        for (int operand : operands) {
+            code[length++] = operand;
+        }
+    }
+
+}
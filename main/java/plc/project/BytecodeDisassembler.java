@@ -0,0 +1,90 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * Prints {@link Bytecode} as text, one instruction per line prefixed by its
+ * offset, for debugging and tests. Registers are printed as {@code r0},
+ * constants as {@code #0} followed by their value, jump targets as offsets,
+ * and fields and functions called by name:
+ *
+ * <pre>
+ * function main(0) registers 4 {
+ *      0: CONST r2, #1 (0)
+ *      3: MOVE r1, r2
+ *      6: CONST r3, #2 (10)
+ *      9: LT_INT r2, r1, r3
+ *     13: JUMP_FALSE r2, 27
+ * </pre>
+ */
+public final class BytecodeDisassembler {
+
+    private final List<Object> constants;
+    private final Bytecode.Program program;
+    private final StringBuilder builder = new StringBuilder();
+
+    private BytecodeDisassembler(Bytecode.Program program) {
+        this.program = program;
+        this.constants = program.getConstants();
+    }
+
+    public static String disassemble(Bytecode.Program program) {
+
+        BytecodeDisassembler disassembler = new BytecodeDisassembler(program);
+        disassembler.builder.append("constants").append(System.lineSeparator());
+        for (int i = 0; i < program.getConstants().size(); i++) {
+            disassembler.builder.append("    #").append(i).append(" = ").append(describe(program.getConstants().get(i)))
+                    .append(System.lineSeparator());
+        }
+        disassembler.builder.append("fields ").append(String.join(", ", program.getFields())).append(System.lineSeparator());
+        disassembler.disassemble(program.getInitializer());
+        for (Bytecode.Function function : program.getFunctions()) {
+            disassembler.disassemble(function);
+        }
+        return disassembler.builder.toString();
+    }
+
+    private void disassemble(Bytecode.Function function) {
+
+        builder.append("function ").append(function.getName()).append("(").append(function.getParameters()).append(")")
+                .append(" registers ").append(function.getRegisters()).append(" {").append(System.lineSeparator());
+        int[] code = function.getCode();
+        int pc = 0;
+        while (pc < code.length) {
+            Bytecode.Opcode opcode = Bytecode.Opcode.values()[code[pc]];
+            builder.append(String.format("%6d: ", pc)).append(opcode);
+            String operands = opcode.getOperands();
+            for (int i = 0; i < operands.length(); i++) {
+                builder.append(i == 0 ? " " : ", ").append(operand(operands.charAt(i), code[pc + 1 + i]));
+            }
+            builder.append(System.lineSeparator());
+            pc += opcode.getLength();
+        }
+        builder.append("}").append(System.lineSeparator());
+    }
+
+    private String operand(char kind, int operand) {
+
+        switch (kind) {
+            case 'r': return "r" + operand;
+            case 'k': return "#" + operand + " (" + describe(constants.get(operand)) + ")";
+            case 'g': return "g" + operand + " (" + program.getFields().get(operand) + ")";
+            case 'f': return "f" + operand + " (" + program.getCallees().get(operand) + "/" + program.getArities().get(operand) + ")";
+            case 'o': return Operator.values()[operand].getSymbol();
+            default: return String.valueOf(operand);
+        }
+    }
+
+    private static String describe(Object constant) {
+
+        if (constant == null || constant == Environment.NIL) {
+            return "NIL";
+        } else if (constant instanceof String) {
+            return "\"" + constant + "\"";
+        } else if (constant instanceof Character) {
+            return "'" + constant + "'";
+        }
+        return constant.toString();
+    }
+
+}
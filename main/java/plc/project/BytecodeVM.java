@@ -0,0 +1,250 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Executes a {@link Bytecode.Program} for the {@link Interpreter}, in the
+ * scope of the interpreter (which provides the builtins and receives the
+ * fields and functions).
+ *
+ * Each activation has an array of registers and runs in a single dispatch
+ * loop. The functions called are linked before running: calls to functions of
+ * the program run them directly on a new register array, and anything else
+ * is looked up once as a builtin.
+ *
+ * Unlike the Interpreter, each call recurses on the Java stack, so tail calls
+ * are not eliminated and very deep recursion (around a million calls)
+ * overflows it, and pure methods are not memoized.
+ */
+final class BytecodeVM {
+
+    private static final Bytecode.Opcode[] OPCODES = Bytecode.Opcode.values();
+    private static final Operator[] OPERATORS = Operator.values();
+
+    private final Scope scope;
+    private Object[] constants;
+    private Environment.Variable[] globals;
+    //the target of each function called, a Bytecode.Function or an Environment.Function
+    private Object[] callees;
+
+    BytecodeVM(Scope scope) {
+        this.scope = scope;
+    }
+
+    Environment.PlcObject execute(Bytecode.Program program) {
+
+        constants = program.getConstants().toArray();
+        globals = new Environment.Variable[program.getFields().size()];
+        for (int i = 0; i < globals.length; i++) {
+            if (program.getFields().get(i) != null) {
+                globals[i] = scope.defineVariable(program.getFields().get(i), Environment.NIL);
+            }
+        }
+        for (Bytecode.Function function : program.getFunctions()) {
+            scope.defineFunction(function.getName(), function.getParameters(), args -> invoke(function, args));
+        }
+        callees = new Object[program.getCallees().size()];
+        for (int i = 0; i < callees.length; i++) {
+            String name = program.getCallees().get(i);
+            int arity = program.getArities().get(i);
+            for (Bytecode.Function function : program.getFunctions()) {
+                if (function.getName().equals(name) && function.getParameters() == arity) {
+                    callees[i] = function;
+                }
+            }
+            if (callees[i] == null) {
+                callees[i] = scope.lookupFunction(name, arity);
+            }
+        }
+        run(program.getInitializer(), new Object[program.getInitializer().getRegisters()]);
+        return scope.lookupFunction("main", 0).invoke(Collections.emptyList());
+    }
+
+    private Environment.PlcObject invoke(Bytecode.Function function, List<Environment.PlcObject> args) {
+
+        Object[] registers = new Object[function.getRegisters()];
+        for (int i = 0; i < args.size(); i++) {
+            registers[i] = args.get(i);
+        }
+        return run(function, registers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Environment.PlcObject run(Bytecode.Function function, Object[] r) {
+
+        int[] code = function.getCode();
+        int pc = 0;
+        while (true) {
+            switch (OPCODES[code[pc]]) {
+                case CONST:
+                    r[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case MOVE:
+                    r[code[pc + 1]] = r[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case BOX: {
+                    Object value = r[code[pc + 2]];
+                    r[code[pc + 1]] = value == null || value == Environment.NIL.getValue() ? Environment.NIL : Environment.create(value);
+                    pc += 3;
+                    break;
+                }
+                case UNBOX:
+                    r[code[pc + 1]] = ((Environment.PlcObject) r[code[pc + 2]]).getValue();
+                    pc += 3;
+                    break;
+                case ADD_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).add((BigInteger) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case SUB_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).subtract((BigInteger) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case MUL_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).multiply((BigInteger) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case DIV_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).divide((BigInteger) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case ADD_DEC:
+                    r[code[pc + 1]] = ((BigDecimal) r[code[pc + 2]]).add((BigDecimal) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case SUB_DEC:
+                    r[code[pc + 1]] = ((BigDecimal) r[code[pc + 2]]).subtract((BigDecimal) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case MUL_DEC:
+                    r[code[pc + 1]] = ((BigDecimal) r[code[pc + 2]]).multiply((BigDecimal) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case DIV_DEC:
+                    r[code[pc + 1]] = ((BigDecimal) r[code[pc + 2]]).divide((BigDecimal) r[code[pc + 3]], BigDecimal.ROUND_HALF_EVEN);
+                    pc += 4;
+                    break;
+                case CONCAT:
+                    r[code[pc + 1]] = String.valueOf(r[code[pc + 2]]) + r[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case LT_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).compareTo((BigInteger) r[code[pc + 3]]) < 0;
+                    pc += 4;
+                    break;
+                case LE_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).compareTo((BigInteger) r[code[pc + 3]]) <= 0;
+                    pc += 4;
+                    break;
+                case GT_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).compareTo((BigInteger) r[code[pc + 3]]) > 0;
+                    pc += 4;
+                    break;
+                case GE_INT:
+                    r[code[pc + 1]] = ((BigInteger) r[code[pc + 2]]).compareTo((BigInteger) r[code[pc + 3]]) >= 0;
+                    pc += 4;
+                    break;
+                case EQ:
+                    r[code[pc + 1]] = Objects.equals(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case NE:
+                    r[code[pc + 1]] = !Objects.equals(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case BINARY:
+                    r[code[pc + 1]] = OPERATORS[code[pc + 4]].apply(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 5;
+                    break;
+                case JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case JUMP_FALSE:
+                    pc = requireType(Boolean.class, r[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    break;
+                case JUMP_TRUE:
+                    pc = requireType(Boolean.class, r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                    break;
+                case GET_GLOBAL:
+                    r[code[pc + 1]] = globals[code[pc + 2]].getValue();
+                    pc += 3;
+                    break;
+                case SET_GLOBAL:
+                    globals[code[pc + 1]].setValue((Environment.PlcObject) r[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case GET_FIELD:
+                    r[code[pc + 1]] = ((Environment.PlcObject) r[code[pc + 2]]).getField((String) constants[code[pc + 3]]).getValue();
+                    pc += 4;
+                    break;
+                case SET_FIELD:
+                    ((Environment.PlcObject) r[code[pc + 1]]).setField((String) constants[code[pc + 2]], (Environment.PlcObject) r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case CALL:
+                    r[code[pc + 1]] = call(callees[code[pc + 2]], r, code[pc + 3], code[pc + 4]);
+                    pc += 5;
+                    break;
+                case CALL_METHOD:
+                    r[code[pc + 1]] = ((Environment.PlcObject) r[code[pc + 2]]).callMethod((String) constants[code[pc + 3]], arguments(r, code[pc + 4], code[pc + 5]));
+                    pc += 6;
+                    break;
+                case ITER:
+                    r[code[pc + 1]] = requireType(Iterable.class, ((Environment.PlcObject) r[code[pc + 2]]).getValue()).iterator();
+                    pc += 3;
+                    break;
+                case NEXT: {
+                    Iterator<Environment.PlcObject> iterator = (Iterator<Environment.PlcObject>) r[code[pc + 2]];
+                    if (iterator.hasNext()) {
+                        r[code[pc + 1]] = iterator.next();
+                        pc += 4;
+                    } else {
+                        pc = code[pc + 3];
+                    }
+                    break;
+                }
+                case RETURN:
+                    return (Environment.PlcObject) r[code[pc + 1]];
+                default:
+                    throw new AssertionError("Unknown opcode " + code[pc] + ".");
+            }
+        }
+    }
+
+    private Environment.PlcObject call(Object callee, Object[] r, int first, int count) {
+
+        if (callee instanceof Bytecode.Function) {
+            Bytecode.Function function = (Bytecode.Function) callee;
+            Object[] registers = new Object[function.getRegisters()];
+            System.arraycopy(r, first, registers, 0, count);
+            return run(function, registers);
+        }
+        return ((Environment.Function) callee).invoke(arguments(r, first, count));
+    }
+
+    private static List<Environment.PlcObject> arguments(Object[] r, int first, int count) {
+
+        List<Environment.PlcObject> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add((Environment.PlcObject) r[first + i]);
+        }
+        return arguments;
+    }
+
+    private static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw ScriptException.typeMismatch(type, value.getClass());
+        }
+    }
+
+}
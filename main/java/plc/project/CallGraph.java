@@ -0,0 +1,81 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The calls made by each method of an analyzed source, linked to the methods
+ * they resolve to through the functions set by the {@link Analyzer}. Calls
+ * with a receiver and calls to builtins such as {@code print} have no callee
+ * method.
+ */
+public final class CallGraph {
+
+    private final Map<Environment.Function, Ast.Method> methods = new IdentityHashMap<>();
+    private final Map<Ast.Method, List<Ast.Expr.Function>> calls = new IdentityHashMap<>();
+
+    public CallGraph(Ast.Source source) {
+
+        for (Ast.Method method : source.getMethods()) {
+            methods.put(method.getFunction(), method);
+        }
+        for (Ast.Method method : source.getMethods()) {
+            List<Ast.Expr.Function> found = new ArrayList<>();
+            new AstScanner() {
+                @Override
+                public Void visit(Ast.Expr.Function ast) {
+                    found.add(ast);
+                    return super.visit(ast);
+                }
+            }.visit(method);
+            calls.put(method, found);
+        }
+    }
+
+    /**
+     * Returns the method a call resolves to, or null if it is a builtin or
+     * method call on a receiver.
+     */
+    public Ast.Method getCallee(Ast.Expr.Function call) {
+        return call.getReceiver().isPresent() ? null : methods.get(call.getFunction());
+    }
+
+    public List<Ast.Expr.Function> getCalls(Ast.Method method) {
+        return calls.get(method);
+    }
+
+    public List<Ast.Method> getCallees(Ast.Method method) {
+
+        List<Ast.Method> callees = new ArrayList<>();
+        for (Ast.Expr.Function call : getCalls(method)) {
+            Ast.Method callee = getCallee(call);
+            if (callee != null) {
+                callees.add(callee);
+            }
+        }
+        return callees;
+    }
+
+    /**
+     * Returns true if the method can reach itself through the call graph.
+     */
+    public boolean isRecursive(Ast.Method method) {
+
+        Set<Ast.Method> visited = new HashSet<>();
+        List<Ast.Method> worklist = new ArrayList<>(getCallees(method));
+        while (!worklist.isEmpty()) {
+            Ast.Method next = worklist.remove(worklist.size() - 1);
+            if (next == method) {
+                return true;
+            } else if (visited.add(next)) {
+                worklist.addAll(getCallees(next));
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,264 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Computes each pure expression that is repeated within a straight-line
+ * sequence of statements only once, storing it in a temporary that later
+ * occurrences read instead.
+ *
+ * Expressions are value numbered by their {@link ValueKey}, covering binary
+ * operators and field chains such as {@code a.b.c}. A value stays available
+ * until a statement may change something it reads: an assignment to one of its
+ * locals or fields, any assignment through a receiver (for field chains) or
+ * any call (for everything but locals). Compound statements end the values
+ * they may write, and their bodies are separate sequences.
+ *
+ * The temporary for a value is declared directly before the statement that
+ * first computes it. Since that moves the computation ahead of the rest of
+ * the statement, values are only introduced by statements that make no calls,
+ * and never from the right operand of {@code AND}/{@code OR}, which may not
+ * be evaluated at all.
+ */
+public final class CommonSubexpressionElimination extends AstRewriter {
+
+    private int frameSize;
+    private int temporaries = 0;
+
+    @Override
+    public Ast.Method visit(Ast.Method ast) {
+
+        if (ast.getFrameSize() < 0) {
+            return ast;
+        }
+        frameSize = ast.getFrameSize();
+        Ast.Method method = super.visit(ast);
+        method.setFrameSize(frameSize);
+        return method;
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewriteStatements(List<Ast.Stmt> statements) {
+
+        Numbering numbering = new Numbering();
+        for (int i = 0; i < statements.size(); i++) {
+            numbering.number(i, statements.get(i));
+        }
+
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            Ast.Stmt stmt = statements.get(i);
+            if (isCompound(stmt)) {
+                //the bodies of compound statements are rewritten as sequences of their own
+                rewritten.add((Ast.Stmt) visit(stmt));
+                continue;
+            }
+            Replacer replacer = new Replacer(numbering.occurrences);
+            for (Value value : numbering.values) {
+                if (value.statement == i && value.uses > 1) {
+                    rewritten.add(replacer.declare(value));
+                }
+            }
+            rewritten.add((Ast.Stmt) replacer.visit(stmt));
+        }
+        return rewritten;
+    }
+
+    private static boolean isCompound(Ast.Stmt stmt) {
+        return stmt instanceof Ast.Stmt.If || stmt instanceof Ast.Stmt.While || stmt instanceof Ast.Stmt.For;
+    }
+
+    /**
+     * A value computed in the sequence, from the statement that first computes
+     * it until it is killed.
+     */
+    private static final class Value {
+
+        private final Ast.Expr expr;
+        private final int statement;
+        private final Set<Integer> locals = new HashSet<>();
+        private final Set<Integer> fields = new HashSet<>();
+        private boolean objects = false;
+        private int uses = 1;
+        private Ast.Stmt.Declaration declaration;
+
+        private Value(Ast.Expr expr, int statement) {
+            this.expr = expr;
+            this.statement = statement;
+            new AstScanner() {
+                @Override
+                public Void visit(Ast.Expr.Access ast) {
+                    if (ast.getReceiver().isPresent()) {
+                        objects = true;
+                    } else if (ast.getDepth() == Ast.Expr.Access.LOCAL) {
+                        locals.add(ast.getSlot());
+                    } else {
+                        fields.add(ast.getSlot());
+                    }
+                    return super.visit(ast);
+                }
+            }.visit(expr);
+        }
+
+        private boolean isLocalOnly() {
+            return fields.isEmpty() && !objects;
+        }
+
+        private boolean isKilledBy(Effects effects) {
+            return locals.stream().anyMatch(effects.locals::contains)
+                    || fields.stream().anyMatch(effects.fields::contains)
+                    || effects.calls && !isLocalOnly()
+                    || effects.objects && objects;
+        }
+
+    }
+
+    /**
+     * Forward pass assigning every candidate expression of a sequence to the
+     * value it computes.
+     */
+    private static final class Numbering {
+
+        private final List<Value> values = new ArrayList<>();
+        private final Map<String, Value> available = new HashMap<>();
+        private final Map<Ast.Expr, Value> occurrences = new IdentityHashMap<>();
+
+        private void number(int index, Ast.Stmt stmt) {
+
+            Effects effects = Effects.of(stmt);
+            if (!isCompound(stmt)) {
+                new Scanner(index, effects.calls).visit(stmt);
+            }
+            for (Iterator<Value> iterator = available.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().isKilledBy(effects)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private final class Scanner extends AstScanner {
+
+            private final int index;
+            private final boolean calls;
+
+            private Scanner(int index, boolean calls) {
+                this.index = index;
+                this.calls = calls;
+            }
+
+            @Override
+            public Void visit(Ast.Stmt.Assignment ast) {
+                //the receiver is written rather than read, but a receiver's own receiver is read
+                Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+                receiver.getReceiver().ifPresent(this::visit);
+                visit(ast.getValue());
+                return null;
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Binary ast) {
+                if (!reuse(ast)) {
+                    visit(ast.getLeft());
+                    if (!ast.getOperator().equals("AND") && !ast.getOperator().equals("OR")) {
+                        visit(ast.getRight());
+                    }
+                    introduce(ast);
+                }
+                return null;
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Access ast) {
+                if (ast.getReceiver().isPresent() && !reuse(ast)) {
+                    visit(ast.getReceiver().get());
+                    introduce(ast);
+                }
+                return null;
+            }
+
+            private boolean reuse(Ast.Expr expr) {
+                String key = ValueKey.of(expr);
+                Value value = key == null ? null : available.get(key);
+                //with calls in the statement, only values of locals are certain to be unchanged
+                if (value == null || calls && !value.isLocalOnly()) {
+                    return false;
+                }
+                value.uses++;
+                occurrences.put(expr, value);
+                return true;
+            }
+
+            private void introduce(Ast.Expr expr) {
+                String key = ValueKey.of(expr);
+                if (!calls && key != null) {
+                    Value value = new Value(expr, index);
+                    values.add(value);
+                    available.put(key, value);
+                    occurrences.put(expr, value);
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Replaces the occurrences of values used more than once with their
+     * temporaries.
+     */
+    private final class Replacer extends AstRewriter {
+
+        private final Map<Ast.Expr, Value> occurrences;
+        private Ast.Expr declaring = null;
+
+        private Replacer(Map<Ast.Expr, Value> occurrences) {
+            this.occurrences = occurrences;
+        }
+
+        private Ast.Stmt.Declaration declare(Value value) {
+
+            String name = "$cse" + temporaries++;
+            declaring = value.expr;
+            Ast.Expr expr = rewrite(value.expr);
+            declaring = null;
+            value.declaration = new Ast.Stmt.Declaration(name, Optional.empty(), Optional.of(expr));
+            value.declaration.setVariable(new Environment.Variable(name, name, value.expr.getType(), Environment.NIL));
+            value.declaration.setSlot(frameSize++);
+            return value.declaration;
+        }
+
+        @Override
+        public Ast.Expr visit(Ast.Expr.Binary ast) {
+            Ast.Expr temporary = temporary(ast);
+            return temporary != null ? temporary : super.visit(ast);
+        }
+
+        @Override
+        public Ast.Expr visit(Ast.Expr.Access ast) {
+            Ast.Expr temporary = temporary(ast);
+            return temporary != null ? temporary : super.visit(ast);
+        }
+
+        private Ast.Expr temporary(Ast.Expr expr) {
+
+            Value value = occurrences.get(expr);
+            if (expr == declaring || value == null || value.declaration == null) {
+                return null;
+            }
+            Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), value.declaration.getName());
+            access.setVariable(value.declaration.getVariable());
+            access.setSlot(Ast.Expr.Access.LOCAL, value.declaration.getSlot());
+            return access;
+        }
+
+    }
+
+}
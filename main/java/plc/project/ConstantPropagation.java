@@ -0,0 +1,47 @@
+package plc.project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Propagates the values of the constant fields of an analyzed source (those
+ * declared {@code CONST}, and those the {@link Analyzer} inferred to be
+ * effectively constant) into every use across all methods, folding what
+ * becomes computable with the {@link PartialEvaluator}. Both the
+ * {@link Interpreter} and the {@link Generator} then run the folded source.
+ *
+ * Constants initialized from other constants are resolved in rounds: each
+ * round specializes the source for the constants known so far, and any
+ * constant whose initializer folded to a literal becomes known for the next,
+ * until a round learns nothing new.
+ * Constants whose initializers do not fold (calling a method that is not
+ * pure, for example) are left as fields.
+ */
+public final class ConstantPropagation {
+
+    private ConstantPropagation() {}
+
+    /**
+     * Returns the source with the values of its constant fields propagated.
+     */
+    public static Ast.Source propagate(Ast.Source source) {
+
+        Map<String, Object> known = new HashMap<>();
+        Ast.Source specialized = PartialEvaluator.specialize(source, known);
+        while (true) {
+            boolean changed = false;
+            for (Ast.Field field : specialized.getFields()) {
+                if (field.isEffectivelyConstant() && !known.containsKey(field.getName())
+                        && field.getValue().isPresent() && field.getValue().get() instanceof Ast.Expr.Literal) {
+                    known.put(field.getName(), ((Ast.Expr.Literal) field.getValue().get()).getLiteral());
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return specialized;
+            }
+            specialized = PartialEvaluator.specialize(source, known);
+        }
+    }
+
+}
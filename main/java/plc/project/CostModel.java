@@ -0,0 +1,310 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Static upper bounds on the work done by each method of an analyzed
+ * source, as polynomials in the (unknown) number of iterations {@code n} of
+ * a loop.
+ *
+ * Every statement and expression node costs one unit. A loop costs its
+ * condition and body {@code n} times, so the degree of a method's cost is
+ * its deepest loop nesting. An {@code IF} costs its more expensive branch,
+ * and a call costs the whole cost of the method called, following the
+ * {@link CallGraph}. Calls within a recursive cycle are not expanded again;
+ * the cost of a method that may recurse is marked {@link Cost#isRecursive()}
+ * instead, since its depth is unbounded statically.
+ */
+public final class CostModel {
+
+    private final CallGraph graph;
+    private final Map<Ast.Method, Cost> costs = new IdentityHashMap<>();
+    private final Set<Ast.Method> computing = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Ast.Source source;
+
+    private CostModel(Ast.Source source) {
+        this.source = source;
+        this.graph = new CallGraph(source);
+    }
+
+    /**
+     * Estimates the costs of a source that has already been resolved by the
+     * {@link Analyzer}.
+     */
+    public static CostModel estimate(Ast.Source source) {
+
+        CostModel model = new CostModel(source);
+        for (Ast.Method method : source.getMethods()) {
+            model.getCost(method);
+        }
+        return model;
+    }
+
+    /**
+     * Returns the cost of running the source: its field initializers and
+     * {@code main}.
+     */
+    public Cost getCost() {
+        return new Estimator().visit(source);
+    }
+
+    public Cost getCost(Ast.Method method) {
+
+        Cost cost = costs.get(method);
+        if (cost == null) {
+            computing.add(method);
+            try {
+                cost = new Estimator().visit(method);
+            } finally {
+                computing.remove(method);
+            }
+            if (graph.isRecursive(method)) {
+                cost = cost.recursive();
+            }
+            costs.put(method, cost);
+        }
+        return cost;
+    }
+
+    private final class Estimator implements Ast.Visitor<Cost> {
+
+        @Override
+        public Cost visit(Ast.Source ast) {
+
+            Cost cost = Cost.ZERO;
+            for (Ast.Field field : ast.getFields()) {
+                cost = cost.plus(visit(field));
+            }
+            for (Ast.Method method : ast.getMethods()) {
+                if (method.getName().equals("main") && method.getParameters().isEmpty()) {
+                    cost = cost.plus(getCost(method));
+                }
+            }
+            return cost;
+        }
+
+        @Override
+        public Cost visit(Ast.Field ast) {
+            return ast.getValue().isPresent() ? visit(ast.getValue().get()).plus(Cost.UNIT) : Cost.UNIT;
+        }
+
+        @Override
+        public Cost visit(Ast.Method ast) {
+            return statements(ast.getStatements());
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.Expression ast) {
+            return visit(ast.getExpression()).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.Declaration ast) {
+            return ast.getValue().isPresent() ? visit(ast.getValue().get()).plus(Cost.UNIT) : Cost.UNIT;
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.Assignment ast) {
+            return visit(ast.getReceiver()).plus(visit(ast.getValue())).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.If ast) {
+            return visit(ast.getCondition()).plus(statements(ast.getThenStatements()).max(statements(ast.getElseStatements()))).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.For ast) {
+            return visit(ast.getValue()).plus(statements(ast.getStatements()).plus(Cost.UNIT).times()).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.While ast) {
+            return visit(ast.getCondition()).plus(statements(ast.getStatements())).plus(Cost.UNIT).times().plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Stmt.Return ast) {
+            return visit(ast.getValue()).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Expr.Literal ast) {
+            return Cost.UNIT;
+        }
+
+        @Override
+        public Cost visit(Ast.Expr.Group ast) {
+            return visit(ast.getExpression()).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Expr.Binary ast) {
+            return visit(ast.getLeft()).plus(visit(ast.getRight())).plus(Cost.UNIT);
+        }
+
+        @Override
+        public Cost visit(Ast.Expr.Access ast) {
+            return ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()).plus(Cost.UNIT) : Cost.UNIT;
+        }
+
+        @Override
+        public Cost visit(Ast.Expr.Function ast) {
+
+            Cost cost = ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()).plus(Cost.UNIT) : Cost.UNIT;
+            for (Ast.Expr argument : ast.getArguments()) {
+                cost = cost.plus(visit(argument));
+            }
+            Ast.Method callee = graph.getCallee(ast);
+            if (callee == null) {
+                return cost;
+            } else if (computing.contains(callee)) {
+                //a call back into the cycle being estimated, accounted for by marking the cost recursive
+                return cost.recursive();
+            }
+            return cost.plus(getCost(callee));
+        }
+
+        private Cost statements(List<Ast.Stmt> statements) {
+
+            Cost cost = Cost.ZERO;
+            for (Ast.Stmt stmt : statements) {
+                cost = cost.plus(visit(stmt));
+            }
+            return cost;
+        }
+
+    }
+
+    /**
+     * A polynomial in the number of loop iterations {@code n}, with
+     * non-negative coefficients by degree, possibly marked recursive.
+     */
+    public static final class Cost {
+
+        public static final Cost ZERO = new Cost(new long[] {0}, false);
+        public static final Cost UNIT = new Cost(new long[] {1}, false);
+
+        private final long[] coefficients;
+        private final boolean recursive;
+
+        private Cost(long[] coefficients, boolean recursive) {
+            this.coefficients = coefficients;
+            this.recursive = recursive;
+        }
+
+        /**
+         * Returns the highest power of {@code n}, which is the deepest loop
+         * nesting reached.
+         */
+        public int getDegree() {
+            return coefficients.length - 1;
+        }
+
+        public long getCoefficient(int degree) {
+            return degree < coefficients.length ? coefficients[degree] : 0;
+        }
+
+        /**
+         * Returns true if the cost includes recursion, whose depth is not
+         * bounded statically.
+         */
+        public boolean isRecursive() {
+            return recursive;
+        }
+
+        /**
+         * Returns the cost with {@code n} replaced by the given number of
+         * iterations, saturating at {@link Long#MAX_VALUE}.
+         */
+        public long evaluate(long iterations) {
+
+            long total = 0;
+            long power = 1;
+            for (int degree = 0; degree < coefficients.length; degree++) {
+                total = saturatedAdd(total, saturatedMultiply(coefficients[degree], power));
+                power = saturatedMultiply(power, iterations);
+            }
+            return total;
+        }
+
+        Cost plus(Cost other) {
+
+            long[] sum = Arrays.copyOf(coefficients, Math.max(coefficients.length, other.coefficients.length));
+            for (int degree = 0; degree < other.coefficients.length; degree++) {
+                sum[degree] = saturatedAdd(sum[degree], other.coefficients[degree]);
+            }
+            return new Cost(sum, recursive || other.recursive);
+        }
+
+        Cost max(Cost other) {
+
+            long[] max = Arrays.copyOf(coefficients, Math.max(coefficients.length, other.coefficients.length));
+            for (int degree = 0; degree < other.coefficients.length; degree++) {
+                max[degree] = Math.max(max[degree], other.coefficients[degree]);
+            }
+            return new Cost(max, recursive || other.recursive);
+        }
+
+        /**
+         * Returns this cost repeated {@code n} times.
+         */
+        Cost times() {
+
+            long[] product = new long[coefficients.length + 1];
+            System.arraycopy(coefficients, 0, product, 1, coefficients.length);
+            return new Cost(product, recursive);
+        }
+
+        Cost recursive() {
+            return recursive ? this : new Cost(coefficients, true);
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+
+        private static long saturatedMultiply(long a, long b) {
+            return a != 0 && b > Long.MAX_VALUE / a ? Long.MAX_VALUE : a * b;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Cost &&
+                    Arrays.equals(coefficients, ((Cost) obj).coefficients) &&
+                    recursive == ((Cost) obj).recursive;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(coefficients) + Boolean.hashCode(recursive);
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder builder = new StringBuilder();
+            for (int degree = coefficients.length - 1; degree >= 0; degree--) {
+                if (coefficients[degree] == 0 && (degree != 0 || builder.length() > 0)) {
+                    continue;
+                }
+                if (builder.length() > 0) {
+                    builder.append(" + ");
+                }
+                builder.append(coefficients[degree]);
+                if (degree > 0) {
+                    builder.append(degree == 1 ? "n" : "n^" + degree);
+                }
+            }
+            return recursive ? builder + " (recursive)" : builder.toString();
+        }
+
+    }
+
+}
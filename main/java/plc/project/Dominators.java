@@ -0,0 +1,164 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dominator tree of an {@link Ir.Function}, computed with the iterative
+ * algorithm of Cooper, Harvey and Kennedy over the reverse postorder of the
+ * blocks reachable from the entry.
+ *
+ * A block dominates another if every path from the entry to the other block
+ * passes through it. In SSA form every definition dominates its uses (and a
+ * phi operand's definition dominates the corresponding predecessor).
+ */
+public final class Dominators {
+
+    private final List<Ir.Block> order;
+    private final Map<Ir.Block, Integer> index = new HashMap<>();
+    private final Map<Ir.Block, Ir.Block> idom = new HashMap<>();
+    private final Map<Ir.Block, List<Ir.Block>> children = new HashMap<>();
+
+    public Dominators(Ir.Function function) {
+
+        order = reversePostorder(function.getEntry());
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i), i);
+            children.put(order.get(i), new ArrayList<>());
+        }
+
+        Ir.Block entry = function.getEntry();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Block block : order.subList(1, order.size())) {
+                Ir.Block dominator = null;
+                for (Ir.Block predecessor : block.getPredecessors()) {
+                    if (idom.containsKey(predecessor)) {
+                        dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                    }
+                }
+                if (idom.get(block) != dominator) {
+                    idom.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+        for (Ir.Block block : order.subList(1, order.size())) {
+            children.get(idom.get(block)).add(block);
+        }
+    }
+
+    /**
+     * Returns the blocks reachable from the entry in reverse postorder, where
+     * every block comes after its dominators.
+     */
+    public List<Ir.Block> getReversePostorder() {
+        return Collections.unmodifiableList(order);
+    }
+
+    public boolean isReachable(Ir.Block block) {
+        return index.containsKey(block);
+    }
+
+    /**
+     * Returns the immediate dominator of a block, or null for the entry and
+     * unreachable blocks.
+     */
+    public Ir.Block getImmediateDominator(Ir.Block block) {
+
+        Ir.Block dominator = idom.get(block);
+        return dominator == block ? null : dominator;
+    }
+
+    /**
+     * Returns the blocks immediately dominated by a block, its children in
+     * the dominator tree.
+     */
+    public List<Ir.Block> getChildren(Ir.Block block) {
+        return Collections.unmodifiableList(children.getOrDefault(block, Collections.emptyList()));
+    }
+
+    public boolean dominates(Ir.Block dominator, Ir.Block block) {
+
+        if (!isReachable(block)) {
+            return false;
+        }
+        for (Ir.Block current = block; current != null; current = getImmediateDominator(current)) {
+            if (current == dominator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the dominance frontier of a block: the blocks where its
+     * dominance ends, which are where definitions in it need phis.
+     */
+    public Set<Ir.Block> getFrontier(Ir.Block block) {
+
+        Set<Ir.Block> frontier = new HashSet<>();
+        for (Ir.Block join : order) {
+            if (join.getPredecessors().size() < 2) {
+                continue;
+            }
+            for (Ir.Block predecessor : join.getPredecessors()) {
+                for (Ir.Block runner = predecessor; isReachable(runner) && runner != idom.get(join); runner = idom.get(runner)) {
+                    if (runner == block) {
+                        frontier.add(join);
+                    }
+                }
+            }
+        }
+        return frontier;
+    }
+
+    private Ir.Block intersect(Ir.Block first, Ir.Block second) {
+
+        while (first != second) {
+            while (index.get(first) > index.get(second)) {
+                first = idom.get(first);
+            }
+            while (index.get(second) > index.get(first)) {
+                second = idom.get(second);
+            }
+        }
+        return first;
+    }
+
+    private static List<Ir.Block> reversePostorder(Ir.Block entry) {
+
+        List<Ir.Block> postorder = new ArrayList<>();
+        Set<Ir.Block> visited = new HashSet<>();
+        Deque<Iterator<Ir.Block>> stack = new ArrayDeque<>();
+        Deque<Ir.Block> blocks = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry.getSuccessors().iterator());
+        blocks.push(entry);
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                Ir.Block successor = stack.peek().next();
+                if (visited.add(successor)) {
+                    stack.push(successor.getSuccessors().iterator());
+                    blocks.push(successor);
+                }
+            } else {
+                stack.pop();
+                postorder.add(blocks.pop());
+            }
+        }
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+}
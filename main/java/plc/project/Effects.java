@@ -0,0 +1,83 @@
+package plc.project;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The writes a sequence of statements may perform: the local and field slots
+ * it declares or assigns, whether it assigns through a receiver (which may
+ * alias any object), and whether it makes calls (which may write any field or
+ * object).
+ */
+final class Effects extends AstScanner {
+
+    final Set<Integer> locals = new HashSet<>();
+    final Set<Integer> fields = new HashSet<>();
+    boolean objects = false;
+    boolean calls = false;
+
+    static Effects of(Ast.Stmt stmt) {
+        Effects effects = new Effects();
+        effects.visit(stmt);
+        return effects;
+    }
+
+    static Effects of(Ast.Expr expr) {
+        Effects effects = new Effects();
+        effects.visit(expr);
+        return effects;
+    }
+
+    static Effects of(Iterable<Ast.Stmt> statements) {
+        Effects effects = new Effects();
+        effects.scan(statements);
+        return effects;
+    }
+
+    /**
+     * Returns the effects of the body of a loop, including the writes of a FOR
+     * loop to its own variable.
+     */
+    static Effects ofLoop(Ast.Stmt stmt) {
+        Effects effects = new Effects();
+        if (stmt instanceof Ast.Stmt.For) {
+            effects.locals.add(((Ast.Stmt.For) stmt).getSlot());
+            effects.scan(((Ast.Stmt.For) stmt).getStatements());
+        } else {
+            effects.scan(((Ast.Stmt.While) stmt).getStatements());
+        }
+        return effects;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        locals.add(ast.getSlot());
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            objects = true;
+        } else if (receiver.getDepth() == Ast.Expr.Access.GLOBAL) {
+            fields.add(receiver.getSlot());
+        } else {
+            locals.add(receiver.getSlot());
+        }
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        locals.add(ast.getSlot());
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        calls = true;
+        return super.visit(ast);
+    }
+
+}
@@ -1,19 +1,61 @@
 package plc.project;
 
 import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public final class Generator implements Ast.Visitor<Void> {
 
+    /**
+     * Number of calls after which a call site is hot enough to be inlined.
+     */
+    public static final int HOT_CALLS = 1000;
+
     private final PrintWriter writer;
     private int indent = 0;
 
+    //counts from an earlier run guiding the emitted code, null to generate without one
+    private final Profile profile;
+    private CallGraph graph = null;
+    //arguments substituted for the parameters of the callee body being inlined, null outside of one
+    private Ast.Expr[] substitutions = null;
+    //slots of the current method declared with a boxed type since they may hold NIL
+    private final Set<Integer> boxed = new HashSet<>();
+    //slots of the current method declared as a long, each with a BigInteger shadow holding it once it overflows
+    private final Set<Integer> longs = new HashSet<>();
+    //true while printing the BigInteger recomputation of an overflowed long expression
+    private boolean exact = false;
+    //true while printing a comparison guarded by the shadows of the longs it reads being unused
+    private boolean guarded = false;
+    //true while printing an expression whose value is stored or operated on as a long
+    private boolean longContext = false;
+
     public Generator(PrintWriter writer) {
+        this(writer, null);
+    }
+
+    /**
+     * Creates a generator guided by a profile of the source (see
+     * {@link Interpreter#setProfile(Profile)}): branches taken more often are
+     * laid out first, equality of accesses observed to hold a single type is
+     * specialized to it behind a type check, and hot call sites of small
+     * methods are inlined.
+     */
+    public Generator(PrintWriter writer, Profile profile) {
         this.writer = writer;
+        this.profile = profile;
     }
 
     private void print(Object... objects) {
         for (Object object : objects) {
-            if (object instanceof Ast) {
+            if (exact && object instanceof Ast.Expr && !(object instanceof Ast.Expr.Literal)
+                    && ((Ast.Expr) object).getRepresentation() == RangeAnalyzer.Representation.BOXED) {
+                //a boxed INTEGER is an int in the generated code
+                exact = false;
+                print("java.math.BigInteger.valueOf(", object, ")");
+                exact = true;
+            } else if (object instanceof Ast) {
                 visit((Ast) object);
             } else {
                 writer.write(object.toString());
@@ -28,6 +70,336 @@ public final class Generator implements Ast.Visitor<Void> {
         }
     }
 
+    /**
+     * Generates the class from a source lowered to the {@link Ir} (see
+     * {@link IrBuilder}). Field initializers form the constructor, and each
+     * function declares a local per value and runs its blocks in a
+     * {@code while (true) switch (block)} loop. Phis are assigned on the edges
+     * into their block.
+     */
+    public void generate(Ir.Program program) {
+
+        print("public class Main {");
+        newline(0);
+        for (Environment.Variable field : program.getFields()) {
+            newline(1);
+            print(field.getType().getJvmName(), " ", field.getJvmName(), ";");
+        }
+        newline(0);
+        newline(1);
+        print("public static void main(String[] args) {");
+        newline(2);
+        print("System.exit(new Main().main());");
+        newline(1);
+        print("}");
+        newline(0);
+
+        indent = 1;
+        newline(indent);
+        print("Main() ");
+        generate(program.getInitializer());
+        for (Ir.Function function : program.getFunctions()) {
+            newline(0);
+            newline(indent);
+            Environment.Function signature = function.getFunction();
+            print(signature.getReturnType().getJvmName(), " ", signature.getJvmName(), "(");
+            for (int i = 0; i < function.getParameters().size(); i++) {
+                print(i == 0 ? "" : ", ", signature.getParameterTypes().get(i).getJvmName(), " ", function.getParameters().get(i));
+            }
+            print(") ");
+            generate(function);
+        }
+        newline(0);
+        newline(0);
+        print("}");
+        indent = 0;
+    }
+
+    private void generate(Ir.Function function) {
+
+        Dominators dominators = new Dominators(function);
+        IrStatements statements = new IrStatements(function);
+        print("{");
+        indent++;
+        for (Ir.Block block : dominators.getReversePostorder()) {
+            for (Ir.Phi phi : block.getPhis()) {
+                declare(phi);
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (!(instruction instanceof Ir.Terminator) && instruction.getType() != null || instruction instanceof Ir.IteratorStart) {
+                    declare(instruction);
+                }
+            }
+        }
+        newline(indent);
+        print("int block = ", function.getEntry().getId(), ";");
+        newline(indent);
+        print("while (true) {");
+        newline(++indent);
+        print("switch (block) {");
+        indent++;
+        for (Ir.Block block : dominators.getReversePostorder()) {
+            newline(indent);
+            print("case ", block.getId(), ":");
+            indent++;
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                statements.visit(instruction);
+            }
+            indent--;
+        }
+        newline(--indent);
+        print("}");
+        newline(--indent);
+        print("}");
+        newline(--indent);
+        print("}");
+    }
+
+    private void declare(Ir.Value value) {
+
+        newline(indent);
+        if (value instanceof Ir.IteratorStart) {
+            print("java.util.Iterator<Integer> ", name(value), " = null;");
+            return;
+        }
+        String type = value.getType().getJvmName();
+        String initial;
+        switch (type) {
+            case "int": initial = "0"; break;
+            case "double": initial = "0.0"; break;
+            case "boolean": initial = "false"; break;
+            case "char": initial = "'\\0'"; break;
+            default: initial = "null";
+        }
+        print(type, " ", name(value), " = ", initial, ";");
+    }
+
+    private static String name(Ir.Value value) {
+        return "v" + value.getId();
+    }
+
+    private static boolean isPrimitive(Ir.Value value) {
+        String type = value.getType() == null ? "" : value.getType().getJvmName();
+        return type.equals("int") || type.equals("double") || type.equals("boolean") || type.equals("char");
+    }
+
+    private static String literal(Object value) {
+
+        if (value == null) {
+            return "null";
+        } else if (value instanceof String || value instanceof Character) {
+            String quote = value instanceof String ? "\"" : "'";
+            String escaped = value.toString()
+                    .replace("\\", "\\\\")
+                    .replace(quote, "\\" + quote)
+                    .replace("\n", "\\n")
+                    .replace("\r", "\\r")
+                    .replace("\t", "\\t");
+            return quote + escaped + quote;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Prints the Java statements of each instruction of a function.
+     */
+    private final class IrStatements implements Ir.Visitor<Void> {
+
+        private final Ir.Function function;
+
+        private IrStatements(Ir.Function function) {
+            this.function = function;
+        }
+
+        private void assign(Ir.Value value, Object... expression) {
+
+            newline(indent);
+            print(name(value), " = ");
+            print(expression);
+            print(";");
+        }
+
+        private void call(Ir.Instruction instruction, String callee, List<Ir.Value> arguments) {
+
+            newline(indent);
+            if (instruction.getType() != Environment.Type.NIL) {
+                print(name(instruction), " = ");
+            }
+            print(callee, "(");
+            for (int i = 0; i < arguments.size(); i++) {
+                print(i == 0 ? "" : ", ", name(arguments.get(i)));
+            }
+            print(");");
+        }
+
+        /**
+         * Assigns the phis of a target from the operands for the edge from the
+         * current block, through temporaries since they are assigned at once.
+         */
+        private void edge(Ir.Block from, Ir.Block to) {
+
+            List<Ir.Phi> phis = to.getPhis();
+            int edge = to.getPredecessors().indexOf(from);
+            if (phis.size() == 1) {
+                assign(phis.get(0), name(phis.get(0).getOperand(edge)));
+            } else if (phis.size() > 1) {
+                newline(indent);
+                print("{");
+                indent++;
+                for (Ir.Phi phi : phis) {
+                    newline(indent);
+                    print(phi.getType().getJvmName(), " t", phi.getId(), " = ", name(phi.getOperand(edge)), ";");
+                }
+                for (Ir.Phi phi : phis) {
+                    assign(phi, "t", phi.getId());
+                }
+                newline(--indent);
+                print("}");
+            }
+            newline(indent);
+            print("block = ", to.getId(), ";");
+        }
+
+        @Override
+        public Void visit(Ir.Constant instruction) {
+            assign(instruction, literal(instruction.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Parameter instruction) {
+            assign(instruction, function.getParameters().get(instruction.getIndex()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Phi instruction) {
+            throw new AssertionError("Phis are assigned on the edges into their block.");
+        }
+
+        @Override
+        public Void visit(Ir.Binary instruction) {
+
+            String left = name(instruction.getOperand(0));
+            String right = name(instruction.getOperand(1));
+            String operator = instruction.getOperator();
+            boolean primitive = isPrimitive(instruction.getOperand(0)) && isPrimitive(instruction.getOperand(1));
+            if (operator.equals("==") || operator.equals("!=")) {
+                String not = operator.equals("!=") ? "!" : "";
+                if (primitive) {
+                    assign(instruction, left, " ", operator, " ", right);
+                } else {
+                    assign(instruction, not, "java.util.Objects.equals(", left, ", ", right, ")");
+                }
+            } else if (!primitive && (operator.equals("<") || operator.equals("<=") || operator.equals(">") || operator.equals(">="))) {
+                assign(instruction, left, ".compareTo(", right, ") ", operator, " 0");
+            } else {
+                assign(instruction, left, " ", operator, " ", right);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.GetGlobal instruction) {
+            assign(instruction, instruction.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.SetGlobal instruction) {
+
+            newline(indent);
+            print(instruction.getName(), " = ", name(instruction.getOperand(0)), ";");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.GetField instruction) {
+            assign(instruction, name(instruction.getOperand(0)), ".", instruction.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.SetField instruction) {
+
+            newline(indent);
+            print(name(instruction.getOperand(0)), ".", instruction.getName(), " = ", name(instruction.getOperand(1)), ";");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Call instruction) {
+            call(instruction, instruction.getFunction().getJvmName(), instruction.getOperands());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.CallMethod instruction) {
+
+            List<Ir.Value> operands = instruction.getOperands();
+            call(instruction, name(operands.get(0)) + "." + instruction.getFunction().getJvmName(), operands.subList(1, operands.size()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.IteratorStart instruction) {
+            assign(instruction, name(instruction.getOperand(0)), ".iterator()");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.IteratorHasNext instruction) {
+            assign(instruction, name(instruction.getOperand(0)), ".hasNext()");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.IteratorNext instruction) {
+            assign(instruction, name(instruction.getOperand(0)), ".next()");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Jump instruction) {
+
+            edge(instruction.getBlock(), instruction.getTarget());
+            newline(indent);
+            print("break;");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Branch instruction) {
+
+            newline(indent);
+            print("if (", name(instruction.getOperand(0)), ") {");
+            indent++;
+            edge(instruction.getBlock(), instruction.getThen());
+            newline(--indent);
+            print("} else {");
+            indent++;
+            edge(instruction.getBlock(), instruction.getOtherwise());
+            newline(--indent);
+            print("}");
+            newline(indent);
+            print("break;");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ir.Return instruction) {
+
+            newline(indent);
+            if (function.getFunction() == null) {
+                print("return;");
+            } else {
+                print("return ", name(instruction.getOperand(0)), ";");
+            }
+            return null;
+        }
+
+    }
+
     /*@Override
     public Void visit(Ast.Source ast) {
 
@@ -66,16 +438,17 @@ public final class Generator implements Ast.Visitor<Void> {
         print("}");
         newline(0);
 
-        newline(1);
-        print("int main() {");
-        newline(2);
-        print("System.out.println(\"Hello, World!\");");
-        newline(2);
-        print("return 0;");
-        newline(1);
-        print("}");
+        if (profile != null) {
+            graph = new CallGraph(ast);
+        }
+        indent = 1;
+        for (Ast.Method method : ast.getMethods()) {
+            newline(indent);
+            print(method);
+            newline(0);
+        }
+        indent = 0;
 
-        newline(0);
         newline(0);
         print("}");
 
@@ -84,9 +457,12 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Field ast) {
-        print(ast.getTypeName(), " ", ast.getVariable().getName());
+        if (ast.isEffectivelyConstant()) {
+            print("final ");
+        }
+        print(ast.getVariable().getType().getJvmName(), " ", ast.getVariable().getJvmName());
         if (ast.getValue().isPresent()) {
-            print(" = ", ast.getVariable().getValue());
+            print(" = ", ast.getValue().get());
         }
         print(";");
         return null;
@@ -95,17 +471,19 @@ public final class Generator implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Method ast) {
 
-        print(ast.getFunction().getJvmName(), " ", ast.getFunction().getName(), "(");
-        int size = ast.getParameters().size();
-        for (int i = 0; i < size - 1; i++) {
-            print(ast.getParameters().get(i), ", ");
+        boxed.clear();
+        longs.clear();
+        print(ast.getFunction().getReturnType().getJvmName(), " ", ast.getFunction().getJvmName(), "(");
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            print(i == 0 ? "" : ", ", ast.getFunction().getParameterTypes().get(i).getJvmName(), " ", ast.getParameters().get(i));
         }
-        print(ast.getParameters().get(size - 1));
+        print(")");
 
         if (ast.getStatements().size() == 0) {
             print(" {}");
         }
         else {
+            print(" {");
             newline(++indent);
             for (int i = 0; i < ast.getStatements().size(); i++) {
                 if (i != 0) {
@@ -128,60 +506,113 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.Declaration ast) {
-        print(ast.getVariable().getType().getJvmName(),
-                " ",
-                ast.getVariable().getJvmName());
+        String box = box(ast.getVariable().getType().getJvmName());
+        if (ast.getRepresentation() == RangeAnalyzer.Representation.LONG) {
+            String name = ast.getVariable().getJvmName();
+            longs.add(ast.getSlot());
+            print("long ", name, " = 0L;");
+            newline(indent);
+            print("java.math.BigInteger ", name, "$exact = null;");
+            newline(indent);
+            store(name, ast.getValue().get());
+            return null;
+        }
+        else if (!ast.isNonNil() && box != null) {
+            //a primitive cannot hold NIL
+            boxed.add(ast.getSlot());
+            print(box);
+        }
+        else
+            print(ast.getVariable().getType().getJvmName());
+        print(" ", ast.getVariable().getJvmName());
         if (ast.getValue().isPresent()) {
             print(" = ", ast.getValue().get());
         }
+        else if (boxed.contains(ast.getSlot())) {
+            print(" = null");
+        }
         print(";");
         return null;
     }
 
     @Override
     public Void visit(Ast.Stmt.Assignment ast) {
+        if (isLong(ast.getReceiver())) {
+            store(((Ast.Expr.Access) ast.getReceiver()).getVariable().getJvmName(), ast.getValue());
+            return null;
+        }
         print(ast.getReceiver(), " = \"", ast.getValue(), "\";");
         return null;
     }
 
+    /**
+     * Stores an INTEGER into a long local, as the {@link Interpreter} does: the
+     * value is computed with overflow checks and, if they fail, computed again
+     * exactly into the BigInteger shadow of the local. Unboxed expressions are
+     * pure, so evaluating them again is safe.
+     */
+    private void store(String name, Ast.Expr value) {
+
+        if (value.getRepresentation() == RangeAnalyzer.Representation.BOXED) {
+            print(name, " = ", value, ";");
+            newline(indent);
+            print(name, "$exact = null;");
+            return;
+        }
+        print("try {");
+        newline(++indent);
+        longContext = true;
+        print(name, " = ", value, ";");
+        longContext = false;
+        newline(indent);
+        print(name, "$exact = null;");
+        newline(--indent);
+        print("} catch (ArithmeticException e) {");
+        newline(++indent);
+        exact = true;
+        print(name, "$exact = ", value, ";");
+        exact = false;
+        newline(--indent);
+        print("}");
+    }
+
     @Override
     public Void visit(Ast.Stmt.If ast) {
-        print("if (", ast.getCondition(), ") {");
 
-        if (!(ast.getThenStatements().isEmpty()) && (ast.getElseStatements().isEmpty())) {
-            newline(++indent);
-            for (int i = 0; i < ast.getThenStatements().size(); i++) {
-                if (i != 0) {
-                    newline(indent);
-                }
-                print(ast.getThenStatements().get(i));
-            }
-        }
+        //with a profile, the more frequent branch comes first so it falls through
+        boolean swap = profile != null && !ast.getElseStatements().isEmpty() && profile.getElseCount(ast) > profile.getThenCount(ast);
+        List<Ast.Stmt> first = swap ? ast.getElseStatements() : ast.getThenStatements();
+        List<Ast.Stmt> second = swap ? ast.getThenStatements() : ast.getElseStatements();
 
-        if (!(ast.getThenStatements().isEmpty()) && !(ast.getElseStatements().isEmpty())) {
-            newline(++indent);
-            for (int i = 0; i < ast.getThenStatements().size(); i++) {
-                if (i != 0) {
-                    newline(indent);
-                }
-                print(ast.getThenStatements().get(i));
-            }
-            newline(--indent);
+        if (swap) {
+            print("if (!(", ast.getCondition(), ")) {");
+        } else {
+            print("if (", ast.getCondition(), ") {");
+        }
+        statements(first);
+        if (!second.isEmpty()) {
             print("} else {");
-            newline(++indent);
-            for (int i = 0; i < ast.getElseStatements().size(); i++) {
-                if (i != 0) {
-                    newline(indent);
-                }
-                print(ast.getElseStatements().get(i));
-            }
+            statements(second);
         }
-
-        newline(0);
         print("}");
         return null;
     }
 
+    private void statements(List<Ast.Stmt> statements) {
+
+        if (statements.isEmpty()) {
+            return;
+        }
+        newline(++indent);
+        for (int i = 0; i < statements.size(); i++) {
+            if (i != 0) {
+                newline(indent);
+            }
+            print(statements.get(i));
+        }
+        newline(--indent);
+    }
+
     @Override
     public Void visit(Ast.Stmt.For ast) {
         return null;
@@ -189,6 +620,10 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.While ast) {
+        if (ast.getCountedLoop() != null) {
+            counted(ast);
+            return null;
+        }
         print("while (", ast.getCondition(), ") {");
         if (!ast.getStatements().isEmpty()) {
             newline(++indent);
@@ -205,6 +640,50 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Emits a counted loop as a Java {@code for} over the counter, which the
+     * JIT compiles as a counted loop of its own.
+     */
+    private void counted(Ast.Stmt.While ast) {
+
+        InductionAnalyzer.CountedLoop loop = ast.getCountedLoop();
+        String counter = loop.getCounter().getVariable().getJvmName();
+        if (isLong(loop.getCounter())) {
+            //the update may overflow into the shadow of the counter, which a for header cannot catch
+            print("for (; ", ast.getCondition(), "; ) {");
+            newline(++indent);
+            for (Ast.Stmt stmt : loop.getBody()) {
+                print(stmt);
+                newline(indent);
+            }
+            print("try {");
+            newline(++indent);
+            print(counter, " = Math.addExact(", loop.getCounter(), ", ", loop.getStep(), "L);");
+            newline(indent);
+            print(counter, "$exact = null;");
+            newline(--indent);
+            print("} catch (ArithmeticException e) {");
+            newline(++indent);
+            exact = true;
+            print(counter, "$exact = ", loop.getCounter(), ".add(java.math.BigInteger.valueOf(", loop.getStep(), "L));");
+            exact = false;
+            newline(--indent);
+            print("}");
+            newline(--indent);
+            print("}");
+            return;
+        }
+        String update;
+        if (loop.getStep() < 0) {
+            update = counter + " -= " + -loop.getStep();
+        } else {
+            update = counter + " += " + loop.getStep();
+        }
+        print("for (; ", ast.getCondition(), "; ", update, ") {");
+        statements(loop.getBody());
+        print("}");
+    }
+
     @Override
     public Void visit(Ast.Stmt.Return ast) {
         print ("return ", ast.getValue(),";");
@@ -214,7 +693,11 @@ public final class Generator implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Expr.Literal ast) {
 
-        if (ast.getType() == Environment.Type.STRING)
+        if (exact && ast.getLiteral() instanceof java.math.BigInteger)
+            print("new java.math.BigInteger(\"", ast.getLiteral(), "\")");
+        else if (ast.getRepresentation() == RangeAnalyzer.Representation.LONG)
+            print(ast.getLiteral(), "L");
+        else if (ast.getType() == Environment.Type.STRING)
             print ("\"", ast.getLiteral(), "\"");
         else if (ast.getType() == Environment.Type.CHARACTER)
             print ("\'", ast.getLiteral(), "\'");
@@ -232,20 +715,259 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expr.Binary ast) {
-        if (ast.getOperator() == "AND") {
+        //checked arithmetic is a long, anywhere else an INTEGER is an int
+        boolean checked = longContext && ast.getRepresentation() == RangeAnalyzer.Representation.LONG;
+        boolean context = longContext;
+        longContext = ast.getRepresentation() != RangeAnalyzer.Representation.BOXED;
+        if (exact) {
+            exact(ast);
+        }
+        else if (ast.getOperatorCode() != null && ast.getOperatorCode().isComparison() && (involvesLong(ast.getLeft()) || involvesLong(ast.getRight()))) {
+            comparison(ast);
+        }
+        else if (ast.getOperator() == "AND") {
             print (ast.getLeft(), " && ", ast.getRight());
         }
         else if (ast.getOperator() == "OR") {
             print (ast.getLeft(), "||", ast.getRight());
         }
+        else if (checked && ast.getOperator().equals("+")) {
+            print ("Math.addExact((long) ", ast.getLeft(), ", (long) ", ast.getRight(), ")");
+        }
+        else if (checked && ast.getOperator().equals("-")) {
+            print ("Math.subtractExact((long) ", ast.getLeft(), ", (long) ", ast.getRight(), ")");
+        }
+        else if (checked && ast.getOperator().equals("*")) {
+            print ("Math.multiplyExact((long) ", ast.getLeft(), ", (long) ", ast.getRight(), ")");
+        }
+        else if ((ast.getOperator().equals("==") || ast.getOperator().equals("!=")) && specialization(ast) != null) {
+            String[] type = specialization(ast);
+            String not = ast.getOperator().equals("!=") ? "!" : "";
+            print("(", ast.getLeft(), " instanceof ", type[0], " && ", ast.getRight(), " instanceof ", type[0],
+                    " ? ((", type[0], ") ", ast.getLeft(), ").", type[1], "() ", ast.getOperator(), " ((", type[0], ") ", ast.getRight(), ").", type[1], "()",
+                    " : ", not, "java.util.Objects.equals(", ast.getLeft(), ", ", ast.getRight(), "))");
+        }
+        else if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+            equality(ast);
+        }
         else
             print (ast.getLeft(), " ", ast.getOperator(), " ", ast.getRight());
+        longContext = context;
+        return null;
+    }
+
+    /**
+     * Emits the exact BigInteger form of an unboxed expression, recomputing it
+     * after its long form overflowed. Anything boxed is an int in the
+     * generated code and is converted as is.
+     */
+    private void exact(Ast.Expr.Binary ast) {
+
+        switch (ast.getOperator()) {
+            case "+": print(ast.getLeft(), ".add(", ast.getRight(), ")"); break;
+            case "-": print(ast.getLeft(), ".subtract(", ast.getRight(), ")"); break;
+            case "*": print(ast.getLeft(), ".multiply(", ast.getRight(), ")"); break;
+            case "/": print(ast.getLeft(), ".divide(", ast.getRight(), ")"); break;
+            default: print(ast.getLeft(), ".compareTo(", ast.getRight(), ") ", ast.getOperator(), " 0");
+        }
+    }
+
+    /**
+     * Emits a comparison reading long locals. While none of their shadows are
+     * in use and no operand can overflow, the longs are compared directly;
+     * otherwise the comparison is made exactly.
+     */
+    private void comparison(Ast.Expr.Binary ast) {
+
+        Set<String> shadows = new java.util.LinkedHashSet<>();
+        boolean arithmetic = shadows(ast.getLeft(), shadows) | shadows(ast.getRight(), shadows);
+        if (!arithmetic) {
+            print("(", String.join(" && ", shadows), " ? ");
+            guarded = true;
+            print(ast.getLeft(), " ", ast.getOperator(), " ", ast.getRight());
+            guarded = false;
+            print(" : ");
+        }
+        exact = true;
+        print(ast.getLeft(), ".compareTo(", ast.getRight(), ") ", ast.getOperator(), " 0");
+        exact = false;
+        if (!arithmetic) {
+            print(")");
+        }
+    }
+
+    /**
+     * Collects the shadow checks of the long locals an expression reads,
+     * returning true if it also contains arithmetic that may overflow.
+     */
+    private boolean shadows(Ast.Expr expr, Set<String> shadows) {
+
+        if (expr instanceof Ast.Expr.Group) {
+            return shadows(((Ast.Expr.Group) expr).getExpression(), shadows);
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            boolean arithmetic = shadows(binary.getLeft(), shadows) | shadows(binary.getRight(), shadows);
+            return arithmetic || binary.getRepresentation() == RangeAnalyzer.Representation.LONG;
+        } else if (isLong(expr)) {
+            shadows.add(((Ast.Expr.Access) expr).getVariable().getJvmName() + "$exact == null");
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if an expression reads a long local or contains arithmetic
+     * that may overflow a long.
+     */
+    private boolean involvesLong(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Group) {
+            return involvesLong(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            return binary.getRepresentation() == RangeAnalyzer.Representation.LONG
+                    || involvesLong(binary.getLeft()) || involvesLong(binary.getRight());
+        }
+        return isLong(expr);
+    }
+
+    /**
+     * Returns true if no argument reads a local declared as a long or boxed,
+     * since the inlined callee's arithmetic on its parameters is emitted as
+     * {@code int}.
+     */
+    private boolean fitsCallee(List<Ast.Expr> arguments) {
+
+        for (Ast.Expr argument : arguments) {
+            Ast.Expr expr = argument;
+            while (expr instanceof Ast.Expr.Group) {
+                expr = ((Ast.Expr.Group) expr).getExpression();
+            }
+            if (involvesLong(expr) || expr instanceof Ast.Expr.Access && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL
+                    && boxed.contains(((Ast.Expr.Access) expr).getSlot())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if an expression is a local declared as a long.
+     */
+    private boolean isLong(Ast.Expr expr) {
+        return substitutions == null && expr instanceof Ast.Expr.Access
+                && !((Ast.Expr.Access) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL
+                && longs.contains(((Ast.Expr.Access) expr).getSlot());
+    }
+
+    /**
+     * Emits an equality using the operands' nullability: a primitive
+     * comparison if either side is a Java primitive and neither is NIL, a
+     * direct {@code equals} if the left side is an object that is not NIL,
+     * and a NIL-safe {@code Objects.equals} otherwise.
+     */
+    private void equality(Ast.Expr.Binary ast) {
+
+        String not = ast.getOperator().equals("!=") ? "!" : "";
+        boolean left = isPrimitive(ast.getLeft());
+        boolean right = isPrimitive(ast.getRight());
+        if (left && right || (left || right) && ast.getLeft().isNonNil() && ast.getRight().isNonNil()) {
+            print(ast.getLeft(), " ", ast.getOperator(), " ", ast.getRight());
+        } else if (!left && ast.getLeft().isNonNil()) {
+            print(not, ast.getLeft(), ".equals(", ast.getRight(), ")");
+        } else {
+            print(not, "java.util.Objects.equals(", ast.getLeft(), ", ", ast.getRight(), ")");
+        }
+    }
+
+    /**
+     * Returns true if an expression is emitted as a Java primitive value.
+     */
+    private boolean isPrimitive(Ast.Expr expr) {
+
+        if (expr.getRepresentation() != RangeAnalyzer.Representation.BOXED) {
+            return true;
+        } else if (expr instanceof Ast.Expr.Group) {
+            return isPrimitive(((Ast.Expr.Group) expr).getExpression());
+        } else if (box(expr.getType().getJvmName()) == null || expr instanceof Ast.Expr.Literal && ((Ast.Expr.Literal) expr).getLiteral() == null) {
+            return false;
+        } else if (expr instanceof Ast.Expr.Access && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL) {
+            //a substituted argument may be emitted as anything
+            return substitutions == null && !boxed.contains(((Ast.Expr.Access) expr).getSlot());
+        }
+        return true;
+    }
+
+    private static String box(String jvmName) {
+
+        switch (jvmName) {
+            case "int": return "Integer";
+            case "double": return "Double";
+            case "boolean": return "Boolean";
+            case "char": return "Character";
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns the boxed Java class (and its unboxing method) of the primitive
+     * type both operands of an equality were observed to hold, if they are
+     * statically reference typed and can be read more than once (receiver-less
+     * accesses), or null.
+     */
+    private String[] specialization(Ast.Expr.Binary ast) {
+
+        if (profile == null || !isPlainAccess(ast.getLeft()) || !isPlainAccess(ast.getRight())) {
+            return null;
+        }
+        Environment.Type type = profile.getDominantType(ast.getLeft());
+        if (type == null || type != profile.getDominantType(ast.getRight())
+                || ast.getLeft().getType() == type && ast.getRight().getType() == type) {
+            return null;
+        }
+        if (type == Environment.Type.INTEGER) {
+            return new String[] {"Integer", "intValue"};
+        } else if (type == Environment.Type.DECIMAL) {
+            return new String[] {"Double", "doubleValue"};
+        } else if (type == Environment.Type.BOOLEAN) {
+            return new String[] {"Boolean", "booleanValue"};
+        } else if (type == Environment.Type.CHARACTER) {
+            return new String[] {"Character", "charValue"};
+        }
         return null;
     }
 
+    private static boolean isPlainAccess(Ast.Expr expr) {
+        return expr instanceof Ast.Expr.Access && !((Ast.Expr.Access) expr).getReceiver().isPresent();
+    }
+
     @Override
     public Void visit(Ast.Expr.Access ast) {
-        if (!ast.getReceiver().isPresent()) {
+        if (substitutions != null && !ast.getReceiver().isPresent() && ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            //a parameter of an inlined callee, the argument is in terms of the caller
+            Ast.Expr[] arguments = substitutions;
+            substitutions = null;
+            print(arguments[ast.getSlot()]);
+            substitutions = arguments;
+            return null;
+        }
+        if (isLong(ast)) {
+            String name = ast.getVariable().getJvmName();
+            if (exact) {
+                print("(", name, "$exact != null ? ", name, "$exact : java.math.BigInteger.valueOf(", name, "))");
+            } else if (guarded) {
+                print(name);
+            } else {
+                //an overflowed local only fits in its shadow, which fails the checked arithmetic reading it
+                print("(", name, "$exact == null ? ", name, " : ", name, "$exact.longValueExact())");
+            }
+        }
+        else if (exact) {
+            exact = false;
+            print("java.math.BigInteger.valueOf(", ast, ")");
+            exact = true;
+        }
+        else if (!ast.getReceiver().isPresent()) {
             print(ast.getVariable().getJvmName());
         }
         else {
@@ -257,15 +979,24 @@ public final class Generator implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Expr.Function ast) {
 
+        Ast.Method callee = graph == null ? null : graph.getCallee(ast);
+        if (callee != null && substitutions == null && profile.getCallCount(ast) >= HOT_CALLS
+                && Inliner.isInlinable(graph, callee, Inliner.DEFAULT_BUDGET) && Inliner.canSubstitute(graph, ast.getArguments(), callee)
+                && fitsCallee(ast.getArguments())) {
+            substitutions = ast.getArguments().toArray(new Ast.Expr[0]);
+            print("(", ((Ast.Stmt.Return) callee.getStatements().get(0)).getValue(), ")");
+            substitutions = null;
+            return null;
+        }
+
         if (ast.getReceiver().isPresent()) {
             print(ast.getReceiver().get(), ".");
         }
         print(ast.getFunction().getJvmName(), "(");
-        int size = ast.getArguments().size();
-        for (int i = 0; i < size - 1; i++) {
-            print(ast.getArguments().get(i), ", ");
+        for (int i = 0; i < ast.getArguments().size(); i++) {
+            print(i == 0 ? "" : ", ", ast.getArguments().get(i));
         }
-        print(ast.getArguments().get(size - 1), ")");
+        print(")");
 
         return null;
     }
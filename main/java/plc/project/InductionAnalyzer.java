@@ -0,0 +1,230 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Recognizes {@code WHILE} loops of an analyzed method that count an INTEGER
+ * local towards an invariant bound, the shape
+ *
+ * <pre>
+ * WHILE i &lt; n DO
+ *     ...
+ *     i = i + 1;
+ * END
+ * </pre>
+ *
+ * and marks them with a {@link CountedLoop}, which the {@link Interpreter} and
+ * {@link Generator} execute with a primitive counter instead of evaluating the
+ * condition and increment as expressions.
+ *
+ * The comparison may be any of {@code <}, {@code <=}, {@code >} and
+ * {@code >=}, and the increment any {@code i = i + c} or {@code i = i - c}
+ * moving the counter towards the bound. The counter must not be assigned
+ * anywhere else in the body, and the bound must be a literal, a local other
+ * than the counter that the body does not assign, or a field the body neither
+ * assigns nor could assign through a call.
+ */
+public final class InductionAnalyzer extends AstScanner {
+
+    private InductionAnalyzer() {}
+
+    /**
+     * Marks the counted loops of a method that has already been resolved by
+     * the {@link Analyzer}.
+     */
+    public static void analyze(Ast.Method method) {
+        new InductionAnalyzer().visit(method);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        recognize(ast);
+        return super.visit(ast);
+    }
+
+    /**
+     * Marks a single resolved loop, returning it. Passes rewriting a loop use
+     * this to recognize the rewritten loop again.
+     */
+    public static Ast.Stmt.While recognize(Ast.Stmt.While ast) {
+        ast.setCountedLoop(match(ast));
+        return ast;
+    }
+
+    private static CountedLoop match(Ast.Stmt.While ast) {
+
+        if (!(ast.getCondition() instanceof Ast.Expr.Binary) || ast.getStatements().isEmpty()) {
+            return null;
+        }
+        Ast.Expr.Binary condition = (Ast.Expr.Binary) ast.getCondition();
+        String operator = condition.getOperator();
+        if (!operator.equals("<") && !operator.equals("<=") && !operator.equals(">") && !operator.equals(">=")) {
+            return null;
+        }
+        if (!isLocal(condition.getLeft()) || condition.getLeft().getType() != Environment.Type.INTEGER) {
+            return null;
+        }
+        Ast.Expr.Access counter = (Ast.Expr.Access) condition.getLeft();
+        //the increment is not part of the body's writes, so a bound that is the counter would look invariant
+        if (isLocal(condition.getRight()) && ((Ast.Expr.Access) condition.getRight()).getSlot() == counter.getSlot()) {
+            return null;
+        }
+
+        Ast.Stmt last = ast.getStatements().get(ast.getStatements().size() - 1);
+        Long step = step(counter.getSlot(), last);
+        if (step == null || step == 0 || (operator.startsWith("<") ? step < 0 : step > 0)) {
+            return null;
+        }
+
+        List<Ast.Stmt> body = ast.getStatements().subList(0, ast.getStatements().size() - 1);
+        Writes writes = new Writes();
+        writes.scan(body);
+        if (writes.locals.get(counter.getSlot()) || !isInvariant(condition.getRight(), writes)) {
+            return null;
+        }
+        return new CountedLoop(counter, operator, condition.getRight(), step, body);
+    }
+
+    /**
+     * Returns the step of an increment {@code i = i + c} or
+     * {@code i = i - c} of the given slot by a literal fitting in a long,
+     * or null if the statement is not one.
+     */
+    private static Long step(int slot, Ast.Stmt stmt) {
+
+        if (!(stmt instanceof Ast.Stmt.Assignment)) {
+            return null;
+        }
+        Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) stmt;
+        if (!isLocal(assignment.getReceiver()) || ((Ast.Expr.Access) assignment.getReceiver()).getSlot() != slot
+                || !(assignment.getValue() instanceof Ast.Expr.Binary)) {
+            return null;
+        }
+        Ast.Expr.Binary value = (Ast.Expr.Binary) assignment.getValue();
+        if (!isLocal(value.getLeft()) || ((Ast.Expr.Access) value.getLeft()).getSlot() != slot
+                || !(value.getRight() instanceof Ast.Expr.Literal)
+                || !(((Ast.Expr.Literal) value.getRight()).getLiteral() instanceof BigInteger)) {
+            return null;
+        }
+        BigInteger constant = (BigInteger) ((Ast.Expr.Literal) value.getRight()).getLiteral();
+        //keeping the step within an int rules out overflowing it when negated
+        if (constant.bitLength() >= Integer.SIZE) {
+            return null;
+        }
+        if (value.getOperator().equals("+")) {
+            return constant.longValue();
+        } else if (value.getOperator().equals("-")) {
+            return -constant.longValue();
+        }
+        return null;
+    }
+
+    private static boolean isInvariant(Ast.Expr bound, Writes writes) {
+
+        if (bound.getType() != Environment.Type.INTEGER) {
+            return false;
+        } else if (bound instanceof Ast.Expr.Literal) {
+            return true;
+        } else if (isLocal(bound)) {
+            return !writes.locals.get(((Ast.Expr.Access) bound).getSlot());
+        } else if (bound instanceof Ast.Expr.Access && !((Ast.Expr.Access) bound).getReceiver().isPresent()
+                && ((Ast.Expr.Access) bound).getDepth() == Ast.Expr.Access.GLOBAL) {
+            return !writes.calls && !writes.fields.get(((Ast.Expr.Access) bound).getSlot());
+        }
+        return false;
+    }
+
+    private static boolean isLocal(Ast.Expr expr) {
+        return expr instanceof Ast.Expr.Access && !((Ast.Expr.Access) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL;
+    }
+
+    /**
+     * The locals and fields a loop body assigns, and whether it calls
+     * anything (which may assign any field).
+     */
+    private static final class Writes extends AstScanner {
+
+        private final BitSet locals = new BitSet();
+        private final BitSet fields = new BitSet();
+        private boolean calls = false;
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+
+            Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+            if (!access.getReceiver().isPresent() && access.getDepth() == Ast.Expr.Access.LOCAL) {
+                locals.set(access.getSlot());
+            } else if (!access.getReceiver().isPresent() && access.getDepth() == Ast.Expr.Access.GLOBAL) {
+                fields.set(access.getSlot());
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            calls = true;
+            return super.visit(ast);
+        }
+
+    }
+
+    /**
+     * A loop lowered to a primitive counter: while the counter compares to
+     * the bound with the operator, the body runs and the counter advances by
+     * the step. The body is the loop's statements without the increment.
+     */
+    public static final class CountedLoop {
+
+        private final Ast.Expr.Access counter;
+        private final String operator;
+        private final Ast.Expr bound;
+        private final long step;
+        private final List<Ast.Stmt> body;
+
+        private CountedLoop(Ast.Expr.Access counter, String operator, Ast.Expr bound, long step, List<Ast.Stmt> body) {
+            this.counter = counter;
+            this.operator = operator;
+            this.bound = bound;
+            this.step = step;
+            this.body = body;
+        }
+
+        public Ast.Expr.Access getCounter() {
+            return counter;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public Ast.Expr getBound() {
+            return bound;
+        }
+
+        public long getStep() {
+            return step;
+        }
+
+        public List<Ast.Stmt> getBody() {
+            return body;
+        }
+
+        /**
+         * Returns true if the loop continues with the given counter and bound.
+         */
+        public boolean test(long value, long limit) {
+
+            switch (operator) {
+                case "<": return value < limit;
+                case "<=": return value <= limit;
+                case ">": return value > limit;
+                default: return value >= limit;
+            }
+        }
+
+    }
+
+}
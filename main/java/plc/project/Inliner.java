@@ -0,0 +1,157 @@
+package plc.project;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Substitutes the bodies of small, non-recursive methods at their call sites
+ * in an analyzed source.
+ *
+ * A method is inlined if its body is a single {@code RETURN expr;} where
+ * {@code expr} is within the size budget, and it cannot reach itself through
+ * the call graph. Parameters are replaced by the arguments, so a call is only
+ * inlined if every argument can be evaluated any number of times, in any
+ * order, with the same result: literals, locals, and (when the body makes no
+ * calls that could write to them) fields.
+ */
+public final class Inliner extends AstRewriter {
+
+    public static final int DEFAULT_BUDGET = 16;
+
+    private final int budget;
+    private CallGraph graph;
+    private final Map<Ast.Method, Boolean> inlinable = new IdentityHashMap<>();
+
+    //parameter substitutions for the callee body currently being copied, null outside of one
+    private Ast.Expr[] arguments = null;
+
+    public Inliner() {
+        this(DEFAULT_BUDGET);
+    }
+
+    public Inliner(int budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+
+        graph = new CallGraph(ast);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Access ast) {
+
+        if (arguments != null && !ast.getReceiver().isPresent() && ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            //the copy may be substituted more than once, so it is copied again for each use
+            Ast.Expr[] substitutions = arguments;
+            arguments = null;
+            try {
+                return rewrite(substitutions[ast.getSlot()]);
+            } finally {
+                arguments = substitutions;
+            }
+        }
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Function ast) {
+
+        Ast.Method callee = graph.getCallee(ast);
+        if (callee == null || !isInlinable(callee) || !canSubstitute(graph, ast.getArguments(), callee)) {
+            return super.visit(ast);
+        }
+
+        Ast.Expr[] substitutions = new Ast.Expr[ast.getArguments().size()];
+        for (int i = 0; i < substitutions.length; i++) {
+            substitutions[i] = rewrite(ast.getArguments().get(i));
+        }
+        Ast.Expr[] enclosing = arguments;
+        arguments = substitutions;
+        try {
+            Ast.Expr body = rewrite(((Ast.Stmt.Return) callee.getStatements().get(0)).getValue());
+            //keep the inlined expression grouped so the Generator preserves its precedence
+            if (!(body instanceof Ast.Expr.Binary)) {
+                return body;
+            }
+            Ast.Expr.Group group = new Ast.Expr.Group(body);
+            group.setType(body.getType());
+            group.setRepresentation(body.getRepresentation());
+            return group;
+        } finally {
+            arguments = enclosing;
+        }
+    }
+
+    private boolean isInlinable(Ast.Method method) {
+
+        Boolean result = inlinable.get(method);
+        if (result == null) {
+            result = isInlinable(graph, method, budget);
+            inlinable.put(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if a method's body is a single {@code RETURN} within the
+     * size budget and the method is not recursive.
+     */
+    static boolean isInlinable(CallGraph graph, Ast.Method method, int budget) {
+        return method.getStatements().size() == 1
+                && method.getStatements().get(0) instanceof Ast.Stmt.Return
+                && size(((Ast.Stmt.Return) method.getStatements().get(0)).getValue()) <= budget
+                && !graph.isRecursive(method);
+    }
+
+    /**
+     * Returns true if every argument of a call may be substituted for its
+     * parameter in the callee's body.
+     */
+    static boolean canSubstitute(CallGraph graph, List<Ast.Expr> arguments, Ast.Method callee) {
+
+        boolean calls = !graph.getCalls(callee).isEmpty();
+        for (Ast.Expr argument : arguments) {
+            if (!isTrivial(argument, calls)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTrivial(Ast.Expr expr, boolean calls) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            return true;
+        } else if (expr instanceof Ast.Expr.Group) {
+            return isTrivial(((Ast.Expr.Group) expr).getExpression(), calls);
+        } else if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            return !access.getReceiver().isPresent()
+                    && (access.getDepth() == Ast.Expr.Access.LOCAL || access.getDepth() == Ast.Expr.Access.GLOBAL && !calls);
+        }
+        return false;
+    }
+
+    private static int size(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Group) {
+            return 1 + size(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Binary) {
+            return 1 + size(((Ast.Expr.Binary) expr).getLeft()) + size(((Ast.Expr.Binary) expr).getRight());
+        } else if (expr instanceof Ast.Expr.Access) {
+            return 1 + ((Ast.Expr.Access) expr).getReceiver().map(Inliner::size).orElse(0);
+        } else if (expr instanceof Ast.Expr.Function) {
+            int size = 1 + ((Ast.Expr.Function) expr).getReceiver().map(Inliner::size).orElse(0);
+            for (Ast.Expr argument : ((Ast.Expr.Function) expr).getArguments()) {
+                size += size(argument);
+            }
+            return size;
+        }
+        return 1;
+    }
+
+}
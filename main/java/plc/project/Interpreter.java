@@ -1,15 +1,41 @@
 package plc.project;
 
-import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     private Scope scope = new Scope(null);
 
+    //activation frame of the resolved method currently executing, null when running by name
+    private Environment.PlcObject[] frame = null;
+    //unboxed values of the current frame, a slot only holds a value here while frame[slot] is null
+    private long[] longs = null;
+    private final List<Environment.Variable> globals = new ArrayList<>();
+    private final MemoCache memo = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+    //resolved methods by the function the Analyzer linked their call sites to, for tail calls
+    private final Map<Environment.Function, Ast.Method> methods = new IdentityHashMap<>();
+    //execution counts being recorded, null when not profiling
+    private Profile profile = null;
+    //executions of each pattern of fused statements, by ordinal
+    private final long[] fusedHits = new long[Superinstructions.Pattern.values().length];
+    //how the last statement completed, anything but NORMAL unwinds to the enclosing invocation
+    private Completion completion = Completion.NORMAL;
+    //the value of a RETURN, or the callee and arguments of a tail call, until the invocation takes them
+    private Environment.PlcObject returned = null;
+    private Ast.Method tailMethod = null;
+    private List<Environment.PlcObject> tailArguments = null;
+    //loop iterations and calls left, and how deeply calls may nest, negative for no limit
+    private long steps = -1;
+    private int depthLimit = -1;
+    private int depth = 0;
+
     public Interpreter(Scope parent) {
         scope = new Scope(parent);
         scope.defineFunction("print", 1, args -> {
@@ -22,6 +48,87 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return scope;
     }
 
+    /**
+     * Returns the cache of results of pure method calls, including its hit
+     * rate.
+     */
+    public MemoCache getMemoCache() {
+        return memo;
+    }
+
+    /**
+     * Returns how many times statements fused by {@link Superinstructions}
+     * were executed as a single step, for each pattern.
+     */
+    public Map<Superinstructions.Pattern, Long> getFusedHits() {
+
+        Map<Superinstructions.Pattern, Long> hits = new EnumMap<>(Superinstructions.Pattern.class);
+        for (Superinstructions.Pattern pattern : Superinstructions.Pattern.values()) {
+            hits.put(pattern, fusedHits[pattern.ordinal()]);
+        }
+        return hits;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Records branch, call and value type counts into a profile (created with
+     * {@link Profile#of(Ast.Source)} for the source being run) while
+     * interpreting, or stops recording if null.
+     */
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Limits the loop iterations and calls of resolved methods this
+     * interpreter runs from now on, and how deeply those calls nest, throwing
+     * a {@link ScriptException} once either is exceeded. This bounds code run
+     * ahead of time that may not terminate (see {@link PartialEvaluator}). A
+     * negative limit removes it.
+     */
+    public void setLimits(long steps, int depth) {
+        this.steps = steps;
+        this.depthLimit = depth;
+    }
+
+    private void step() {
+        if (steps >= 0) {
+            if (steps == 0) {
+                throw new ScriptException("Exceeded the step limit.");
+            }
+            steps--;
+        }
+    }
+
+    /**
+     * Executes a source lowered to the {@link Ir} (see {@link IrBuilder}),
+     * returning the result of {@code main} like {@link #visit(Ast.Source)}.
+     */
+    public Environment.PlcObject execute(Ir.Program program) {
+        return new IrInterpreter(scope).execute(program);
+    }
+
+    /**
+     * Compiles a source resolved by the {@link Analyzer} to a tree of
+     * self-specializing nodes (see {@link NodeCompiler}) and runs it,
+     * returning the result of {@code main} like {@link #visit(Ast.Source)}.
+     */
+    public Environment.PlcObject execute(Ast.Source source) {
+        return new NodeCompiler(scope).execute(source);
+    }
+
+    /**
+     * Executes a source compiled to {@link Bytecode} (see
+     * {@link BytecodeCompiler}) on the {@link BytecodeVM}, returning the
+     * result of {@code main} like {@link #visit(Ast.Source)}.
+     */
+    public Environment.PlcObject execute(Bytecode.Program program) {
+        return new BytecodeVM(scope).execute(program);
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
 
@@ -44,10 +151,17 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Field ast) {
 
+        Environment.Variable variable;
         if (ast.getValue().isPresent()) {
-            scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
+            variable = scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
         } else {
-            scope.defineVariable(ast.getName(), Environment.NIL);
+            variable = scope.defineVariable(ast.getName(), Environment.NIL);
+        }
+        if (ast.getSlot() >= 0) {
+            while (globals.size() <= ast.getSlot()) {
+                globals.add(null);
+            }
+            globals.set(ast.getSlot(), variable);
         }
         return Environment.NIL;
     } //FINISHED
@@ -57,32 +171,83 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
         Scope parent = scope.getParent();
 
+        if (ast.getFrameSize() >= 0) {
+            methods.put(ast.getFunction(), ast);
+        }
         scope.defineFunction(ast.getName(), ast.getParameters().size(), args -> {
 
+            if (ast.getFrameSize() >= 0 && ast.isPure()) {
+                return memo.invoke(ast, args, values -> invokeResolved(ast, values));
+            }
+            else if (ast.getFrameSize() >= 0) {
+                return invokeResolved(ast, args);
+            }
             try {
                 for (int i = 0; i < ast.getParameters().size(); i++) {
                     scope.defineVariable(ast.getParameters().get(i), args.get(i));
                 }
-                for (int j = 0; j < ast.getStatements().size(); j++) {
-                    visit(ast.getStatements().get(j));
-                }
-            }
-            catch (Return r) {
-
-                return r.value;
-
+                execute(ast.getStatements());
+                return complete();
             } finally {
                 scope = scope.getParent();
             }
-            return Environment.NIL;
         });
 
         return Environment.NIL;
     }
 
+    /**
+     * Invokes a method resolved by the {@link Analyzer} on a flat frame, with
+     * parameters occupying the first slots. No scopes are created for the body.
+     *
+     * Tail calls replace the current activation with the callee's in a loop
+     * (a trampoline), so self and mutual tail recursion run in constant stack.
+     * Like RETURN, they complete the body without throwing (see
+     * {@link #execute(List)}).
+     */
+    private Environment.PlcObject invokeResolved(Ast.Method ast, List<Environment.PlcObject> args) {
+
+        if (depthLimit >= 0 && depth >= depthLimit) {
+            throw new ScriptException("Exceeded the call depth limit.");
+        }
+        Environment.PlcObject[] caller = frame;
+        long[] callerLongs = longs;
+        Ast.Method method = ast;
+        List<Environment.PlcObject> arguments = args;
+        depth++;
+        try {
+            while (true) {
+                step();
+                frame = new Environment.PlcObject[method.getFrameSize()];
+                longs = method.isUnboxed() ? new long[method.getFrameSize()] : null;
+                for (int i = 0; i < method.getParameters().size(); i++) {
+                    frame[i] = arguments.get(i);
+                }
+                execute(method.getStatements());
+                if (completion != Completion.TAIL_CALL) {
+                    return complete();
+                }
+                method = tailMethod;
+                arguments = tailArguments;
+                completion = Completion.NORMAL;
+                tailMethod = null;
+                tailArguments = null;
+            }
+        }
+        finally {
+            frame = caller;
+            longs = callerLongs;
+            depth--;
+        }
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Expression ast) {
 
+        if (isFused(ast)) {
+            fused(ast);
+            return Environment.NIL;
+        }
         visit(ast.getExpression());
         return Environment.NIL;
     } //FINISHED
@@ -90,10 +255,16 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Declaration ast) {
 
-        if (ast.getValue().isPresent()) { //if the optional value is present
-            scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
+        if (frame != null && ast.getRepresentation() != RangeAnalyzer.Representation.BOXED) {
+            storeUnboxed(ast.getSlot(), ast.getValue().get());
+            return Environment.NIL;
+        }
+        Environment.PlcObject value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Environment.NIL;
+
+        if (frame != null && ast.getSlot() >= 0) {
+            frame[ast.getSlot()] = value;
         } else {
-            scope.defineVariable(ast.getName(), Environment.NIL);
+            scope.defineVariable(ast.getName(), value);
         }
 
         return Environment.NIL;
@@ -102,12 +273,22 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Assignment ast) {
 
+        if (isFused(ast)) {
+            fused(ast);
+            return Environment.NIL;
+        }
         if (ast.getReceiver() instanceof Ast.Expr.Access) {
 
             Ast.Expr.Access access = (Ast.Expr.Access)ast.getReceiver();
 
             if (access.getReceiver().isPresent())
                 visit(access.getReceiver().get()).setField(access.getName(), visit(ast.getValue()));
+            else if (frame != null && access.getDepth() == Ast.Expr.Access.LOCAL && access.getRepresentation() != RangeAnalyzer.Representation.BOXED)
+                storeUnboxed(access.getSlot(), ast.getValue());
+            else if (frame != null && access.getDepth() == Ast.Expr.Access.LOCAL)
+                frame[access.getSlot()] = visit(ast.getValue());
+            else if (access.getDepth() == Ast.Expr.Access.GLOBAL)
+                globals.get(access.getSlot()).setValue(visit(ast.getValue()));
             else
                 getScope().lookupVariable(access.getName()).setValue(visit(ast.getValue()));
         }
@@ -121,21 +302,29 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
 
-        if (requireType(Boolean.class, visit (ast.getCondition()))) {
+        if (isFused(ast)) {
+            fused(ast);
+            return Environment.NIL;
+        }
+        boolean taken = requireType(Boolean.class, visit(ast.getCondition()));
+        if (profile != null) {
+            profile.recordBranch(ast, taken);
+        }
+        if (frame != null) {
+            execute(taken ? ast.getThenStatements() : ast.getElseStatements());
+            return Environment.NIL;
+        }
+        if (taken) {
             try {
                 scope = new Scope(scope);
-                for (Ast.Stmt stmt : ast.getThenStatements()) {
-                    visit(stmt);
-                }
+                execute(ast.getThenStatements());
             } finally {
                 scope = scope.getParent();
             }
         } else {
             try {
                 scope = new Scope(scope);
-                for(Ast.Stmt stmt : ast.getElseStatements()) {
-                    visit(stmt);
-                }
+                execute(ast.getElseStatements());
             } finally {
                 scope = scope.getParent();
             }
@@ -148,12 +337,23 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
         Iterable<Environment.PlcObject> values = requireType(Iterable.class, visit(ast.getValue()));
 
+        if (frame != null) {
+            for (Environment.PlcObject p : values) {
+                step();
+                frame[ast.getSlot()] = p;
+                if (!execute(ast.getStatements())) {
+                    break;
+                }
+            }
+            return Environment.NIL;
+        }
         for (Environment.PlcObject p : values) {
+            step();
             try {
                 scope = new Scope(scope);
                 getScope().defineVariable(ast.getName(), p);
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
+                if (!execute(ast.getStatements())) {
+                    break;
                 }
             } finally {
                 scope = scope.getParent();
@@ -165,11 +365,24 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
 
+        if (frame != null && ast.getCountedLoop() != null && count(ast.getCountedLoop())) {
+            return Environment.NIL;
+        }
+        if (frame != null) {
+            while (requireType(Boolean.class, visit(ast.getCondition()))) {
+                step();
+                if (!execute(ast.getStatements())) {
+                    break;
+                }
+            }
+            return Environment.NIL;
+        }
         while (requireType(Boolean.class, visit (ast.getCondition()))) {
+            step();
             try {
                 scope = new Scope(scope);
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
+                if (!execute(ast.getStatements())) {
+                    break;
                 }
             } finally {
                 scope = scope.getParent();
@@ -181,7 +394,30 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
 
-        throw new Return(visit(ast.getValue()));
+        if (isFused(ast)) {
+            fused(ast);
+            return Environment.NIL;
+        }
+        if (frame != null && ast.isTailCall()) {
+            Ast.Expr.Function call = (Ast.Expr.Function) ast.getValue();
+            Ast.Method callee = methods.get(call.getFunction());
+            if (callee != null) {
+                if (profile != null) {
+                    profile.recordCall(call);
+                }
+                List<Environment.PlcObject> arguments = new ArrayList<>();
+                for (Ast.Expr argument : call.getArguments()) {
+                    arguments.add(visit(argument));
+                }
+                tailMethod = callee;
+                tailArguments = arguments;
+                completion = Completion.TAIL_CALL;
+                return Environment.NIL;
+            }
+        }
+        returned = visit(ast.getValue());
+        completion = Completion.RETURN;
+        return Environment.NIL;
     } //FINISHED
 
     @Override
@@ -202,146 +438,74 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Expr.Binary ast) {
 
-        String operator = ast.getOperator();
-
-        switch (operator) {
-            case "AND": //check if left hand operand is a bool, else throw an exception
-
-                requireType(Boolean.class, visit(ast.getLeft()));
-                requireType(Boolean.class, visit(ast.getRight()));
-
-                if (visit (ast.getLeft()).getValue().equals(true)) {
-                    if (visit(ast.getRight()).getValue().equals(true))
-                        return Environment.create(true);
-                    else
-                        return Environment.create(false);
-                } else
-                    return Environment.create(false);
-
-            case "OR":
-
-                requireType(Boolean.class, visit(ast.getLeft()));
-
-                if (visit(ast.getLeft()).getValue().equals(true))
-                    return Environment.create(true);
-
-                requireType(Boolean.class, visit(ast.getRight()));
-
-                if (visit(ast.getRight()).getValue().equals(true))
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case "<": //check if left hand operand is a Comparable
-                requireType(Comparable.class, visit(ast.getLeft()));
-                requireType(Comparable.class, visit(ast.getRight()));
-
-                if(((Comparable)visit(ast.getLeft()).getValue()).compareTo((Comparable)visit(ast.getRight()).getValue()) < 0)
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case "<=":
-                requireType(Comparable.class, visit(ast.getLeft()));
-                requireType(Comparable.class, visit(ast.getRight()));
-
-                if(((Comparable)visit(ast.getLeft()).getValue()).compareTo((Comparable)visit(ast.getRight()).getValue()) <= 0)
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case ">":
-                requireType(Comparable.class, visit(ast.getLeft()));
-                requireType(Comparable.class, visit(ast.getRight()));
-
-                if(((Comparable)visit(ast.getLeft()).getValue()).compareTo((Comparable)visit(ast.getRight()).getValue()) > 0)
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case ">=":
-                requireType(Comparable.class, visit(ast.getLeft()));
-                requireType(Comparable.class, visit(ast.getRight()));
-
-                if(((Comparable)visit(ast.getLeft()).getValue()).compareTo((Comparable)visit(ast.getRight()).getValue()) >= 0)
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case "==":
-                if (visit(ast.getLeft()).getValue().equals(visit(ast.getRight()).getValue()))
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case "!=":
-                if (!visit(ast.getLeft()).getValue().equals(visit(ast.getRight()).getValue()))
-                    return Environment.create(true);
-                else
-                    return Environment.create(false);
-
-            case "+":
-                if (visit(ast.getLeft()).getValue() instanceof String)
-                    return Environment.create((String)visit(ast.getLeft()).getValue() + visit(ast.getRight()).getValue());
-                if (visit(ast.getRight()).getValue() instanceof String)
-                    return Environment.create((String)visit(ast.getRight()).getValue() + visit(ast.getLeft()).getValue());
-
-                if (visit(ast.getLeft()).getValue() instanceof BigInteger) {
-                    requireType(BigInteger.class, visit(ast.getRight()));
-                    return Environment.create(((BigInteger) visit(ast.getLeft()).getValue()).add((BigInteger) visit(ast.getRight()).getValue()));
-                }
-                else if (visit(ast.getLeft()).getValue() instanceof BigDecimal) {
-                    requireType(BigDecimal.class, visit(ast.getRight()));
-                    return Environment.create(((BigDecimal) visit(ast.getLeft()).getValue()).add((BigDecimal) visit(ast.getRight()).getValue()));
-                }
-
-            case "-":
-                if (visit(ast.getLeft()).getValue() instanceof BigInteger) {
-                    requireType(BigInteger.class, visit(ast.getRight()));
-                    return Environment.create(((BigInteger) visit(ast.getLeft()).getValue()).subtract((BigInteger) visit(ast.getRight()).getValue()));
-                }
-                else if (visit(ast.getLeft()).getValue() instanceof BigDecimal) {
-                    requireType(BigDecimal.class, visit(ast.getRight()));
-                    return Environment.create(((BigDecimal) visit(ast.getLeft()).getValue()).subtract((BigDecimal) visit(ast.getRight()).getValue()));
-                }
-
-            case "*":
-                if (visit(ast.getLeft()).getValue() instanceof BigInteger) {
-                    requireType(BigInteger.class, visit(ast.getRight()));
-                    return Environment.create(((BigInteger) visit(ast.getLeft()).getValue()).multiply((BigInteger) visit(ast.getRight()).getValue()));
-                }
-                else if (visit(ast.getLeft()).getValue() instanceof BigDecimal) {
-                    requireType(BigDecimal.class, visit(ast.getRight()));
-                    return Environment.create(((BigDecimal) visit(ast.getLeft()).getValue()).multiply((BigDecimal) visit(ast.getRight()).getValue()));
-                }
+        if (frame != null && ast.getRepresentation() != RangeAnalyzer.Representation.BOXED) {
+            try {
+                return evaluateUnboxed(ast);
+            } catch (ArithmeticException e) {
+                //overflowed a long (or divided by zero), the boxed evaluation below is exact or rethrows
+            }
+        }
 
-            case "/":
-                if (visit(ast.getLeft()).getValue() instanceof BigInteger) {
-                    requireType(BigInteger.class, visit(ast.getRight()));
-                    return Environment.create(((BigInteger) visit(ast.getLeft()).getValue()).divide((BigInteger) visit(ast.getRight()).getValue()));
-                }
-                else if (visit(ast.getLeft()).getValue() instanceof BigDecimal) {
-                    requireType(BigDecimal.class, visit(ast.getRight()));
-                    return Environment.create(((BigDecimal) visit(ast.getLeft()).getValue()).divide((BigDecimal) visit(ast.getRight()).getValue(), BigDecimal.ROUND_HALF_EVEN));
-                }
+        Operator operator = ast.getOperatorCode();
+        if (operator == null) {
+            throw new ScriptException("Unknown operator " + ast.getOperator() + ".");
         }
-        return Environment.NIL;
+        //each operand is evaluated once, and the right of AND/OR only if the left does not decide the result
+        Environment.PlcObject left = visit(ast.getLeft());
+        Boolean shortCircuit = operator.getShortCircuit();
+        if (shortCircuit != null && requireType(Boolean.class, left).equals(shortCircuit)) {
+            return Environment.create(shortCircuit);
+        }
+        Environment.PlcObject right = visit(ast.getRight());
+        if (operator.isComparison() && ast.getLeft().isNonNil() && ast.getRight().isNonNil()) {
+            return Environment.create(operator.compare(left.getValue(), right.getValue()));
+        }
+        return Environment.create(operator.apply(left.getValue(), right.getValue()));
     } //FINISHED
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Access ast) {
 
+        Environment.PlcObject value = access(ast);
+        if (profile != null) {
+            profile.recordValue(ast, value);
+        }
+        return value;
+    } //FINISHED
+
+    private Environment.PlcObject access(Ast.Expr.Access ast) {
+
         if (ast.getReceiver().isPresent()) {
             return visit(ast.getReceiver().get()).getField(ast.getName()).getValue();
         }
+        else if (frame != null && ast.getDepth() == Ast.Expr.Access.LOCAL && ast.getRepresentation() != RangeAnalyzer.Representation.BOXED) {
+            return frame[ast.getSlot()] != null ? frame[ast.getSlot()] : Environment.create(BigInteger.valueOf(longs[ast.getSlot()]));
+        }
+        else if (frame != null && ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            return frame[ast.getSlot()];
+        }
+        else if (ast.getDepth() == Ast.Expr.Access.GLOBAL) {
+            return globals.get(ast.getSlot()).getValue();
+        }
         else {
             return getScope().lookupVariable(ast.getName()).getValue();
         }
-    } //FINISHED
+    }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Function ast) {
 
+        if (profile == null) {
+            return call(ast);
+        }
+        profile.recordCall(ast);
+        Environment.PlcObject value = call(ast);
+        profile.recordValue(ast, value);
+        return value;
+    } //FINISHED
+
+    private Environment.PlcObject call(Ast.Expr.Function ast) {
+
         List<Environment.PlcObject> plc = new ArrayList<>();
         for (int i = 0; i < ast.getArguments().size(); i++) {
             plc.add(visit(ast.getArguments().get(i)));
@@ -351,9 +515,273 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             return visit(ast.getReceiver().get()).callMethod(ast.getName(), plc);
         }
         else {
-            return getScope().lookupFunction(ast.getName(), ast.getArguments().size()).invoke(plc);
+            return link(ast).invoke(plc);
         }
-    } //FINISHED
+    }
+
+    /**
+     * Returns the function a receiver-less call site resolves to, looking it
+     * up only on the first call. Functions are all defined before main runs
+     * and never redefined, so the target of a call site cannot change.
+     *
+     * The link records the interpreter that made it, since the same AST can be
+     * run by several interpreters (each defining its own functions).
+     */
+    private Environment.Function link(Ast.Expr.Function ast) {
+
+        Object link = ast.getLink();
+        if (link instanceof Link && ((Link) link).owner == this) {
+            return ((Link) link).function;
+        }
+        Environment.Function function = getScope().lookupFunction(ast.getName(), ast.getArguments().size());
+        ast.setLink(new Link(this, function));
+        return function;
+    }
+
+    /**
+     * Runs a loop the {@link InductionAnalyzer} lowered to a counted loop with
+     * a long counter, returning false without running anything if the counter
+     * or bound is not an integer (a local declared without a value is NIL) or
+     * does not fit in a long. The generic loop then reports any type error.
+     */
+    private boolean count(InductionAnalyzer.CountedLoop loop) {
+
+        Object counterValue = visit(loop.getCounter()).getValue();
+        Object boundValue = visit(loop.getBound()).getValue();
+        if (!(counterValue instanceof BigInteger) || !(boundValue instanceof BigInteger)) {
+            return false;
+        }
+        BigInteger start = (BigInteger) counterValue;
+        BigInteger end = (BigInteger) boundValue;
+        if (start.bitLength() >= Long.SIZE || end.bitLength() >= Long.SIZE) {
+            return false;
+        }
+        int slot = loop.getCounter().getSlot();
+        boolean unboxed = loop.getCounter().getRepresentation() != RangeAnalyzer.Representation.BOXED;
+        long limit = end.longValue();
+        long counter = start.longValue();
+        while (loop.test(counter, limit)) {
+            step();
+            if (unboxed) {
+                longs[slot] = counter;
+                frame[slot] = null;
+            } else {
+                frame[slot] = Environment.create(BigInteger.valueOf(counter));
+            }
+            if (!execute(loop.getBody())) {
+                break;
+            }
+            try {
+                counter = Math.addExact(counter, loop.getStep());
+            } catch (ArithmeticException e) {
+                //the step moves towards the bound, so a counter past every long is past the bound too
+                frame[slot] = Environment.create(BigInteger.valueOf(counter).add(BigInteger.valueOf(loop.getStep())));
+                return true;
+            }
+        }
+        if (unboxed) {
+            longs[slot] = counter;
+            frame[slot] = null;
+        } else {
+            frame[slot] = Environment.create(BigInteger.valueOf(counter));
+        }
+        return true;
+    }
+
+    /**
+     * Stores an INTEGER into an unboxed slot, keeping it boxed in the frame
+     * only if it does not fit in a long.
+     */
+    private void storeUnboxed(int slot, Ast.Expr value) {
+
+        if (value.getRepresentation() != RangeAnalyzer.Representation.BOXED) {
+            try {
+                longs[slot] = evaluateLong(value);
+                frame[slot] = null;
+                return;
+            } catch (ArithmeticException e) {
+                //unboxed expressions are pure, so evaluating them again boxed is safe
+            }
+        }
+        Environment.PlcObject object = visit(value);
+        BigInteger integer = requireType(BigInteger.class, object);
+        if (integer.bitLength() < Long.SIZE) {
+            longs[slot] = integer.longValue();
+            frame[slot] = null;
+        } else {
+            frame[slot] = object;
+        }
+    }
+
+    private Environment.PlcObject evaluateUnboxed(Ast.Expr.Binary ast) {
+
+        switch (ast.getOperatorCode()) {
+            case LESS: return Environment.create(evaluateLong(ast.getLeft()) < evaluateLong(ast.getRight()));
+            case LESS_EQUAL: return Environment.create(evaluateLong(ast.getLeft()) <= evaluateLong(ast.getRight()));
+            case GREATER: return Environment.create(evaluateLong(ast.getLeft()) > evaluateLong(ast.getRight()));
+            case GREATER_EQUAL: return Environment.create(evaluateLong(ast.getLeft()) >= evaluateLong(ast.getRight()));
+            case EQUAL: return Environment.create(evaluateLong(ast.getLeft()) == evaluateLong(ast.getRight()));
+            case NOT_EQUAL: return Environment.create(evaluateLong(ast.getLeft()) != evaluateLong(ast.getRight()));
+            default: return Environment.create(BigInteger.valueOf(evaluateLong(ast)));
+        }
+    }
+
+    /**
+     * Evaluates an expression marked by the {@link RangeAnalyzer} as a long.
+     * Expressions proven to stay in int range skip the overflow checks, all
+     * others throw an {@link ArithmeticException} if the result needs a
+     * BigInteger.
+     */
+    private long evaluateLong(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            return ((BigInteger) ((Ast.Expr.Literal) expr).getLiteral()).longValueExact();
+        }
+        else if (expr instanceof Ast.Expr.Group) {
+            return evaluateLong(((Ast.Expr.Group) expr).getExpression());
+        }
+        else if (expr instanceof Ast.Expr.Access) {
+            int slot = ((Ast.Expr.Access) expr).getSlot();
+            return frame[slot] != null ? ((BigInteger) frame[slot].getValue()).longValueExact() : longs[slot];
+        }
+
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+        long left = evaluateLong(binary.getLeft());
+        long right = evaluateLong(binary.getRight());
+        boolean checked = binary.getRepresentation() != RangeAnalyzer.Representation.INT;
+
+        switch (binary.getOperatorCode()) {
+            case ADD: return checked ? Math.addExact(left, right) : left + right;
+            case SUBTRACT: return checked ? Math.subtractExact(left, right) : left - right;
+            case MULTIPLY: return checked ? Math.multiplyExact(left, right) : left * right;
+            case DIVIDE:
+                if (left == Long.MIN_VALUE && right == -1)
+                    throw new ArithmeticException("long overflow");
+                return left / right;
+            default:
+                throw new ArithmeticException("Not an integer operator: " + binary.getOperator());
+        }
+    }
+
+    /**
+     * Fused statements are only executed as such in a frame, and not while
+     * profiling (which needs the values of the individual nodes).
+     */
+    private boolean isFused(Ast.Stmt stmt) {
+        return stmt.getFused() != null && frame != null && profile == null;
+    }
+
+    /**
+     * Executes a statement marked by {@link Superinstructions} in one step,
+     * reading its simple operands straight from the frame and globals.
+     */
+    private void fused(Ast.Stmt stmt) {
+
+        fusedHits[stmt.getFused().ordinal()]++;
+        switch (stmt.getFused()) {
+            case INCREMENT: {
+                Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) stmt;
+                int slot = ((Ast.Expr.Access) assignment.getReceiver()).getSlot();
+                Ast.Expr.Binary value = (Ast.Expr.Binary) assignment.getValue();
+                BigInteger constant = (BigInteger) ((Ast.Expr.Literal) value.getRight()).getLiteral();
+                BigInteger current = requireType(BigInteger.class, frame[slot]);
+                frame[slot] = Environment.create(value.getOperator().equals("+") ? current.add(constant) : current.subtract(constant));
+                return;
+            }
+            case COMPARE_BRANCH: {
+                Ast.Stmt.If branch = (Ast.Stmt.If) stmt;
+                Ast.Expr.Binary condition = (Ast.Expr.Binary) branch.getCondition();
+                Object left = operand(condition.getLeft());
+                Object right = operand(condition.getRight());
+                Operator operator = condition.getOperatorCode();
+                boolean ordering = operator != Operator.EQUAL && operator != Operator.NOT_EQUAL;
+                if (ordering && !(left instanceof Comparable && right instanceof Comparable)) {
+                    throw ScriptException.typeMismatch(Comparable.class, (left instanceof Comparable ? right : left).getClass());
+                }
+                boolean taken = operator.compare(left, right);
+                execute(taken ? branch.getThenStatements() : branch.getElseStatements());
+                return;
+            }
+            case RETURN_CALL: {
+                Ast.Expr.Function call = (Ast.Expr.Function) ((Ast.Stmt.Return) stmt).getValue();
+                List<Environment.PlcObject> arguments = new ArrayList<>(call.getArguments().size());
+                for (Ast.Expr argument : call.getArguments()) {
+                    arguments.add(argument(argument));
+                }
+                returned = link(call).invoke(arguments);
+                completion = Completion.RETURN;
+                return;
+            }
+            case PRINT_SUM: {
+                Ast.Expr.Function call = (Ast.Expr.Function) ((Ast.Stmt.Expression) stmt).getExpression();
+                Ast.Expr.Binary sum = (Ast.Expr.Binary) call.getArguments().get(0);
+                Object result = Operator.ADD.apply(operand(sum.getLeft()), operand(sum.getRight()));
+                link(call).invoke(Collections.singletonList(Environment.create(result)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a simple operand (see {@link Superinstructions#isSimple}) as an
+     * object.
+     */
+    private Environment.PlcObject argument(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            return Environment.create(((Ast.Expr.Literal) expr).getLiteral());
+        }
+        Ast.Expr.Access access = (Ast.Expr.Access) expr;
+        if (access.getDepth() == Ast.Expr.Access.GLOBAL) {
+            return globals.get(access.getSlot()).getValue();
+        }
+        Environment.PlcObject value = frame[access.getSlot()];
+        return value != null ? value : Environment.create(BigInteger.valueOf(longs[access.getSlot()]));
+    }
+
+    /**
+     * Reads the value of a simple operand, without creating an object for
+     * literals.
+     */
+    private Object operand(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            return ((Ast.Expr.Literal) expr).getLiteral();
+        }
+        Ast.Expr.Access access = (Ast.Expr.Access) expr;
+        if (access.getDepth() == Ast.Expr.Access.LOCAL && frame[access.getSlot()] == null) {
+            return BigInteger.valueOf(longs[access.getSlot()]);
+        }
+        return argument(expr).getValue();
+    }
+
+    /**
+     * Executes statements in order until one completes abruptly (a RETURN or
+     * tail call), returning false if one did. The enclosing invocation then
+     * takes the result with {@link #complete()}.
+     */
+    private boolean execute(List<Ast.Stmt> statements) {
+
+        for (Ast.Stmt stmt : statements) {
+            visit(stmt);
+            if (completion != Completion.NORMAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value an invocation's body completed with, resetting the
+     * completion for the caller.
+     */
+    private Environment.PlcObject complete() {
+
+        Environment.PlcObject value = completion == Completion.RETURN ? returned : Environment.NIL;
+        completion = Completion.NORMAL;
+        returned = null;
+        return value;
+    }
 
     /**
      * Helper function to ensure an object is of the appropriate type.
@@ -362,21 +790,32 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         if (type.isInstance(object.getValue())) {
             return type.cast(object.getValue());
         } else {
-            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+            throw ScriptException.typeMismatch(type, object.getValue().getClass());
         }
     }
 
     /**
-     * Exception class for returning values.
+     * A call site's target, along with the interpreter it belongs to.
      */
-    private static class Return extends RuntimeException {
+    private static final class Link {
 
-        private final Environment.PlcObject value;
+        private final Interpreter owner;
+        private final Environment.Function function;
 
-        private Return(Environment.PlcObject value) {
-            this.value = value;
+        private Link(Interpreter owner, Environment.Function function) {
+            this.owner = owner;
+            this.function = function;
         }
 
     }
 
+    /**
+     * How a statement completed.
+     */
+    private enum Completion {
+        NORMAL,
+        RETURN,
+        TAIL_CALL
+    }
+
 }
@@ -0,0 +1,628 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An intermediate representation of an analyzed source as a control-flow
+ * graph of basic blocks in SSA form, built by the {@link IrBuilder}.
+ *
+ * Every {@link Value} is defined exactly once and records the instructions
+ * using it (its def-use chain). Locals only exist as values; control-flow
+ * merges are represented by {@link Phi} instructions at the start of a block,
+ * with one operand per predecessor in the same order as
+ * {@link Block#getPredecessors()}. Fields, receivers and iterators are
+ * accessed through explicit instructions.
+ */
+public final class Ir {
+
+    private Ir() {}
+
+    public static final class Program {
+
+        private final List<Environment.Variable> fields;
+        private final Function initializer;
+        private final List<Function> functions;
+
+        public Program(List<Environment.Variable> fields, Function initializer, List<Function> functions) {
+            this.fields = fields;
+            this.initializer = initializer;
+            this.functions = functions;
+        }
+
+        public List<Environment.Variable> getFields() {
+            return fields;
+        }
+
+        /**
+         * Returns the function computing the initial values of the fields,
+         * which is run before {@code main}.
+         */
+        public Function getInitializer() {
+            return initializer;
+        }
+
+        public List<Function> getFunctions() {
+            return functions;
+        }
+
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final List<String> parameters;
+        private final Environment.Function function;
+        private final List<Block> blocks = new ArrayList<>();
+        private int values = 0;
+
+        public Function(String name, List<String> parameters, Environment.Function function) {
+            this.name = name;
+            this.parameters = parameters;
+            this.function = function;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Returns the function the Analyzer defined for this method, or null
+         * for the field initializer.
+         */
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+
+        public Block getEntry() {
+            return blocks.get(0);
+        }
+
+        /**
+         * Returns the number of value ids used, so values can be stored in an
+         * array indexed by {@link Value#getId()}.
+         */
+        public int getValueCount() {
+            return values;
+        }
+
+        public Block addBlock() {
+            Block block = new Block(this, blocks.size());
+            blocks.add(block);
+            return block;
+        }
+
+        private int nextValue() {
+            return values++;
+        }
+
+    }
+
+    public static final class Block {
+
+        private final Function function;
+        private final int id;
+        private final List<Block> predecessors = new ArrayList<>();
+        private final List<Block> successors = new ArrayList<>();
+        private final List<Phi> phis = new ArrayList<>();
+        private final List<Instruction> instructions = new ArrayList<>();
+
+        private Block(Function function, int id) {
+            this.function = function;
+            this.id = id;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public List<Block> getPredecessors() {
+            return predecessors;
+        }
+
+        public List<Block> getSuccessors() {
+            return successors;
+        }
+
+        public List<Phi> getPhis() {
+            return phis;
+        }
+
+        public List<Instruction> getInstructions() {
+            return instructions;
+        }
+
+        /**
+         * Returns the terminator of the block, or null if it has not been
+         * terminated yet.
+         */
+        public Terminator getTerminator() {
+            if (instructions.isEmpty() || !(instructions.get(instructions.size() - 1) instanceof Terminator)) {
+                return null;
+            }
+            return (Terminator) instructions.get(instructions.size() - 1);
+        }
+
+        /**
+         * Appends an instruction to the block, or adds it to the phis if it is
+         * one, which may still be done after the block is terminated.
+         */
+        public <T extends Instruction> T add(T instruction) {
+            if (!(instruction instanceof Phi) && getTerminator() != null) {
+                throw new IllegalStateException("Block b" + id + " is already terminated.");
+            }
+            instruction.block = this;
+            instruction.id = function.nextValue();
+            if (instruction instanceof Phi) {
+                phis.add((Phi) instruction);
+            } else {
+                instructions.add(instruction);
+            }
+            if (instruction instanceof Terminator) {
+                for (Block target : ((Terminator) instruction).getTargets()) {
+                    successors.add(target);
+                    target.predecessors.add(this);
+                }
+            }
+            return instruction;
+        }
+
+        @Override
+        public String toString() {
+            return "b" + id;
+        }
+
+    }
+
+    /**
+     * A value defined once in a function, along with its uses.
+     */
+    public abstract static class Value {
+
+        private int id = -1;
+        private final Environment.Type type;
+        private final List<Instruction> users = new ArrayList<>();
+
+        protected Value(Environment.Type type) {
+            this.type = type;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the type of the value, or null if it is not a value of the
+         * language (such as an iterator) or has no meaningful value.
+         */
+        public Environment.Type getType() {
+            return type;
+        }
+
+        public List<Instruction> getUsers() {
+            return Collections.unmodifiableList(users);
+        }
+
+        /**
+         * Replaces every use of this value with another value.
+         */
+        public void replaceAllUsesWith(Value value) {
+            for (Instruction user : new ArrayList<>(users)) {
+                for (int i = 0; i < user.operands.size(); i++) {
+                    if (user.operands.get(i) == this) {
+                        user.setOperand(i, value);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "%" + id;
+        }
+
+    }
+
+    public abstract static class Instruction extends Value {
+
+        private Block block;
+        private final List<Value> operands = new ArrayList<>();
+
+        protected Instruction(Environment.Type type, Value... operands) {
+            super(type);
+            for (Value operand : operands) {
+                addOperand(operand);
+            }
+        }
+
+        public Block getBlock() {
+            return block;
+        }
+
+        public List<Value> getOperands() {
+            return Collections.unmodifiableList(operands);
+        }
+
+        public Value getOperand(int index) {
+            return operands.get(index);
+        }
+
+        protected void addOperand(Value value) {
+            operands.add(value);
+            value.users.add(this);
+        }
+
+        public void setOperand(int index, Value value) {
+            operands.get(index).users.remove(this);
+            operands.set(index, value);
+            value.users.add(this);
+        }
+
+        /**
+         * Detaches this instruction from its operands and block. It must no
+         * longer have any users.
+         */
+        public void remove() {
+            for (Value operand : operands) {
+                operand.users.remove(this);
+            }
+            operands.clear();
+            if (this instanceof Phi) {
+                block.phis.remove(this);
+            } else {
+                block.instructions.remove(this);
+            }
+        }
+
+    }
+
+    public static final class Constant extends Instruction {
+
+        private final Object value;
+
+        public Constant(Environment.Type type, Object value) {
+            super(type);
+            this.value = value;
+        }
+
+        /**
+         * Returns the literal value, where null is {@code NIL}.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+    }
+
+    public static final class Parameter extends Instruction {
+
+        private final int index;
+
+        public Parameter(Environment.Type type, int index) {
+            super(type);
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+    }
+
+    public static final class Phi extends Instruction {
+
+        public Phi(Environment.Type type) {
+            super(type);
+        }
+
+        public void appendOperand(Value value) {
+            addOperand(value);
+        }
+
+    }
+
+    public static final class Binary extends Instruction {
+
+        private final String operator;
+        private final Operator code;
+
+        public Binary(Environment.Type type, String operator, Value left, Value right) {
+            super(type, left, right);
+            this.operator = operator;
+            this.code = Operator.of(operator);
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        /**
+         * Returns the operator resolved from its text, or null if unknown.
+         */
+        public Operator getOperatorCode() {
+            return code;
+        }
+
+    }
+
+    public static final class GetGlobal extends Instruction {
+
+        private final String name;
+
+        public GetGlobal(Environment.Type type, String name) {
+            super(type);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+    }
+
+    public static final class SetGlobal extends Instruction {
+
+        private final String name;
+
+        public SetGlobal(String name, Value value) {
+            super(null, value);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+    }
+
+    public static final class GetField extends Instruction {
+
+        private final String name;
+
+        public GetField(Environment.Type type, Value receiver, String name) {
+            super(type, receiver);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+    }
+
+    public static final class SetField extends Instruction {
+
+        private final String name;
+
+        public SetField(Value receiver, String name, Value value) {
+            super(null, receiver, value);
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+    }
+
+    /**
+     * A call to a function of the source or a builtin, looked up by name and
+     * arity.
+     */
+    public static final class Call extends Instruction {
+
+        private final Environment.Function function;
+
+        public Call(Environment.Function function, List<Value> arguments) {
+            super(function.getReturnType(), arguments.toArray(new Value[0]));
+            this.function = function;
+        }
+
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+    }
+
+    /**
+     * A call to a method of a receiver, which is the first operand.
+     */
+    public static final class CallMethod extends Instruction {
+
+        private final Environment.Function function;
+
+        public CallMethod(Environment.Function function, Value receiver, List<Value> arguments) {
+            super(function.getReturnType(), receiver);
+            for (Value argument : arguments) {
+                addOperand(argument);
+            }
+            this.function = function;
+        }
+
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+    }
+
+    public static final class IteratorStart extends Instruction {
+
+        public IteratorStart(Value iterable) {
+            super(null, iterable);
+        }
+
+    }
+
+    public static final class IteratorHasNext extends Instruction {
+
+        public IteratorHasNext(Value iterator) {
+            super(Environment.Type.BOOLEAN, iterator);
+        }
+
+    }
+
+    public static final class IteratorNext extends Instruction {
+
+        public IteratorNext(Value iterator) {
+            super(Environment.Type.INTEGER, iterator);
+        }
+
+    }
+
+    public abstract static class Terminator extends Instruction {
+
+        protected Terminator(Value... operands) {
+            super(null, operands);
+        }
+
+        public abstract List<Block> getTargets();
+
+    }
+
+    public static final class Jump extends Terminator {
+
+        private final Block target;
+
+        public Jump(Block target) {
+            this.target = target;
+        }
+
+        public Block getTarget() {
+            return target;
+        }
+
+        @Override
+        public List<Block> getTargets() {
+            return Collections.singletonList(target);
+        }
+
+    }
+
+    public static final class Branch extends Terminator {
+
+        private final Block then;
+        private final Block otherwise;
+
+        public Branch(Value condition, Block then, Block otherwise) {
+            super(condition);
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        public Block getThen() {
+            return then;
+        }
+
+        public Block getOtherwise() {
+            return otherwise;
+        }
+
+        @Override
+        public List<Block> getTargets() {
+            return Arrays.asList(then, otherwise);
+        }
+
+    }
+
+    public static final class Return extends Terminator {
+
+        public Return(Value value) {
+            super(value);
+        }
+
+        @Override
+        public List<Block> getTargets() {
+            return Collections.emptyList();
+        }
+
+    }
+
+    public interface Visitor<T> {
+
+        default T visit(Instruction instruction) {
+            if (instruction instanceof Constant) {
+                return visit((Constant) instruction);
+            } else if (instruction instanceof Parameter) {
+                return visit((Parameter) instruction);
+            } else if (instruction instanceof Phi) {
+                return visit((Phi) instruction);
+            } else if (instruction instanceof Binary) {
+                return visit((Binary) instruction);
+            } else if (instruction instanceof GetGlobal) {
+                return visit((GetGlobal) instruction);
+            } else if (instruction instanceof SetGlobal) {
+                return visit((SetGlobal) instruction);
+            } else if (instruction instanceof GetField) {
+                return visit((GetField) instruction);
+            } else if (instruction instanceof SetField) {
+                return visit((SetField) instruction);
+            } else if (instruction instanceof Call) {
+                return visit((Call) instruction);
+            } else if (instruction instanceof CallMethod) {
+                return visit((CallMethod) instruction);
+            } else if (instruction instanceof IteratorStart) {
+                return visit((IteratorStart) instruction);
+            } else if (instruction instanceof IteratorHasNext) {
+                return visit((IteratorHasNext) instruction);
+            } else if (instruction instanceof IteratorNext) {
+                return visit((IteratorNext) instruction);
+            } else if (instruction instanceof Jump) {
+                return visit((Jump) instruction);
+            } else if (instruction instanceof Branch) {
+                return visit((Branch) instruction);
+            } else if (instruction instanceof Return) {
+                return visit((Return) instruction);
+            } else {
+                throw new AssertionError("Unimplemented Ir type: " + instruction.getClass().getName() + ".");
+            }
+        }
+
+        T visit(Constant instruction);
+
+        T visit(Parameter instruction);
+
+        T visit(Phi instruction);
+
+        T visit(Binary instruction);
+
+        T visit(GetGlobal instruction);
+
+        T visit(SetGlobal instruction);
+
+        T visit(GetField instruction);
+
+        T visit(SetField instruction);
+
+        T visit(Call instruction);
+
+        T visit(CallMethod instruction);
+
+        T visit(IteratorStart instruction);
+
+        T visit(IteratorHasNext instruction);
+
+        T visit(IteratorNext instruction);
+
+        T visit(Jump instruction);
+
+        T visit(Branch instruction);
+
+        T visit(Return instruction);
+
+    }
+
+}
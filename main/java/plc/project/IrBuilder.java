@@ -0,0 +1,408 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers an analyzed source into the {@link Ir}, constructing SSA form
+ * directly while walking the AST.
+ *
+ * Locals are identified by the slots assigned by the {@link Analyzer}, so only
+ * resolved methods can be lowered. The current value of a local is tracked
+ * per block; reading it in a block without a definition looks through the
+ * predecessors, placing a phi where they merge. Blocks whose predecessors are
+ * not all known yet (loop headers) get incomplete phis that are filled in once
+ * the block is sealed, and phis whose operands all turn out to be the same
+ * value are removed again.
+ */
+public final class IrBuilder implements Ast.Visitor<Ir.Value> {
+
+    private final Ir.Function function;
+    private final Ir.Constant undefined;
+    private Ir.Block current;
+
+    private final Map<Ir.Block, Map<Integer, Ir.Value>> definitions = new HashMap<>();
+    private final Map<Ir.Block, Map<Integer, Ir.Phi>> incomplete = new HashMap<>();
+    private final Set<Ir.Block> sealed = new HashSet<>();
+    private final Map<Integer, Environment.Type> types = new HashMap<>();
+
+    private IrBuilder(Ir.Function function) {
+        this.function = function;
+        current = function.addBlock();
+        seal(current);
+        //the value of locals read before any definition, which the Analyzer only allows on unreachable paths
+        undefined = current.add(new Ir.Constant(Environment.Type.NIL, null));
+    }
+
+    /**
+     * Lowers every field initializer and method of an analyzed source.
+     */
+    public static Ir.Program build(Ast.Source source) {
+
+        List<Environment.Variable> fields = new ArrayList<>();
+        IrBuilder initializer = new IrBuilder(new Ir.Function("<fields>", Collections.emptyList(), null));
+        for (Ast.Field field : source.getFields()) {
+            fields.add(field.getVariable());
+            initializer.visit(field);
+        }
+        initializer.finish();
+
+        List<Ir.Function> functions = new ArrayList<>();
+        for (Ast.Method method : source.getMethods()) {
+            functions.add(build(method));
+        }
+        return new Ir.Program(fields, initializer.function, functions);
+    }
+
+    /**
+     * Lowers a method resolved by the {@link Analyzer}.
+     */
+    public static Ir.Function build(Ast.Method method) {
+
+        if (method.getFrameSize() < 0) {
+            throw new RuntimeException("The method " + method.getName() + " has not been analyzed.");
+        }
+        IrBuilder builder = new IrBuilder(new Ir.Function(method.getName(), method.getParameters(), method.getFunction()));
+        builder.visit(method);
+        builder.finish();
+        return builder.function;
+    }
+
+    private void finish() {
+
+        if (current != null) {
+            current.add(new Ir.Return(undefined));
+        }
+        if (undefined.getUsers().isEmpty()) {
+            undefined.remove();
+        }
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Source ast) {
+        throw new UnsupportedOperationException("A source is lowered with IrBuilder.build.");
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Field ast) {
+
+        Ir.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : undefined;
+        current.add(new Ir.SetGlobal(ast.getName(), value));
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Method ast) {
+
+        List<Environment.Type> parameterTypes = ast.getFunction().getParameterTypes();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            types.put(i, parameterTypes.get(i));
+            write(i, current.add(new Ir.Parameter(parameterTypes.get(i), i)));
+        }
+        lower(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Expression ast) {
+
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Declaration ast) {
+
+        Ir.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : undefined;
+        types.put(ast.getSlot(), ast.getVariable().getType());
+        write(ast.getSlot(), value);
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Assignment ast) {
+
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        if (access.getReceiver().isPresent()) {
+            Ir.Value receiver = visit(access.getReceiver().get());
+            current.add(new Ir.SetField(receiver, access.getName(), visit(ast.getValue())));
+        } else if (access.getDepth() == Ast.Expr.Access.LOCAL) {
+            write(access.getSlot(), visit(ast.getValue()));
+        } else {
+            current.add(new Ir.SetGlobal(access.getName(), visit(ast.getValue())));
+        }
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.If ast) {
+
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block then = function.addBlock();
+        Ir.Block otherwise = function.addBlock();
+        current.add(new Ir.Branch(condition, then, otherwise));
+        seal(then);
+        seal(otherwise);
+
+        current = then;
+        lower(ast.getThenStatements());
+        Ir.Block thenEnd = current;
+        current = otherwise;
+        lower(ast.getElseStatements());
+        Ir.Block otherwiseEnd = current;
+
+        if (thenEnd == null && otherwiseEnd == null) {
+            current = null;
+            return null;
+        }
+        Ir.Block join = function.addBlock();
+        if (thenEnd != null) {
+            thenEnd.add(new Ir.Jump(join));
+        }
+        if (otherwiseEnd != null) {
+            otherwiseEnd.add(new Ir.Jump(join));
+        }
+        seal(join);
+        current = join;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.For ast) {
+
+        Ir.Value iterator = current.add(new Ir.IteratorStart(visit(ast.getValue())));
+        Ir.Block header = function.addBlock();
+        current.add(new Ir.Jump(header));
+
+        current = header;
+        Ir.Value hasNext = current.add(new Ir.IteratorHasNext(iterator));
+        Ir.Block body = function.addBlock();
+        Ir.Block exit = function.addBlock();
+        current.add(new Ir.Branch(hasNext, body, exit));
+        seal(body);
+        seal(exit);
+
+        current = body;
+        types.put(ast.getSlot(), Environment.Type.INTEGER);
+        write(ast.getSlot(), current.add(new Ir.IteratorNext(iterator)));
+        lower(ast.getStatements());
+        if (current != null) {
+            current.add(new Ir.Jump(header));
+        }
+        seal(header);
+
+        current = exit;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.While ast) {
+
+        Ir.Block header = function.addBlock();
+        current.add(new Ir.Jump(header));
+
+        current = header;
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block body = function.addBlock();
+        Ir.Block exit = function.addBlock();
+        current.add(new Ir.Branch(condition, body, exit));
+        seal(body);
+        seal(exit);
+
+        current = body;
+        lower(ast.getStatements());
+        if (current != null) {
+            current.add(new Ir.Jump(header));
+        }
+        seal(header);
+
+        current = exit;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Stmt.Return ast) {
+
+        current.add(new Ir.Return(visit(ast.getValue())));
+        current = null;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Literal ast) {
+        return current.add(new Ir.Constant(ast.getType(), ast.getLiteral()));
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Binary ast) {
+
+        Ir.Value left = visit(ast.getLeft());
+        if (!ast.getOperator().equals("AND") && !ast.getOperator().equals("OR")) {
+            Ir.Value right = visit(ast.getRight());
+            return current.add(new Ir.Binary(ast.getType(), ast.getOperator(), left, right));
+        }
+
+        //the right operand is only evaluated if the left one does not decide the result, which is then the left one
+        Ir.Block right = function.addBlock();
+        Ir.Block join = function.addBlock();
+        if (ast.getOperator().equals("AND")) {
+            current.add(new Ir.Branch(left, right, join));
+        } else {
+            current.add(new Ir.Branch(left, join, right));
+        }
+        seal(right);
+        current = right;
+        Ir.Value value = visit(ast.getRight());
+        current.add(new Ir.Jump(join));
+        seal(join);
+
+        current = join;
+        Ir.Phi phi = current.add(new Ir.Phi(Environment.Type.BOOLEAN));
+        phi.appendOperand(left);
+        phi.appendOperand(value);
+        return phi;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Access ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            return current.add(new Ir.GetField(ast.getType(), visit(ast.getReceiver().get()), ast.getName()));
+        } else if (ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            return read(ast.getSlot(), current);
+        } else {
+            return current.add(new Ir.GetGlobal(ast.getType(), ast.getName()));
+        }
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expr.Function ast) {
+
+        Ir.Value receiver = ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : null;
+        List<Ir.Value> arguments = new ArrayList<>();
+        for (Ast.Expr argument : ast.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        if (receiver != null) {
+            return current.add(new Ir.CallMethod(ast.getFunction(), receiver, arguments));
+        }
+        return current.add(new Ir.Call(ast.getFunction(), arguments));
+    }
+
+    /**
+     * Lowers a statement list into the current block, stopping after a
+     * statement that leaves no block to continue in (statements after a
+     * {@code RETURN} are unreachable).
+     */
+    private void lower(List<Ast.Stmt> statements) {
+
+        for (Ast.Stmt stmt : statements) {
+            if (current == null) {
+                return;
+            }
+            visit(stmt);
+        }
+    }
+
+    private void write(int slot, Ir.Value value) {
+        definitions.computeIfAbsent(current, block -> new HashMap<>()).put(slot, value);
+    }
+
+    private Ir.Value read(int slot, Ir.Block block) {
+
+        Map<Integer, Ir.Value> defined = definitions.get(block);
+        if (defined != null && defined.containsKey(slot)) {
+            return defined.get(slot);
+        }
+
+        Ir.Value value;
+        if (!sealed.contains(block)) {
+            Ir.Phi phi = block.add(new Ir.Phi(types.get(slot)));
+            incomplete.computeIfAbsent(block, b -> new HashMap<>()).put(slot, phi);
+            value = phi;
+        } else if (block.getPredecessors().isEmpty()) {
+            value = undefined;
+        } else if (block.getPredecessors().size() == 1) {
+            value = read(slot, block.getPredecessors().get(0));
+        } else {
+            //defined before reading the operands, so a cycle back to this block ends at the phi
+            Ir.Phi phi = block.add(new Ir.Phi(types.get(slot)));
+            definitions.computeIfAbsent(block, b -> new HashMap<>()).put(slot, phi);
+            value = complete(slot, phi);
+        }
+        definitions.computeIfAbsent(block, b -> new HashMap<>()).put(slot, value);
+        return value;
+    }
+
+    private Ir.Value complete(int slot, Ir.Phi phi) {
+
+        for (Ir.Block predecessor : phi.getBlock().getPredecessors()) {
+            phi.appendOperand(read(slot, predecessor));
+        }
+        return simplify(phi);
+    }
+
+    /**
+     * Removes a phi merging only a single value (besides itself), replacing
+     * it with that value. Phis using it may have become trivial in turn.
+     */
+    private Ir.Value simplify(Ir.Phi phi) {
+
+        Ir.Value same = null;
+        for (Ir.Value operand : phi.getOperands()) {
+            if (operand == same || operand == phi) {
+                continue;
+            } else if (same != null) {
+                return phi;
+            }
+            same = operand;
+        }
+        if (same == null) {
+            same = undefined;
+        }
+
+        List<Ir.Instruction> users = new ArrayList<>(phi.getUsers());
+        users.remove(phi);
+        phi.replaceAllUsesWith(same);
+        phi.remove();
+        for (Map<Integer, Ir.Value> defined : definitions.values()) {
+            for (Map.Entry<Integer, Ir.Value> entry : defined.entrySet()) {
+                if (entry.getValue() == phi) {
+                    entry.setValue(same);
+                }
+            }
+        }
+        for (Ir.Instruction user : users) {
+            if (user instanceof Ir.Phi && user.getBlock().getPhis().contains(user)) {
+                simplify((Ir.Phi) user);
+            }
+        }
+        return same;
+    }
+
+    /**
+     * Marks a block as having all of its predecessors, completing the phis
+     * placed while they were not known.
+     */
+    private void seal(Ir.Block block) {
+
+        sealed.add(block);
+        Map<Integer, Ir.Phi> phis = incomplete.remove(block);
+        if (phis != null) {
+            for (Map.Entry<Integer, Ir.Phi> entry : phis.entrySet()) {
+                complete(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Executes an {@link Ir.Program} for the {@link Interpreter}, in the scope of
+ * the interpreter (which provides the builtins and receives the fields and
+ * methods).
+ *
+ * Each activation stores its values in an array indexed by value id. On
+ * entering a block, its phis take the operands of the edge taken, all read
+ * before any is written.
+ */
+final class IrInterpreter implements Ir.Visitor<Environment.PlcObject> {
+
+    private final Scope scope;
+    private Environment.PlcObject[] values;
+    private List<Environment.PlcObject> arguments;
+    //block to continue in after the current one, null if it returned
+    private Ir.Block next;
+
+    IrInterpreter(Scope scope) {
+        this.scope = scope;
+    }
+
+    Environment.PlcObject execute(Ir.Program program) {
+
+        for (Environment.Variable field : program.getFields()) {
+            scope.defineVariable(field.getName(), Environment.NIL);
+        }
+        for (Ir.Function function : program.getFunctions()) {
+            scope.defineFunction(function.getName(), function.getParameters().size(), args -> invoke(function, args));
+        }
+        invoke(program.getInitializer(), Collections.emptyList());
+        return scope.lookupFunction("main", 0).invoke(Collections.emptyList());
+    }
+
+    private Environment.PlcObject invoke(Ir.Function function, List<Environment.PlcObject> args) {
+
+        Environment.PlcObject[] caller = values;
+        List<Environment.PlcObject> callerArguments = arguments;
+        values = new Environment.PlcObject[function.getValueCount()];
+        arguments = args;
+        try {
+            Ir.Block previous = null;
+            Ir.Block block = function.getEntry();
+            while (true) {
+                if (!block.getPhis().isEmpty()) {
+                    int edge = block.getPredecessors().indexOf(previous);
+                    Environment.PlcObject[] incoming = new Environment.PlcObject[block.getPhis().size()];
+                    for (int i = 0; i < incoming.length; i++) {
+                        incoming[i] = values[block.getPhis().get(i).getOperand(edge).getId()];
+                    }
+                    for (int i = 0; i < incoming.length; i++) {
+                        values[block.getPhis().get(i).getId()] = incoming[i];
+                    }
+                }
+                next = null;
+                for (Ir.Instruction instruction : block.getInstructions()) {
+                    values[instruction.getId()] = visit(instruction);
+                }
+                if (next == null) {
+                    return values[block.getTerminator().getId()];
+                }
+                previous = block;
+                block = next;
+            }
+        } finally {
+            values = caller;
+            arguments = callerArguments;
+        }
+    }
+
+    private Environment.PlcObject get(Ir.Instruction instruction, int operand) {
+        return values[instruction.getOperand(operand).getId()];
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Constant instruction) {
+        return instruction.getValue() == null ? Environment.NIL : Environment.create(instruction.getValue());
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Parameter instruction) {
+        return arguments.get(instruction.getIndex());
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Phi instruction) {
+        throw new AssertionError("Phis are assigned on entering their block.");
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Binary instruction) {
+
+        Operator operator = instruction.getOperatorCode();
+        if (operator == null) {
+            throw new ScriptException("Unknown operator " + instruction.getOperator() + ".");
+        }
+        return Environment.create(operator.apply(get(instruction, 0).getValue(), get(instruction, 1).getValue()));
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.GetGlobal instruction) {
+        return scope.lookupVariable(instruction.getName()).getValue();
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.SetGlobal instruction) {
+
+        scope.lookupVariable(instruction.getName()).setValue(get(instruction, 0));
+        return Environment.NIL;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.GetField instruction) {
+        return get(instruction, 0).getField(instruction.getName()).getValue();
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.SetField instruction) {
+
+        get(instruction, 0).setField(instruction.getName(), get(instruction, 1));
+        return Environment.NIL;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Call instruction) {
+
+        List<Environment.PlcObject> args = new ArrayList<>();
+        for (int i = 0; i < instruction.getOperands().size(); i++) {
+            args.add(get(instruction, i));
+        }
+        return scope.lookupFunction(instruction.getFunction().getName(), args.size()).invoke(args);
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.CallMethod instruction) {
+
+        List<Environment.PlcObject> args = new ArrayList<>();
+        for (int i = 1; i < instruction.getOperands().size(); i++) {
+            args.add(get(instruction, i));
+        }
+        return get(instruction, 0).callMethod(instruction.getFunction().getName(), args);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Environment.PlcObject visit(Ir.IteratorStart instruction) {
+        return Environment.create(requireType(Iterable.class, get(instruction, 0).getValue()).iterator());
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.IteratorHasNext instruction) {
+        return Environment.create(((Iterator<?>) get(instruction, 0).getValue()).hasNext());
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.IteratorNext instruction) {
+        return (Environment.PlcObject) ((Iterator<?>) get(instruction, 0).getValue()).next();
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Jump instruction) {
+
+        next = instruction.getTarget();
+        return Environment.NIL;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Branch instruction) {
+
+        next = requireType(Boolean.class, get(instruction, 0).getValue()) ? instruction.getThen() : instruction.getOtherwise();
+        return Environment.NIL;
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ir.Return instruction) {
+        return get(instruction, 0);
+    }
+
+    private static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw ScriptException.typeMismatch(type, value.getClass());
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package plc.project;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Prints the {@link Ir} as text, one instruction per line, for debugging and
+ * tests. Each block is headed by its predecessors and immediate dominator,
+ * and each value by its type:
+ *
+ * <pre>
+ * b1: ; preds b0, b2 ; idom b0
+ *     %4: Integer = phi [b0: %2], [b2: %7]
+ *     %5: Boolean = binary &lt; %4, %3
+ *     branch %5, b2, b3
+ * </pre>
+ */
+public final class IrPrinter implements Ir.Visitor<String> {
+
+    private final StringBuilder builder = new StringBuilder();
+
+    private IrPrinter() {}
+
+    public static String print(Ir.Program program) {
+
+        IrPrinter printer = new IrPrinter();
+        printer.builder.append("fields ").append(program.getFields().stream().map(Environment.Variable::getName).collect(Collectors.joining(", "))).append(System.lineSeparator());
+        printer.print(program.getInitializer());
+        for (Ir.Function function : program.getFunctions()) {
+            printer.print(function);
+        }
+        return printer.builder.toString();
+    }
+
+    public static String print(Ir.Function function) {
+
+        IrPrinter printer = new IrPrinter();
+        printer.print(function);
+        return printer.builder.toString();
+    }
+
+    private void print(Ir.Function function) {
+
+        Dominators dominators = new Dominators(function);
+        builder.append("function ").append(function.getName())
+                .append("(").append(String.join(", ", function.getParameters())).append(") {")
+                .append(System.lineSeparator());
+        for (Ir.Block block : function.getBlocks()) {
+            builder.append(block).append(":");
+            if (!block.getPredecessors().isEmpty()) {
+                builder.append(" ; preds ").append(join(block.getPredecessors()));
+            }
+            if (dominators.getImmediateDominator(block) != null) {
+                builder.append(" ; idom ").append(dominators.getImmediateDominator(block));
+            } else if (block != function.getEntry()) {
+                builder.append(" ; unreachable");
+            }
+            builder.append(System.lineSeparator());
+            for (Ir.Phi phi : block.getPhis()) {
+                line(phi);
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                line(instruction);
+            }
+        }
+        builder.append("}").append(System.lineSeparator());
+    }
+
+    private void line(Ir.Instruction instruction) {
+
+        builder.append("    ");
+        if (!(instruction instanceof Ir.Terminator) && !(instruction instanceof Ir.SetGlobal) && !(instruction instanceof Ir.SetField)) {
+            builder.append(instruction);
+            if (instruction.getType() != null) {
+                builder.append(": ").append(instruction.getType().getName());
+            }
+            builder.append(" = ");
+        }
+        builder.append(visit(instruction)).append(System.lineSeparator());
+    }
+
+    private static String join(List<?> objects) {
+        return objects.stream().map(Object::toString).collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String visit(Ir.Constant instruction) {
+
+        Object value = instruction.getValue();
+        if (value == null) {
+            return "const NIL";
+        } else if (value instanceof String) {
+            return "const \"" + value + "\"";
+        } else if (value instanceof Character) {
+            return "const '" + value + "'";
+        }
+        return "const " + value;
+    }
+
+    @Override
+    public String visit(Ir.Parameter instruction) {
+        return "param " + instruction.getIndex();
+    }
+
+    @Override
+    public String visit(Ir.Phi instruction) {
+
+        List<Ir.Block> predecessors = instruction.getBlock().getPredecessors();
+        StringBuilder phi = new StringBuilder("phi");
+        for (int i = 0; i < instruction.getOperands().size(); i++) {
+            phi.append(i == 0 ? " " : ", ").append("[").append(predecessors.get(i)).append(": ").append(instruction.getOperand(i)).append("]");
+        }
+        return phi.toString();
+    }
+
+    @Override
+    public String visit(Ir.Binary instruction) {
+        return "binary " + instruction.getOperator() + " " + instruction.getOperand(0) + ", " + instruction.getOperand(1);
+    }
+
+    @Override
+    public String visit(Ir.GetGlobal instruction) {
+        return "get_global " + instruction.getName();
+    }
+
+    @Override
+    public String visit(Ir.SetGlobal instruction) {
+        return "set_global " + instruction.getName() + ", " + instruction.getOperand(0);
+    }
+
+    @Override
+    public String visit(Ir.GetField instruction) {
+        return "get_field " + instruction.getOperand(0) + "." + instruction.getName();
+    }
+
+    @Override
+    public String visit(Ir.SetField instruction) {
+        return "set_field " + instruction.getOperand(0) + "." + instruction.getName() + ", " + instruction.getOperand(1);
+    }
+
+    @Override
+    public String visit(Ir.Call instruction) {
+        return "call " + instruction.getFunction().getName() + "(" + join(instruction.getOperands()) + ")";
+    }
+
+    @Override
+    public String visit(Ir.CallMethod instruction) {
+
+        List<Ir.Value> operands = instruction.getOperands();
+        return "call_method " + operands.get(0) + "." + instruction.getFunction().getName() + "(" + join(operands.subList(1, operands.size())) + ")";
+    }
+
+    @Override
+    public String visit(Ir.IteratorStart instruction) {
+        return "iterator " + instruction.getOperand(0);
+    }
+
+    @Override
+    public String visit(Ir.IteratorHasNext instruction) {
+        return "has_next " + instruction.getOperand(0);
+    }
+
+    @Override
+    public String visit(Ir.IteratorNext instruction) {
+        return "next " + instruction.getOperand(0);
+    }
+
+    @Override
+    public String visit(Ir.Jump instruction) {
+        return "jump " + instruction.getTarget();
+    }
+
+    @Override
+    public String visit(Ir.Branch instruction) {
+        return "branch " + instruction.getOperand(0) + ", " + instruction.getThen() + ", " + instruction.getOtherwise();
+    }
+
+    @Override
+    public String visit(Ir.Return instruction) {
+        return "return " + instruction.getOperand(0);
+    }
+
+}
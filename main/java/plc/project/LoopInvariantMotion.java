@@ -0,0 +1,302 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Hoists pure, loop-invariant binary expressions out of {@code WHILE} and
+ * {@code FOR} loops into temporaries declared directly before the loop.
+ *
+ * An expression is invariant if it only reads locals that are not declared or
+ * assigned anywhere in the loop, and fields that are not assigned in the loop
+ * (only if the loop makes no calls, since any call may write a field).
+ *
+ * Only expressions that cannot throw (non-NIL operands whose static types the
+ * operator accepts, and no division by anything but a non-zero literal) are
+ * hoisted unconditionally. An expression that may throw is only hoisted out of
+ * a {@code WHILE} whose condition makes no calls, and only if every iteration
+ * evaluates it before anything observable happens; the loop is then inverted
+ * to {@code IF condition DO <temporaries> WHILE condition DO ... END END}, so
+ * the expression is not evaluated unless the loop runs at least once. Methods
+ * must have been resolved by the {@link Analyzer}; temporaries are given new
+ * slots at the end of the method's frame.
+ */
+public final class LoopInvariantMotion extends AstRewriter {
+
+    private int frameSize;
+    private int temporaries = 0;
+
+    @Override
+    public Ast.Method visit(Ast.Method ast) {
+
+        if (ast.getFrameSize() < 0) {
+            return ast;
+        }
+        frameSize = ast.getFrameSize();
+        Ast.Method method = super.visit(ast);
+        method.setFrameSize(frameSize);
+        return method;
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.For ast) {
+
+        //inner loops are handled first, as part of rewriting the body
+        Ast.Stmt.For rewritten = (Ast.Stmt.For) super.visit(ast);
+        Hoister hoister = new Hoister(Effects.ofLoop(rewritten), Collections.emptySet());
+        Ast.Stmt.For loop = new Ast.Stmt.For(rewritten.getName(), rewritten.getValue(), hoister.rewriteStatements(rewritten.getStatements()));
+        loop.setSlot(rewritten.getSlot());
+        return at(ast, loop);
+    }
+
+    @Override
+    public Ast.Stmt visit(Ast.Stmt.While ast) {
+
+        Ast.Stmt.While rewritten = (Ast.Stmt.While) super.visit(ast);
+        //the condition is evaluated once more by the inverted loop, so it must not make calls
+        Set<Ast.Expr> anticipated = Effects.of(rewritten.getCondition()).calls ? Collections.emptySet() : Anticipated.of(rewritten);
+        Hoister hoister = new Hoister(Effects.ofLoop(rewritten), anticipated);
+        Ast.Expr condition = hoister.rewrite(rewritten.getCondition());
+        Ast.Stmt loop = InductionAnalyzer.recognize(at(ast, new Ast.Stmt.While(condition, hoister.rewriteStatements(rewritten.getStatements()))));
+        if (hoister.guarded.isEmpty()) {
+            return loop;
+        }
+        List<Ast.Stmt> statements = new ArrayList<>(hoister.guarded);
+        statements.add(loop);
+        return at(ast, new Ast.Stmt.If(rewritten.getCondition(), statements, Collections.emptyList()));
+    }
+
+    /**
+     * Replaces invariant expressions in a single loop with temporaries,
+     * reusing one temporary for every occurrence of the same value.
+     */
+    private final class Hoister extends AstRewriter {
+
+        private final Effects effects;
+        private final Set<Ast.Expr> anticipated;
+        private final Map<String, Ast.Stmt.Declaration> hoisted = new HashMap<>();
+        //temporaries that may throw, declared only once the condition holds
+        private final List<Ast.Stmt> guarded = new ArrayList<>();
+
+        private Hoister(Effects effects, Set<Ast.Expr> anticipated) {
+            this.effects = effects;
+            this.anticipated = anticipated;
+        }
+
+        @Override
+        public Ast.Expr visit(Ast.Expr.Group ast) {
+            return ast.getExpression() instanceof Ast.Expr.Binary && isHoistable(ast) ? hoist(ast) : super.visit(ast);
+        }
+
+        @Override
+        public Ast.Expr visit(Ast.Expr.Binary ast) {
+            return isHoistable(ast) ? hoist(ast) : super.visit(ast);
+        }
+
+        private boolean isHoistable(Ast.Expr expr) {
+            return isInvariant(expr) && (!canThrow(expr) || anticipated.contains(expr));
+        }
+
+        private Ast.Expr hoist(Ast.Expr expr) {
+
+            String key = ValueKey.of(expr);
+            Ast.Stmt.Declaration declaration = hoisted.get(key);
+            if (declaration == null) {
+                String name = "$licm" + temporaries++;
+                declaration = new Ast.Stmt.Declaration(name, Optional.empty(), Optional.of(expr));
+                declaration.setVariable(new Environment.Variable(name, name, expr.getType(), Environment.NIL));
+                declaration.setSlot(frameSize++);
+                hoisted.put(key, declaration);
+                if (canThrow(expr)) {
+                    guarded.add(declaration);
+                } else {
+                    LoopInvariantMotion.this.prepend(declaration);
+                }
+            }
+            Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), declaration.getName());
+            access.setVariable(declaration.getVariable());
+            access.setSlot(Ast.Expr.Access.LOCAL, declaration.getSlot());
+            return access;
+        }
+
+        private boolean isInvariant(Ast.Expr expr) {
+
+            if (expr instanceof Ast.Expr.Literal) {
+                return true;
+            } else if (expr instanceof Ast.Expr.Group) {
+                return isInvariant(((Ast.Expr.Group) expr).getExpression());
+            } else if (expr instanceof Ast.Expr.Access) {
+                Ast.Expr.Access access = (Ast.Expr.Access) expr;
+                if (access.getReceiver().isPresent()) {
+                    return false;
+                } else if (access.getDepth() == Ast.Expr.Access.LOCAL) {
+                    return !effects.locals.contains(access.getSlot());
+                } else if (access.getDepth() == Ast.Expr.Access.GLOBAL) {
+                    return !effects.calls && !effects.objects && !effects.fields.contains(access.getSlot());
+                }
+                return false;
+            } else if (expr instanceof Ast.Expr.Binary) {
+                Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+                return isInvariant(binary.getLeft()) && isInvariant(binary.getRight());
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * Returns true if evaluating an invariant expression may throw, unless its
+     * operands are known not to be NIL and statically typed so the operator
+     * applies to them.
+     */
+    private static boolean canThrow(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Group) {
+            return canThrow(((Ast.Expr.Group) expr).getExpression());
+        } else if (!(expr instanceof Ast.Expr.Binary)) {
+            return false;
+        }
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+        Ast.Expr left = binary.getLeft();
+        Ast.Expr right = binary.getRight();
+        if (canThrow(left) || canThrow(right) || binary.getOperatorCode() == null || !left.isNonNil() || !right.isNonNil()) {
+            return true;
+        }
+        Environment.Type type = left.getType();
+        boolean same = type == right.getType();
+        switch (binary.getOperatorCode()) {
+            case AND:
+            case OR:
+                return !same || type != Environment.Type.BOOLEAN;
+            case EQUAL:
+            case NOT_EQUAL:
+                return false;
+            case LESS:
+            case LESS_EQUAL:
+            case GREATER:
+            case GREATER_EQUAL:
+                return !same || type != Environment.Type.INTEGER && type != Environment.Type.DECIMAL
+                        && type != Environment.Type.CHARACTER && type != Environment.Type.STRING;
+            case ADD:
+                if (type == Environment.Type.STRING || right.getType() == Environment.Type.STRING) {
+                    return false;
+                }
+                return !same || type != Environment.Type.INTEGER && type != Environment.Type.DECIMAL;
+            case SUBTRACT:
+            case MULTIPLY:
+                return !same || type != Environment.Type.INTEGER && type != Environment.Type.DECIMAL;
+            case DIVIDE:
+                return !same || type != Environment.Type.INTEGER && type != Environment.Type.DECIMAL || !isNonZeroLiteral(right);
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isNonZeroLiteral(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Group) {
+            return isNonZeroLiteral(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Literal) {
+            Object literal = ((Ast.Expr.Literal) expr).getLiteral();
+            return literal instanceof BigInteger && ((BigInteger) literal).signum() != 0
+                    || literal instanceof BigDecimal && ((BigDecimal) literal).signum() != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Collects the expressions of a loop that every iteration evaluates before
+     * anything observable happens: the condition, then the body up to the
+     * first call, write of a field or object, branch, nested loop or return,
+     * or the right operand of an {@code AND} or {@code OR}.
+     */
+    private static final class Anticipated extends AstScanner {
+
+        private final Set<Ast.Expr> expressions = Collections.newSetFromMap(new IdentityHashMap<>());
+        private boolean blocked = false;
+
+        static Set<Ast.Expr> of(Ast.Stmt.While loop) {
+            Anticipated anticipated = new Anticipated();
+            anticipated.visit(loop.getCondition());
+            anticipated.scan(loop.getStatements());
+            return anticipated.expressions;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+            super.visit(ast);
+            if (receiver.getReceiver().isPresent() || receiver.getDepth() != Ast.Expr.Access.LOCAL) {
+                blocked = true;
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            visit(ast.getCondition());
+            blocked = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            visit(ast.getValue());
+            blocked = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            visit(ast.getCondition());
+            blocked = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            visit(ast.getValue());
+            blocked = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            if (!blocked) {
+                expressions.add(ast);
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            if (blocked) {
+                return null;
+            }
+            expressions.add(ast);
+            visit(ast.getLeft());
+            if (ast.getOperatorCode() != null && ast.getOperatorCode().getShortCircuit() != null) {
+                blocked = true;
+            }
+            visit(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            super.visit(ast);
+            blocked = true;
+            return null;
+        }
+
+    }
+
+}
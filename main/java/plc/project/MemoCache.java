@@ -0,0 +1,145 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the results of calls to pure methods, keyed on the
+ * method and the values of its arguments, evicting the least recently used
+ * entry once full. Calls with arguments that are not immutable values are
+ * never cached.
+ */
+public final class MemoCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final Map<Key, Environment.PlcObject> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public MemoCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, Environment.PlcObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Environment.PlcObject> eldest) {
+                if (size() > MemoCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of the call, or computes and caches it. If the
+     * computation throws nothing is cached.
+     */
+    public Environment.PlcObject invoke(Ast.Method method, List<Environment.PlcObject> args, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
+
+        Key key = Key.of(method, args);
+        if (key == null || capacity <= 0) {
+            return function.apply(args);
+        }
+        Environment.PlcObject result = entries.get(key);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        misses++;
+        result = function.apply(args);
+        entries.put(key, result);
+        return result;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of cacheable calls that were hits, or 0 if there
+     * have been none.
+     */
+    public double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoCache{" +
+                "size=" + entries.size() +
+                ", capacity=" + capacity +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private static final class Key {
+
+        private final Ast.Method method;
+        private final List<Object> values;
+
+        private Key(Ast.Method method, List<Object> values) {
+            this.method = method;
+            this.values = values;
+        }
+
+        private static Key of(Ast.Method method, List<Environment.PlcObject> args) {
+
+            List<Object> values = new ArrayList<>(args.size());
+            for (Environment.PlcObject arg : args) {
+                Object value = arg.getValue();
+                if (!(arg == Environment.NIL || value instanceof BigInteger || value instanceof BigDecimal
+                        || value instanceof String || value instanceof Boolean || value instanceof Character)) {
+                    return null;
+                }
+                values.add(value);
+            }
+            return new Key(method, values);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key &&
+                    method == ((Key) obj).method &&
+                    values.equals(((Key) obj).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(method) + Objects.hashCode(values);
+        }
+
+    }
+
+}
@@ -0,0 +1,208 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Clones methods with {@code Any} or {@code Comparable} parameters for each
+ * narrower argument-type signature their call sites pass, so the typed
+ * evaluation (unboxed locals, specialized operators, primitive Java types in
+ * the {@link Generator}) applies within each clone.
+ *
+ * The signature of a call site is the static type of each argument where the
+ * parameter is {@code Any} or {@code Comparable} (unless the argument is just
+ * as general, or {@code Nil}), and the declared type elsewhere. Signatures are
+ * cloned in order of how many call sites use them, up to the budget. A clone
+ * is named after the method and its signature, joined by {@code $} (which
+ * cannot appear in source identifiers), and the call sites are redirected to
+ * it.
+ *
+ * Each clone is kept only if the source still type checks with it, analyzed
+ * by an {@link Analyzer} from the given factory (which should define the same
+ * builtins and settings as the one that analyzed the source): a body may rely
+ * on its parameter being general, such as by assigning it a value of a
+ * different type, in which case the method is left generic for that
+ * signature.
+ */
+public final class MethodCloner {
+
+    public static final int DEFAULT_BUDGET = 8;
+
+    private MethodCloner() {}
+
+    public static Ast.Source specialize(Ast.Source source, Supplier<Analyzer> analyzers) {
+        return specialize(source, analyzers, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Returns the source with at most {@code budget} clones, analyzed again
+     * by a new analyzer from the factory, or the source itself if nothing was
+     * cloned.
+     */
+    public static Ast.Source specialize(Ast.Source source, Supplier<Analyzer> analyzers, int budget) {
+
+        CallGraph graph = new CallGraph(source);
+        Map<String, Clone> signatures = new LinkedHashMap<>();
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Expr.Function ast) {
+                Ast.Method callee = graph.getCallee(ast);
+                List<Environment.Type> signature = callee == null ? null : signature(ast, callee);
+                if (signature != null) {
+                    Clone clone = new Clone(callee, signature);
+                    signatures.computeIfAbsent(clone.name, name -> clone).calls.add(ast);
+                }
+                return super.visit(ast);
+            }
+        }.visit(source);
+
+        List<Clone> candidates = new ArrayList<>(signatures.values());
+        candidates.sort(Comparator.comparingInt((Clone clone) -> clone.calls.size()).reversed());
+
+        List<Clone> accepted = new ArrayList<>();
+        Ast.Source specialized = source;
+        boolean analyzes = false;
+        for (Clone candidate : candidates) {
+            if (accepted.size() >= budget) {
+                break;
+            }
+            accepted.add(candidate);
+            Ast.Source trial = new Cloning(accepted).visit(source);
+            RuntimeException error = typeCheck(trial, analyzers);
+            if (error == null) {
+                specialized = trial;
+                analyzes = true;
+                continue;
+            }
+            //a failure is only the clone's if the source analyzes without it, otherwise the analyzers are wrong
+            if (!analyzes) {
+                RuntimeException original = typeCheck(new Cloning(new ArrayList<>()).visit(source), analyzers);
+                if (original != null) {
+                    throw original;
+                }
+                analyzes = true;
+            }
+            //the body does not type check with the narrower parameters, so this signature stays generic
+            accepted.remove(accepted.size() - 1);
+        }
+        return specialized;
+    }
+
+    /**
+     * Analyzes a source, returning the type error it fails with or null. The
+     * {@link Analyzer} reports type errors as plain RuntimeExceptions, so
+     * anything else is rethrown.
+     */
+    private static RuntimeException typeCheck(Ast.Source source, Supplier<Analyzer> analyzers) {
+
+        try {
+            analyzers.get().visit(source);
+            return null;
+        } catch (RuntimeException e) {
+            if (e.getClass() != RuntimeException.class) {
+                throw e;
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Returns the narrowed parameter types for a call, or null if no
+     * parameter is narrowed.
+     */
+    private static List<Environment.Type> signature(Ast.Expr.Function call, Ast.Method callee) {
+
+        List<Environment.Type> declared = callee.getFunction().getParameterTypes();
+        List<Environment.Type> signature = new ArrayList<>();
+        boolean narrowed = false;
+        for (int i = 0; i < declared.size(); i++) {
+            Environment.Type argument = call.getArguments().get(i).getType();
+            if (isGeneral(declared.get(i)) && !isGeneral(argument) && argument != Environment.Type.NIL) {
+                signature.add(argument);
+                narrowed = true;
+            } else {
+                signature.add(declared.get(i));
+            }
+        }
+        return narrowed ? signature : null;
+    }
+
+    private static boolean isGeneral(Environment.Type type) {
+        return type == Environment.Type.ANY || type == Environment.Type.COMPARABLE;
+    }
+
+    /**
+     * A method specialized for one signature, and the call sites using it.
+     */
+    private static final class Clone {
+
+        private final Ast.Method method;
+        private final List<Environment.Type> signature;
+        private final String name;
+        private final List<Ast.Expr.Function> calls = new ArrayList<>();
+
+        private Clone(Ast.Method method, List<Environment.Type> signature) {
+
+            this.method = method;
+            this.signature = signature;
+            StringBuilder name = new StringBuilder(method.getName());
+            for (Environment.Type type : signature) {
+                name.append('$').append(type.getName());
+            }
+            this.name = name.toString();
+        }
+
+    }
+
+    /**
+     * Copies a source with the clones appended and their call sites
+     * redirected to them.
+     */
+    private static final class Cloning extends AstRewriter {
+
+        private final List<Clone> clones;
+        private final Map<Ast.Expr.Function, String> targets = new IdentityHashMap<>();
+
+        private Cloning(List<Clone> clones) {
+
+            this.clones = clones;
+            for (Clone clone : clones) {
+                for (Ast.Expr.Function call : clone.calls) {
+                    targets.put(call, clone.name);
+                }
+            }
+        }
+
+        @Override
+        public Ast.Source visit(Ast.Source ast) {
+
+            Ast.Source copy = super.visit(ast);
+            List<Ast.Method> methods = new ArrayList<>(copy.getMethods());
+            for (Clone clone : clones) {
+                List<String> typeNames = new ArrayList<>();
+                for (Environment.Type type : clone.signature) {
+                    typeNames.add(type.getName());
+                }
+                //call sites within the body are redirected in the clone as well
+                methods.add(new Ast.Method(clone.name, clone.method.getParameters(), typeNames,
+                        clone.method.getReturnTypeName(), rewriteStatements(clone.method.getStatements())));
+            }
+            return new Ast.Source(copy.getFields(), methods);
+        }
+
+        @Override
+        public Ast.Expr visit(Ast.Expr.Function ast) {
+
+            Ast.Expr.Function call = (Ast.Expr.Function) super.visit(ast);
+            String target = targets.get(ast);
+            return target == null ? call : new Ast.Expr.Function(call.getReceiver(), target, call.getArguments());
+        }
+
+    }
+
+}
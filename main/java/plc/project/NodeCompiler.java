@@ -0,0 +1,778 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a source resolved by the {@link Analyzer} once into a tree of
+ * executable nodes for the {@link Interpreter}, in the scope of the
+ * interpreter (which provides the builtins and receives the fields and
+ * methods).
+ *
+ * Names are linked while compiling: locals become frame slots, fields the
+ * variable they are stored in, and calls to methods of the source the
+ * compiled method itself, so running the tree never looks anything up.
+ * Binary operators specialize on the operands they first see: INTEGER,
+ * DECIMAL and STRING operands each get a node computing only with that type,
+ * which rewrites itself to a generic node (using {@link Operator}) the first
+ * time the operands do not match.
+ *
+ * Every method must have been resolved, so the demand-driven mode of the
+ * Analyzer must have analyzed all deferred methods first. Pure methods are
+ * not memoized and tail calls use the Java stack, unlike the Interpreter.
+ */
+final class NodeCompiler implements Ast.Visitor<NodeCompiler.Node> {
+
+    private final Scope scope;
+    //compiled methods by the function the Analyzer linked their call sites to
+    private final Map<Environment.Function, Method> methods = new IdentityHashMap<>();
+    private Environment.Variable[] globals;
+
+    NodeCompiler(Scope scope) {
+        this.scope = scope;
+    }
+
+    Environment.PlcObject execute(Ast.Source source) {
+
+        Method initializer = (Method) visit(source);
+        initializer.run(new Frame(0));
+        return scope.lookupFunction("main", 0).invoke(Collections.emptyList());
+    }
+
+    /**
+     * Links and compiles a source, defining its fields and methods in the
+     * scope, and returns the initializer of its fields as a method without
+     * locals.
+     */
+    @Override
+    public Node visit(Ast.Source source) {
+
+        int size = 0;
+        for (Ast.Field field : source.getFields()) {
+            size = Math.max(size, field.getSlot() + 1);
+        }
+        globals = new Environment.Variable[size];
+        for (Ast.Field field : source.getFields()) {
+            if (field.getSlot() < 0) {
+                throw new RuntimeException("The field " + field.getName() + " has not been resolved.");
+            }
+            globals[field.getSlot()] = scope.defineVariable(field.getName(), Environment.NIL);
+        }
+        for (Ast.Method ast : source.getMethods()) {
+            if (ast.getFrameSize() < 0) {
+                throw new RuntimeException("The method " + ast.getName() + " has not been resolved.");
+            }
+            Method method = new Method(ast.getFrameSize());
+            methods.put(ast.getFunction(), method);
+            scope.defineFunction(ast.getName(), ast.getParameters().size(), method::invoke);
+        }
+
+        Method initializer = new Method(0);
+        initializer.body = new Stmt[source.getFields().size()];
+        for (int i = 0; i < initializer.body.length; i++) {
+            initializer.body[i] = (Stmt) visit(source.getFields().get(i));
+        }
+        for (Ast.Method method : source.getMethods()) {
+            visit(method);
+        }
+        return initializer;
+    }
+
+    @Override
+    public Node visit(Ast.Field ast) {
+
+        Expr value = ast.getValue().isPresent() ? expression(ast.getValue().get()) : new Constant(Environment.NIL);
+        return new AssignGlobal(globals[ast.getSlot()], value);
+    }
+
+    @Override
+    public Node visit(Ast.Method ast) {
+
+        Method method = methods.get(ast.getFunction());
+        method.body = block(ast.getStatements());
+        return method;
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Expression ast) {
+        return new Evaluate(expression(ast.getExpression()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Declaration ast) {
+
+        Expr value = ast.getValue().isPresent() ? expression(ast.getValue().get()) : new Constant(Environment.NIL);
+        return new AssignLocal(ast.getSlot(), value);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Assignment ast) {
+
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        Expr value = expression(ast.getValue());
+        if (receiver.getReceiver().isPresent()) {
+            return new AssignField(receiver.getName(), expression(receiver.getReceiver().get()), value);
+        } else if (receiver.getDepth() == Ast.Expr.Access.LOCAL) {
+            return new AssignLocal(receiver.getSlot(), value);
+        }
+        return new AssignGlobal(global(receiver), value);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.If ast) {
+        return new If(expression(ast.getCondition()), block(ast.getThenStatements()), block(ast.getElseStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.For ast) {
+        return new For(ast.getSlot(), expression(ast.getValue()), block(ast.getStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.While ast) {
+        return new While(expression(ast.getCondition()), block(ast.getStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Return ast) {
+        return new Return(expression(ast.getValue()));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Literal ast) {
+        return new Constant(ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral()));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Binary ast) {
+
+        Operator operator = ast.getOperatorCode();
+        if (operator == null) {
+            throw new ScriptException("Unknown operator " + ast.getOperator() + ".");
+        }
+        Expr left = expression(ast.getLeft());
+        Expr right = expression(ast.getRight());
+        if (operator.getShortCircuit() != null) {
+            return new Logical(operator.getShortCircuit(), left, right);
+        }
+        return new UninitializedBinary(operator, new Expr[] {left, right});
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Access ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            return new ReadField(ast.getName(), expression(ast.getReceiver().get()));
+        } else if (ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            return new ReadLocal(ast.getSlot());
+        }
+        return new ReadGlobal(global(ast));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Function ast) {
+
+        Expr[] arguments = new Expr[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = expression(ast.getArguments().get(i));
+        }
+        if (ast.getReceiver().isPresent()) {
+            Expr[] children = new Expr[arguments.length + 1];
+            children[0] = expression(ast.getReceiver().get());
+            System.arraycopy(arguments, 0, children, 1, arguments.length);
+            return new CallReceiver(ast.getName(), children);
+        }
+        Method method = methods.get(ast.getFunction());
+        if (method != null) {
+            return new CallMethod(method, arguments);
+        }
+        return new CallFunction(scope.lookupFunction(ast.getName(), arguments.length), arguments);
+    }
+
+    private Expr expression(Ast.Expr ast) {
+        return (Expr) visit(ast);
+    }
+
+    private Stmt[] block(List<Ast.Stmt> statements) {
+
+        Stmt[] block = new Stmt[statements.size()];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (Stmt) visit(statements.get(i));
+        }
+        return block;
+    }
+
+    private Environment.Variable global(Ast.Expr.Access ast) {
+
+        if (ast.getDepth() != Ast.Expr.Access.GLOBAL) {
+            throw new RuntimeException("The variable " + ast.getName() + " has not been resolved.");
+        }
+        return globals[ast.getSlot()];
+    }
+
+    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw ScriptException.typeMismatch(type, object.getValue().getClass());
+        }
+    }
+
+    /**
+     * The locals of an activation, and the value it returned.
+     */
+    static final class Frame {
+
+        private final Environment.PlcObject[] locals;
+        private Environment.PlcObject returned = Environment.NIL;
+
+        private Frame(int size) {
+            this.locals = new Environment.PlcObject[size];
+        }
+
+    }
+
+    /**
+     * A compiled node, holding the expressions it evaluates as children so
+     * that they can replace themselves.
+     */
+    abstract static class Node {
+
+        final Expr[] children;
+
+        Node(Expr... children) {
+            adopt(children);
+            this.children = children;
+        }
+
+        private void adopt(Expr[] children) {
+            for (int i = 0; i < children.length; i++) {
+                children[i].parent = this;
+                children[i].index = i;
+            }
+        }
+
+    }
+
+    abstract static class Stmt extends Node {
+
+        Stmt(Expr... children) {
+            super(children);
+        }
+
+        /**
+         * Executes the statement, returning false if it returned from the
+         * method (with the value in {@link Frame#returned}).
+         */
+        abstract boolean execute(Frame frame);
+
+        static boolean execute(Stmt[] block, Frame frame) {
+            for (Stmt stmt : block) {
+                if (!stmt.execute(frame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    abstract static class Expr extends Node {
+
+        private Node parent;
+        private int index;
+
+        Expr(Expr... children) {
+            super(children);
+        }
+
+        abstract Environment.PlcObject evaluate(Frame frame);
+
+        /**
+         * Replaces this node in its parent, returning the replacement.
+         */
+        final <T extends Expr> T replace(T node) {
+            parent.children[index] = node;
+            node.parent = parent;
+            node.index = index;
+            return node;
+        }
+
+    }
+
+    /**
+     * A compiled method, invoked on a new frame with its parameters in the
+     * first slots.
+     */
+    static final class Method extends Node {
+
+        private final int frameSize;
+        private Stmt[] body;
+
+        private Method(int frameSize) {
+            this.frameSize = frameSize;
+        }
+
+        private Environment.PlcObject invoke(List<Environment.PlcObject> arguments) {
+
+            Frame frame = new Frame(frameSize);
+            for (int i = 0; i < arguments.size(); i++) {
+                frame.locals[i] = arguments.get(i);
+            }
+            return run(frame);
+        }
+
+        private Environment.PlcObject run(Frame frame) {
+            return Stmt.execute(body, frame) ? Environment.NIL : frame.returned;
+        }
+
+    }
+
+    private static final class Evaluate extends Stmt {
+
+        private Evaluate(Expr expression) {
+            super(expression);
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            children[0].evaluate(frame);
+            return true;
+        }
+
+    }
+
+    private static final class AssignLocal extends Stmt {
+
+        private final int slot;
+
+        private AssignLocal(int slot, Expr value) {
+            super(value);
+            this.slot = slot;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.locals[slot] = children[0].evaluate(frame);
+            return true;
+        }
+
+    }
+
+    private static final class AssignGlobal extends Stmt {
+
+        private final Environment.Variable variable;
+
+        private AssignGlobal(Environment.Variable variable, Expr value) {
+            super(value);
+            this.variable = variable;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            variable.setValue(children[0].evaluate(frame));
+            return true;
+        }
+
+    }
+
+    private static final class AssignField extends Stmt {
+
+        private final String name;
+
+        private AssignField(String name, Expr receiver, Expr value) {
+            super(receiver, value);
+            this.name = name;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            children[0].evaluate(frame).setField(name, children[1].evaluate(frame));
+            return true;
+        }
+
+    }
+
+    private static final class If extends Stmt {
+
+        private final Stmt[] then;
+        private final Stmt[] otherwise;
+
+        private If(Expr condition, Stmt[] then, Stmt[] otherwise) {
+            super(condition);
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            return execute(requireType(Boolean.class, children[0].evaluate(frame)) ? then : otherwise, frame);
+        }
+
+    }
+
+    private static final class For extends Stmt {
+
+        private final int slot;
+        private final Stmt[] body;
+
+        private For(int slot, Expr value, Stmt[] body) {
+            super(value);
+            this.slot = slot;
+            this.body = body;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean execute(Frame frame) {
+            for (Environment.PlcObject value : (Iterable<Environment.PlcObject>) requireType(Iterable.class, children[0].evaluate(frame))) {
+                frame.locals[slot] = value;
+                if (!execute(body, frame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static final class While extends Stmt {
+
+        private final Stmt[] body;
+
+        private While(Expr condition, Stmt[] body) {
+            super(condition);
+            this.body = body;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            while (requireType(Boolean.class, children[0].evaluate(frame))) {
+                if (!execute(body, frame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static final class Return extends Stmt {
+
+        private Return(Expr value) {
+            super(value);
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.returned = children[0].evaluate(frame);
+            return false;
+        }
+
+    }
+
+    private static final class Constant extends Expr {
+
+        private final Environment.PlcObject value;
+
+        private Constant(Environment.PlcObject value) {
+            this.value = value;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+            return value;
+        }
+
+    }
+
+    private static final class ReadLocal extends Expr {
+
+        private final int slot;
+
+        private ReadLocal(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+            return frame.locals[slot];
+        }
+
+    }
+
+    private static final class ReadGlobal extends Expr {
+
+        private final Environment.Variable variable;
+
+        private ReadGlobal(Environment.Variable variable) {
+            this.variable = variable;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+            return variable.getValue();
+        }
+
+    }
+
+    private static final class ReadField extends Expr {
+
+        private final String name;
+
+        private ReadField(String name, Expr receiver) {
+            super(receiver);
+            this.name = name;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+            return children[0].evaluate(frame).getField(name).getValue();
+        }
+
+    }
+
+    private static final class CallMethod extends Expr {
+
+        private final Method method;
+
+        private CallMethod(Method method, Expr[] arguments) {
+            super(arguments);
+            this.method = method;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+
+            Frame callee = new Frame(method.frameSize);
+            for (int i = 0; i < children.length; i++) {
+                callee.locals[i] = children[i].evaluate(frame);
+            }
+            return method.run(callee);
+        }
+
+    }
+
+    private static final class CallFunction extends Expr {
+
+        private final Environment.Function function;
+
+        private CallFunction(Environment.Function function, Expr[] arguments) {
+            super(arguments);
+            this.function = function;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+
+            List<Environment.PlcObject> arguments = new ArrayList<>(children.length);
+            for (Expr argument : children) {
+                arguments.add(argument.evaluate(frame));
+            }
+            return function.invoke(arguments);
+        }
+
+    }
+
+    private static final class CallReceiver extends Expr {
+
+        private final String name;
+
+        private CallReceiver(String name, Expr[] children) {
+            super(children);
+            this.name = name;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+
+            //the Interpreter evaluates the arguments before the receiver
+            List<Environment.PlcObject> arguments = new ArrayList<>(children.length - 1);
+            for (int i = 1; i < children.length; i++) {
+                arguments.add(children[i].evaluate(frame));
+            }
+            return children[0].evaluate(frame).callMethod(name, arguments);
+        }
+
+    }
+
+    /**
+     * {@code AND} and {@code OR}, evaluating the right operand only if the
+     * left does not decide the result.
+     */
+    private static final class Logical extends Expr {
+
+        private final boolean shortCircuit;
+
+        private Logical(boolean shortCircuit, Expr left, Expr right) {
+            super(left, right);
+            this.shortCircuit = shortCircuit;
+        }
+
+        @Override
+        Environment.PlcObject evaluate(Frame frame) {
+
+            if (requireType(Boolean.class, children[0].evaluate(frame)) == shortCircuit) {
+                return Environment.create(shortCircuit);
+            }
+            return Environment.create(requireType(Boolean.class, children[1].evaluate(frame)));
+        }
+
+    }
+
+    /**
+     * A binary operator other than {@code AND} and {@code OR}, evaluating
+     * each operand once and applying the operator to their values.
+     */
+    private abstract static class Binary extends Expr {
+
+        final Operator operator;
+
+        private Binary(Operator operator, Expr[] children) {
+            super(children);
+            this.operator = operator;
+        }
+
+        @Override
+        final Environment.PlcObject evaluate(Frame frame) {
+            return Environment.create(apply(children[0].evaluate(frame).getValue(), children[1].evaluate(frame).getValue()));
+        }
+
+        abstract Object apply(Object left, Object right);
+
+        /**
+         * Rewrites this node to the generic form, after seeing operands it is
+         * not specialized for.
+         */
+        final Object generalize(Object left, Object right) {
+            return replace(new GenericBinary(operator, children)).apply(left, right);
+        }
+
+    }
+
+    /**
+     * A binary operator that has not run yet, which replaces itself with the
+     * specialization for the first operands it sees.
+     */
+    private static final class UninitializedBinary extends Binary {
+
+        private UninitializedBinary(Operator operator, Expr[] children) {
+            super(operator, children);
+        }
+
+        @Override
+        Object apply(Object left, Object right) {
+
+            Binary specialized;
+            if (left instanceof BigInteger && right instanceof BigInteger) {
+                specialized = new IntegerBinary(operator, children);
+            } else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+                specialized = new DecimalBinary(operator, children);
+            } else if (operator == Operator.ADD && (left instanceof String || right instanceof String)) {
+                specialized = new StringBinary(operator, children);
+            } else {
+                specialized = new GenericBinary(operator, children);
+            }
+            return replace(specialized).apply(left, right);
+        }
+
+    }
+
+    private static final class IntegerBinary extends Binary {
+
+        private IntegerBinary(Operator operator, Expr[] children) {
+            super(operator, children);
+        }
+
+        @Override
+        Object apply(Object left, Object right) {
+
+            if (!(left instanceof BigInteger) || !(right instanceof BigInteger)) {
+                return generalize(left, right);
+            }
+            BigInteger l = (BigInteger) left;
+            BigInteger r = (BigInteger) right;
+            switch (operator) {
+                case ADD: return l.add(r);
+                case SUBTRACT: return l.subtract(r);
+                case MULTIPLY: return l.multiply(r);
+                case DIVIDE: return l.divide(r);
+                case EQUAL: return l.equals(r);
+                case NOT_EQUAL: return !l.equals(r);
+                default: return operator.compare(l, r);
+            }
+        }
+
+    }
+
+    private static final class DecimalBinary extends Binary {
+
+        private DecimalBinary(Operator operator, Expr[] children) {
+            super(operator, children);
+        }
+
+        @Override
+        Object apply(Object left, Object right) {
+
+            if (!(left instanceof BigDecimal) || !(right instanceof BigDecimal)) {
+                return generalize(left, right);
+            }
+            BigDecimal l = (BigDecimal) left;
+            BigDecimal r = (BigDecimal) right;
+            switch (operator) {
+                case ADD: return l.add(r);
+                case SUBTRACT: return l.subtract(r);
+                case MULTIPLY: return l.multiply(r);
+                case DIVIDE: return l.divide(r, BigDecimal.ROUND_HALF_EVEN);
+                case EQUAL: return l.equals(r);
+                case NOT_EQUAL: return !l.equals(r);
+                default: return operator.compare(l, r);
+            }
+        }
+
+    }
+
+    /**
+     * String concatenation, with either operand a String.
+     */
+    private static final class StringBinary extends Binary {
+
+        private StringBinary(Operator operator, Expr[] children) {
+            super(operator, children);
+        }
+
+        @Override
+        Object apply(Object left, Object right) {
+
+            if (!(left instanceof String) && !(right instanceof String)) {
+                return generalize(left, right);
+            }
+            return String.valueOf(left) + right;
+        }
+
+    }
+
+    private static final class GenericBinary extends Binary {
+
+        private GenericBinary(Operator operator, Expr[] children) {
+            super(operator, children);
+        }
+
+        @Override
+        Object apply(Object left, Object right) {
+            return operator.apply(left, right);
+        }
+
+    }
+
+}
@@ -0,0 +1,296 @@
+package plc.project;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Marks the expressions of an analyzed source that are proven to never
+ * evaluate to {@code NIL}, and the declarations whose local never holds it.
+ *
+ * The type system alone does not rule out {@code NIL}: a declaration or field
+ * without a value starts out as {@code NIL} whatever its type, and a method
+ * that runs off the end of its body returns it. Locals are therefore tracked
+ * flow-sensitively by slot, merging at {@code IF}s and iterating loops to a
+ * fixpoint, while fields, method results and parameters are tracked per
+ * source: each starts out assumed non-{@code NIL} and loses that assumption
+ * as soon as some assignment, return or call site could pass {@code NIL},
+ * repeating until nothing changes.
+ */
+public final class NullabilityAnalyzer implements Ast.Visitor<Boolean> {
+
+    private final Set<Integer> nilFields = new HashSet<>();
+    private final Set<Environment.Function> nilMethods = new HashSet<>();
+    private final Map<Environment.Function, BitSet> nilParameters = new IdentityHashMap<>();
+    private boolean changed;
+
+    //state of the method being analyzed: the slots holding a non-NIL value, and whether the code is reachable
+    private Environment.Function function;
+    private BitSet state = new BitSet();
+    private boolean reachable = true;
+    private final Set<Integer> nilSlots = new HashSet<>();
+    private final Map<Integer, Ast.Stmt.Declaration> declarations = new HashMap<>();
+
+    private NullabilityAnalyzer() {}
+
+    /**
+     * Marks a source that has already been resolved by the {@link Analyzer}.
+     */
+    public static void analyze(Ast.Source source) {
+        new NullabilityAnalyzer().visit(source);
+    }
+
+    @Override
+    public Boolean visit(Ast.Source ast) {
+
+        for (Ast.Method method : ast.getMethods()) {
+            nilParameters.put(method.getFunction(), new BitSet());
+        }
+        //assumptions only ever weaken, so this terminates, and the final round marks under the final assumptions
+        do {
+            changed = false;
+            for (Ast.Field field : ast.getFields()) {
+                visit(field);
+            }
+            for (Ast.Method method : ast.getMethods()) {
+                visit(method);
+            }
+        } while (changed);
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Field ast) {
+
+        state = new BitSet();
+        reachable = true;
+        if (!ast.getValue().isPresent() || !visit(ast.getValue().get())) {
+            nilField(ast.getSlot());
+        }
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Method ast) {
+
+        function = ast.getFunction();
+        if (ast.getFrameSize() < 0) {
+            //not resolved by the Analyzer (see Analyzer#setDemandDriven), so nothing is known about it
+            nilMethods.add(function);
+            return null;
+        }
+        state = new BitSet();
+        reachable = true;
+        nilSlots.clear();
+        declarations.clear();
+        BitSet parameters = nilParameters.get(ast.getFunction());
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            state.set(i, !parameters.get(i));
+        }
+        scan(ast.getStatements());
+        //running off the end of the body returns NIL
+        if (reachable && nilMethods.add(function)) {
+            changed = true;
+        }
+        for (Map.Entry<Integer, Ast.Stmt.Declaration> entry : declarations.entrySet()) {
+            entry.getValue().setNonNil(!nilSlots.contains(entry.getKey()));
+        }
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Declaration ast) {
+
+        boolean nonNil = ast.getValue().isPresent() && visit(ast.getValue().get());
+        define(ast.getSlot(), nonNil);
+        declarations.put(ast.getSlot(), ast);
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Assignment ast) {
+
+        Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+        if (access.getReceiver().isPresent()) {
+            visit(access.getReceiver().get());
+        }
+        boolean nonNil = visit(ast.getValue());
+        if (access.getDepth() == Ast.Expr.Access.LOCAL) {
+            define(access.getSlot(), nonNil);
+        } else if (access.getDepth() == Ast.Expr.Access.GLOBAL && !nonNil) {
+            nilField(access.getSlot());
+        }
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.If ast) {
+
+        visit(ast.getCondition());
+        BitSet before = (BitSet) state.clone();
+        scan(ast.getThenStatements());
+        BitSet then = state;
+        boolean thenReachable = reachable;
+
+        state = before;
+        reachable = true;
+        scan(ast.getElseStatements());
+        if (thenReachable && reachable) {
+            state.and(then);
+        } else if (thenReachable) {
+            state = then;
+            reachable = true;
+        }
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.For ast) {
+
+        visit(ast.getValue());
+        loop(null, ast.getSlot(), ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.While ast) {
+
+        loop(ast.getCondition(), -1, ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Return ast) {
+
+        if (!visit(ast.getValue()) && nilMethods.add(function)) {
+            changed = true;
+        }
+        reachable = false;
+        return null;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Literal ast) {
+        return mark(ast, ast.getLiteral() != null);
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Group ast) {
+        return mark(ast, visit(ast.getExpression()));
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Binary ast) {
+
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        //every operator produces a Boolean, a number or a String
+        return mark(ast, true);
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Access ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            return mark(ast, false);
+        } else if (ast.getDepth() == Ast.Expr.Access.LOCAL) {
+            return mark(ast, state.get(ast.getSlot()));
+        } else if (ast.getDepth() == Ast.Expr.Access.GLOBAL) {
+            return mark(ast, !nilFields.contains(ast.getSlot()));
+        }
+        return mark(ast, false);
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Function ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+        }
+        BitSet parameters = ast.getReceiver().isPresent() ? null : nilParameters.get(ast.getFunction());
+        List<Ast.Expr> arguments = ast.getArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!visit(arguments.get(i)) && parameters != null && !parameters.get(i)) {
+                parameters.set(i);
+                changed = true;
+            }
+        }
+        //builtins such as print return NIL, and nothing is known about methods of objects
+        return mark(ast, parameters != null && !nilMethods.contains(ast.getFunction()));
+    }
+
+    private void scan(List<Ast.Stmt> statements) {
+
+        for (Ast.Stmt stmt : statements) {
+            if (!reachable) {
+                //unreachable statements are left unmarked, which is always safe
+                break;
+            }
+            visit(stmt);
+        }
+    }
+
+    /**
+     * Iterates a loop body until the slots known non-NIL at its head are
+     * stable. Since the last iteration runs with the stable state, the marks
+     * it leaves are the final ones.
+     */
+    private void loop(Ast.Expr condition, int variable, List<Ast.Stmt> statements) {
+
+        BitSet head = (BitSet) state.clone();
+        while (true) {
+            state = (BitSet) head.clone();
+            reachable = true;
+            if (condition != null) {
+                visit(condition);
+            }
+            BitSet exit = (BitSet) state.clone();
+            if (variable >= 0) {
+                //the elements of an IntegerIterable are never NIL
+                state.set(variable);
+            }
+            scan(statements);
+            BitSet next = (BitSet) head.clone();
+            if (reachable) {
+                next.and(state);
+            }
+            if (next.equals(head)) {
+                state = exit;
+                reachable = true;
+                return;
+            }
+            head = next;
+        }
+    }
+
+    private void define(int slot, boolean nonNil) {
+
+        state.set(slot, nonNil);
+        if (!nonNil) {
+            nilSlots.add(slot);
+        }
+    }
+
+    private void nilField(int slot) {
+        if (nilFields.add(slot)) {
+            changed = true;
+        }
+    }
+
+    private static boolean mark(Ast.Expr ast, boolean nonNil) {
+        ast.setNonNil(nonNil);
+        return nonNil;
+    }
+
+}
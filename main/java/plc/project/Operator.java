@@ -0,0 +1,192 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The binary operators, resolved from their source text once (when the
+ * {@link Ast.Expr.Binary} or {@link Ir.Binary} is created) so evaluating one
+ * dispatches on the constant instead of switching over the operator string.
+ *
+ * {@link #apply(Object, Object)} takes operands that have already been
+ * evaluated, each exactly once. {@code AND} and {@code OR} are the exception:
+ * the caller evaluates the left operand, and only evaluates the right one if
+ * the left is not {@link #getShortCircuit()}.
+ */
+public enum Operator {
+
+    AND("AND") {
+        @Override
+        public Object apply(Object left, Object right) {
+            return requireType(Boolean.class, left) && requireType(Boolean.class, right);
+        }
+    },
+    OR("OR") {
+        @Override
+        public Object apply(Object left, Object right) {
+            return requireType(Boolean.class, left) || requireType(Boolean.class, right);
+        }
+    },
+    LESS("<") {
+        @Override
+        boolean test(int comparison) {
+            return comparison < 0;
+        }
+    },
+    LESS_EQUAL("<=") {
+        @Override
+        boolean test(int comparison) {
+            return comparison <= 0;
+        }
+    },
+    GREATER(">") {
+        @Override
+        boolean test(int comparison) {
+            return comparison > 0;
+        }
+    },
+    GREATER_EQUAL(">=") {
+        @Override
+        boolean test(int comparison) {
+            return comparison >= 0;
+        }
+    },
+    EQUAL("==") {
+        @Override
+        public Object apply(Object left, Object right) {
+            return left.equals(right);
+        }
+
+        @Override
+        public boolean compare(Object left, Object right) {
+            return left.equals(right);
+        }
+    },
+    NOT_EQUAL("!=") {
+        @Override
+        public Object apply(Object left, Object right) {
+            return !left.equals(right);
+        }
+
+        @Override
+        public boolean compare(Object left, Object right) {
+            return !left.equals(right);
+        }
+    },
+    ADD("+") {
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof String || right instanceof String) {
+                return String.valueOf(left) + right;
+            } else if (left instanceof BigInteger) {
+                return ((BigInteger) left).add(requireType(BigInteger.class, right));
+            }
+            return requireType(BigDecimal.class, left).add(requireType(BigDecimal.class, right));
+        }
+    },
+    SUBTRACT("-") {
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof BigInteger) {
+                return ((BigInteger) left).subtract(requireType(BigInteger.class, right));
+            }
+            return requireType(BigDecimal.class, left).subtract(requireType(BigDecimal.class, right));
+        }
+    },
+    MULTIPLY("*") {
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof BigInteger) {
+                return ((BigInteger) left).multiply(requireType(BigInteger.class, right));
+            }
+            return requireType(BigDecimal.class, left).multiply(requireType(BigDecimal.class, right));
+        }
+    },
+    DIVIDE("/") {
+        @Override
+        public Object apply(Object left, Object right) {
+            if (left instanceof BigInteger) {
+                return ((BigInteger) left).divide(requireType(BigInteger.class, right));
+            }
+            return requireType(BigDecimal.class, left).divide(requireType(BigDecimal.class, right), BigDecimal.ROUND_HALF_EVEN);
+        }
+    };
+
+    private static final Map<String, Operator> TABLE = new HashMap<>();
+
+    static {
+        for (Operator operator : values()) {
+            TABLE.put(operator.symbol, operator);
+        }
+    }
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Returns the operator with the given source text, or null if there is
+     * none.
+     */
+    public static Operator of(String symbol) {
+        return TABLE.get(symbol);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the value of the left operand that decides the result on its
+     * own ({@code false} for {@code AND}, {@code true} for {@code OR}), or
+     * null if both operands are always evaluated.
+     */
+    public Boolean getShortCircuit() {
+        return this == AND ? Boolean.FALSE : this == OR ? Boolean.TRUE : null;
+    }
+
+    public boolean isComparison() {
+        return compareTo(LESS) >= 0 && compareTo(NOT_EQUAL) <= 0;
+    }
+
+    /**
+     * Applies the operator to evaluated operands, checking their types.
+     * Comparisons default to {@link Comparable#compareTo(Object)} of
+     * Comparable operands.
+     */
+    @SuppressWarnings("unchecked")
+    public Object apply(Object left, Object right) {
+        return test(requireType(Comparable.class, left).compareTo(requireType(Comparable.class, right)));
+    }
+
+    /**
+     * Compares operands without checking their types, for operands the
+     * {@link Analyzer} already checked to be Comparable of the same type (and
+     * the {@link NullabilityAnalyzer} proved non-NIL).
+     */
+    @SuppressWarnings("unchecked")
+    public boolean compare(Object left, Object right) {
+        return test(((Comparable<Object>) left).compareTo(right));
+    }
+
+    /**
+     * Returns the result of an ordering comparison from the result of
+     * {@link Comparable#compareTo(Object)}.
+     */
+    boolean test(int comparison) {
+        throw new UnsupportedOperationException("The operator " + symbol + " is not a comparison.");
+    }
+
+    private static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw ScriptException.typeMismatch(type, value.getClass());
+        }
+    }
+
+}
@@ -47,13 +47,15 @@ public final class Parser {
 
     /**
      * Parses the {@code field} rule. This method should only be called if the
-     * next tokens start a field, aka {@code LET}.
+     * next tokens start a field, aka {@code LET}, which may be followed by
+     * {@code CONST}.
      */
     public Ast.Field parseField() throws ParseException {
 
         Optional<Ast.Expr> receiver = Optional.empty();
         String name = "";
         String typename = "";
+        boolean constant = match("CONST");
 
         if(match(Token.Type.IDENTIFIER)) {
             name = tokens.get(-1).getLiteral();
@@ -71,7 +73,7 @@ public final class Parser {
                 throw new ParseException("Expected ;", tokens.index);
             }
         }
-        return new Ast.Field(name, typename, receiver);
+        return new Ast.Field(name, typename, constant, receiver);
     }
 
     /**
@@ -80,6 +82,7 @@ public final class Parser {
      */
     public Ast.Method parseMethod() throws ParseException {
 
+        int start = tokens.get(-1).getIndex();
         String name = "";
         List<String> parameters = new ArrayList<>();
         List<String> parameterTypeNames = new ArrayList<>();
@@ -144,7 +147,7 @@ public final class Parser {
             else
                 throw new ParseException("Expected an Identifier", tokens.get(-1).getIndex());
         }
-        return new Ast.Method(name,parameters, parameterTypeNames, returnTypeName, statements);
+        return at(start, new Ast.Method(name,parameters, parameterTypeNames, returnTypeName, statements));
     }
 
     /**
@@ -154,20 +157,21 @@ public final class Parser {
      */
     public Ast.Stmt parseStatement() throws ParseException {
 
+        int start = index();
         if(match("LET")) {
-            return parseDeclarationStatement();
+            return at(start, parseDeclarationStatement());
         }
         else if(match("IF")) {
-            return parseIfStatement();
+            return at(start, parseIfStatement());
         }
         else if(match("FOR")) {
-            return parseForStatement();
+            return at(start, parseForStatement());
         }
         else if(match("WHILE")) {
-            return parseWhileStatement();
+            return at(start, parseWhileStatement());
         }
         else if(match("RETURN")) {
-            return parseReturnStatement();
+            return at(start, parseReturnStatement());
         }
         else {
 
@@ -179,7 +183,7 @@ public final class Parser {
 
                 if (value != null) {
                     if(peek(";"))
-                        return new Ast.Stmt.Assignment(expr, value);
+                        return at(start, new Ast.Stmt.Assignment(expr, value));
                     else
                         throw new ParseException("Expected ;", tokens.index);
                 } else
@@ -187,7 +191,7 @@ public final class Parser {
 
             }
 
-            return new Ast.Stmt.Expression(expr);
+            return at(start, new Ast.Stmt.Expression(expr));
         }
     }
 
@@ -410,6 +414,7 @@ public final class Parser {
      */
     public Ast.Expr parseSecondaryExpression() throws ParseException {
 
+        int start = index();
         Ast.Expr expr = parsePrimaryExpression();
 
         Optional<Ast.Expr> receiver;
@@ -427,7 +432,7 @@ public final class Parser {
 
                 if (match("(")) {
                     if(peek(")")) { //if it is a method call (obj.name())
-                        return new Ast.Expr.Function(receiver, name, arguments);
+                        return at(start, new Ast.Expr.Function(receiver, name, arguments));
                     }
                     //otherwise, it is a function call (name(expr1,expr2,expr3)
                     parsePrimaryExpression();
@@ -442,7 +447,7 @@ public final class Parser {
             } else {
                 throw new ParseException("Expected identifier", tokens.index);
             }
-            return new Ast.Expr.Access(receiver, name);
+            return at(start, new Ast.Expr.Access(receiver, name));
         }
         return expr;
     }
@@ -496,6 +501,7 @@ public final class Parser {
         if (match(Token.Type.IDENTIFIER)) {
 
             String name = tokens.get(-1).getLiteral();
+            int start = tokens.get(-1).getIndex();
             Optional<Ast.Expr> receiver = Optional.empty();
 
             List<Ast.Expr> arguments = new ArrayList<>();
@@ -512,15 +518,15 @@ public final class Parser {
                     }
                     if (peek(")")) {
                         tokens.advance();
-                        return new Ast.Expr.Function(receiver, name, arguments);
+                        return at(start, new Ast.Expr.Function(receiver, name, arguments));
                     } else {
                         throw new ParseException("Expected )", tokens.index);
                     }
                 } else {
-                    return new Ast.Expr.Function(receiver, name, arguments);
+                    return at(start, new Ast.Expr.Function(receiver, name, arguments));
                 }
             }
-            return expr;
+            return at(start, expr);
         }
         return null;
     }
@@ -573,6 +579,21 @@ public final class Parser {
         return peek;
     }
 
+    /**
+     * Returns the index of the next token, or -1 at the end of the input.
+     */
+    private int index() {
+        return tokens.has(0) ? tokens.get(0).getIndex() : -1;
+    }
+
+    /**
+     * Records the index of the first token of a node.
+     */
+    private static <T extends Ast> T at(int index, T ast) {
+        ast.setIndex(index);
+        return ast;
+    }
+
     private static final class TokenStream {
 
         private final List<Token> tokens;
@@ -0,0 +1,244 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Specializes an analyzed source for known values of some of its fields,
+ * residualizing the computations that depend only on them.
+ *
+ * Known fields that the source never assigns are replaced by their values,
+ * operators with literal operands are folded (by the {@link Interpreter}, so
+ * results match the runtime exactly), {@code IF}s with a literal condition are
+ * replaced by the statements of the branch taken and {@code WHILE FALSE} loops
+ * are removed. Calls to pure methods whose arguments are all literals are
+ * evaluated ahead of time, within {@link #STEP_LIMIT} loop iterations and
+ * calls nested at most {@link #DEPTH_LIMIT} deep. Anything that fails to
+ * evaluate (a division by zero, or a call that does not finish within the
+ * limits, for example) is left in place to run at runtime instead.
+ *
+ * Fields the source assigns keep their given value as initializer only.
+ */
+public final class PartialEvaluator extends AstRewriter {
+
+    /**
+     * Loop iterations and calls a single call evaluated ahead of time may run.
+     */
+    public static final long STEP_LIMIT = 100_000;
+
+    /**
+     * How deeply the calls of a call evaluated ahead of time may nest.
+     */
+    public static final int DEPTH_LIMIT = 128;
+
+    private final Map<String, Object> known;
+    private final Set<String> assigned = new HashSet<>();
+    private CallGraph graph;
+    private List<Ast.Method> methods;
+    private Interpreter evaluator;
+
+    private PartialEvaluator(Map<String, Object> known) {
+        this.known = known;
+    }
+
+    /**
+     * Returns the source specialized for the given field values, which are
+     * literal values: a BigInteger, BigDecimal, Boolean, Character, String, or
+     * null for {@code NIL}.
+     */
+    public static Ast.Source specialize(Ast.Source source, Map<String, Object> fields) {
+        return new PartialEvaluator(fields).visit(source);
+    }
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+
+        Set<String> names = new HashSet<>();
+        for (Ast.Field field : ast.getFields()) {
+            names.add(field.getName());
+        }
+        for (Map.Entry<String, Object> entry : known.entrySet()) {
+            if (!names.contains(entry.getKey())) {
+                throw new RuntimeException("The source has no field " + entry.getKey() + ".");
+            }
+        }
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Stmt.Assignment ast) {
+                Ast.Expr.Access access = (Ast.Expr.Access) ast.getReceiver();
+                if (!access.getReceiver().isPresent()) {
+                    assigned.add(access.getName());
+                }
+                return super.visit(ast);
+            }
+        }.visit(ast);
+
+        graph = new CallGraph(ast);
+        methods = ast.getMethods();
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast.Field visit(Ast.Field ast) {
+
+        if (!known.containsKey(ast.getName())) {
+            return super.visit(ast);
+        }
+        Object value = known.get(ast.getName());
+        if (!isInstance(ast.getVariable().getType(), value)) {
+            throw new RuntimeException("The value " + value + " is not assignable to the field " + ast.getName() + " of type " + ast.getVariable().getType().getName() + ".");
+        }
+        Ast.Field field = new Ast.Field(ast.getName(), ast.getTypeName(), ast.isConstant(), Optional.of(literal(value, ast.getVariable().getType(), RangeAnalyzer.Representation.BOXED)));
+        field.setVariable(ast.getVariable());
+        field.setSlot(ast.getSlot());
+        field.setEffectivelyConstant(ast.isEffectivelyConstant());
+        return at(ast, field);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewriteStatements(List<Ast.Stmt> statements) {
+
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.If) {
+                Ast.Stmt.If branch = (Ast.Stmt.If) stmt;
+                Ast.Expr condition = rewrite(branch.getCondition());
+                if (condition instanceof Ast.Expr.Literal) {
+                    boolean taken = (Boolean) ((Ast.Expr.Literal) condition).getLiteral();
+                    List<Ast.Stmt> statements = rewriteStatements(taken ? branch.getThenStatements() : branch.getElseStatements());
+                    if (statements.stream().noneMatch(s -> s instanceof Ast.Stmt.Declaration)) {
+                        rewritten.addAll(statements);
+                    } else {
+                        //the Generator declares locals by name, so a spliced one could clash with a later one of the same name
+                        Ast.Expr block = literal(true, Environment.Type.BOOLEAN, RangeAnalyzer.Representation.BOXED);
+                        rewritten.add(at(stmt, new Ast.Stmt.If(block, statements, new ArrayList<>())));
+                    }
+                } else {
+                    rewritten.add(at(stmt, new Ast.Stmt.If(condition, rewriteStatements(branch.getThenStatements()), rewriteStatements(branch.getElseStatements()))));
+                }
+            } else if (stmt instanceof Ast.Stmt.While) {
+                Ast.Expr condition = rewrite(((Ast.Stmt.While) stmt).getCondition());
+                if (!(condition instanceof Ast.Expr.Literal) || (Boolean) ((Ast.Expr.Literal) condition).getLiteral()) {
+                    rewritten.add(InductionAnalyzer.recognize(at(stmt, new Ast.Stmt.While(condition, rewriteStatements(((Ast.Stmt.While) stmt).getStatements())))));
+                }
+            } else {
+                rewritten.addAll(super.rewriteStatements(Collections.singletonList(stmt)));
+            }
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Access ast) {
+
+        if (!ast.getReceiver().isPresent() && ast.getDepth() == Ast.Expr.Access.GLOBAL
+                && known.containsKey(ast.getName()) && !assigned.contains(ast.getName())) {
+            return at(ast, literal(known.get(ast.getName()), ast.getType(), ast.getRepresentation()));
+        }
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Group ast) {
+
+        Ast.Expr.Group group = (Ast.Expr.Group) super.visit(ast);
+        return group.getExpression() instanceof Ast.Expr.Literal ? group.getExpression() : group;
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Binary ast) {
+
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) super.visit(ast);
+        if (binary.getLeft() instanceof Ast.Expr.Literal) {
+            Object left = ((Ast.Expr.Literal) binary.getLeft()).getLiteral();
+            //a known left operand decides AND/OR on its own, or leaves only the right operand
+            if (binary.getOperator().equals("AND") && left instanceof Boolean) {
+                return (Boolean) left ? binary.getRight() : binary.getLeft();
+            } else if (binary.getOperator().equals("OR") && left instanceof Boolean) {
+                return (Boolean) left ? binary.getLeft() : binary.getRight();
+            }
+        }
+        if (binary.getLeft() instanceof Ast.Expr.Literal && binary.getRight() instanceof Ast.Expr.Literal) {
+            Ast.Expr folded = evaluate(binary);
+            if (folded != null) {
+                return folded;
+            }
+        }
+        return binary;
+    }
+
+    @Override
+    public Ast.Expr visit(Ast.Expr.Function ast) {
+
+        Ast.Expr.Function call = (Ast.Expr.Function) super.visit(ast);
+        Ast.Method callee = graph.getCallee(ast);
+        if (callee == null || !callee.isPure() || !call.getArguments().stream().allMatch(argument -> argument instanceof Ast.Expr.Literal)) {
+            return call;
+        }
+        Ast.Expr folded = evaluate(call);
+        return folded != null ? folded : call;
+    }
+
+    /**
+     * Evaluates an expression whose operands are literals, returning the
+     * result as a literal or null if it does not evaluate to one.
+     */
+    private Ast.Expr evaluate(Ast.Expr expr) {
+
+        if (evaluator == null) {
+            evaluator = new Interpreter(new Scope(null));
+            for (Ast.Method method : methods) {
+                evaluator.visit(method);
+            }
+        }
+        Environment.PlcObject result;
+        evaluator.setLimits(STEP_LIMIT, DEPTH_LIMIT);
+        try {
+            result = evaluator.visit(expr);
+        } catch (RuntimeException | StackOverflowError e) {
+            //the evaluation was abandoned part way, so the next one starts from a fresh interpreter
+            evaluator = null;
+            return null;
+        }
+        if (result == Environment.NIL || !isInstance(expr.getType(), result.getValue())) {
+            return null;
+        }
+        return at(expr, literal(result.getValue(), expr.getType(), expr.getRepresentation()));
+    }
+
+    private static Ast.Expr.Literal literal(Object value, Environment.Type type, RangeAnalyzer.Representation representation) {
+
+        Ast.Expr.Literal literal = new Ast.Expr.Literal(value);
+        literal.setType(type);
+        literal.setNonNil(value != null);
+        literal.setRepresentation(value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE ? representation : RangeAnalyzer.Representation.BOXED);
+        return literal;
+    }
+
+    private static boolean isInstance(Environment.Type type, Object value) {
+
+        if (type == Environment.Type.INTEGER) {
+            return value instanceof BigInteger;
+        } else if (type == Environment.Type.DECIMAL) {
+            return value instanceof BigDecimal;
+        } else if (type == Environment.Type.BOOLEAN) {
+            return value instanceof Boolean;
+        } else if (type == Environment.Type.CHARACTER) {
+            return value instanceof Character;
+        } else if (type == Environment.Type.STRING) {
+            return value instanceof String;
+        } else if (type == Environment.Type.NIL) {
+            return value == null;
+        }
+        return value == null || value instanceof BigInteger || value instanceof BigDecimal
+                || value instanceof Boolean || value instanceof Character || value instanceof String;
+    }
+
+}
@@ -0,0 +1,254 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports performance anti-patterns in an analyzed source, each with the
+ * token index of the offending node (see {@link Ast#getIndex()}) and the cost
+ * class it leads to:
+ *
+ * <ul>
+ *     <li>Building a String by repeated concatenation ({@code s = s + x}) in
+ *     a loop, which copies the whole string every iteration.</li>
+ *     <li>Access chains through two or more receivers ({@code a.b.c}) in a
+ *     loop, looked up again on every iteration.</li>
+ *     <li>Methods that are not pure and can call themselves more than once in
+ *     a single call (counting only one branch of each {@code IF}, and calls in
+ *     a loop as many), so the repeated subproblems cannot be memoized (see
+ *     {@link PurityAnalyzer}).</li>
+ * </ul>
+ */
+public final class PerformanceLinter extends AstScanner {
+
+    public enum CostClass {
+        LINEAR("O(n)"),
+        QUADRATIC("O(n^2)"),
+        POLYNOMIAL("O(n^k)"),
+        EXPONENTIAL("O(2^n)");
+
+        private final String notation;
+
+        CostClass(String notation) {
+            this.notation = notation;
+        }
+
+        public String getNotation() {
+            return notation;
+        }
+
+        /**
+         * Returns the class of a polynomial of the given degree.
+         */
+        static CostClass ofDegree(int degree) {
+            return degree <= 1 ? LINEAR : degree == 2 ? QUADRATIC : POLYNOMIAL;
+        }
+    }
+
+    private final CallGraph graph;
+    private final List<Warning> warnings = new ArrayList<>();
+    private int loops = 0;
+    //chains through at least two receivers in each enclosing loop, innermost last
+    private final List<Map<Ast.Expr.Access, Integer>> chains = new ArrayList<>();
+
+    private PerformanceLinter(Ast.Source source) {
+        this.graph = new CallGraph(source);
+    }
+
+    /**
+     * Returns the warnings for a source that has already been resolved by the
+     * {@link Analyzer}, in source order.
+     */
+    public static List<Warning> lint(Ast.Source source) {
+
+        PerformanceLinter linter = new PerformanceLinter(source);
+        linter.visit(source);
+        linter.warnings.sort(Comparator.comparingInt(Warning::getIndex));
+        return linter.warnings;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+
+        if (!ast.isPure() && graph.isRecursive(ast)) {
+            int calls = selfCalls(ast, ast.getStatements());
+            if (calls > 1) {
+                warnings.add(new Warning(ast.getIndex(), CostClass.EXPONENTIAL, "The method " + ast.getName() + " calls itself "
+                        + (calls == Integer.MAX_VALUE ? "in a loop" : calls + " times") + " per call but is not pure, so repeated calls cannot be memoized."));
+            }
+        }
+        return super.visit(ast);
+    }
+
+    /**
+     * Returns how many times a single call of a method can call itself
+     * directly: only the branch of an {@code IF} with the most calls counts,
+     * and any call in a loop may run any number of times
+     * ({@link Integer#MAX_VALUE}).
+     */
+    private int selfCalls(Ast.Method method, List<Ast.Stmt> statements) {
+
+        long calls = 0;
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.If) {
+                Ast.Stmt.If branch = (Ast.Stmt.If) stmt;
+                calls += selfCalls(method, branch.getCondition())
+                        + Math.max(selfCalls(method, branch.getThenStatements()), selfCalls(method, branch.getElseStatements()));
+            } else if (stmt instanceof Ast.Stmt.While) {
+                Ast.Stmt.While loop = (Ast.Stmt.While) stmt;
+                calls += repeated(selfCalls(method, loop.getCondition()) + selfCalls(method, loop.getStatements()));
+            } else if (stmt instanceof Ast.Stmt.For) {
+                Ast.Stmt.For loop = (Ast.Stmt.For) stmt;
+                calls += selfCalls(method, loop.getValue()) + repeated(selfCalls(method, loop.getStatements()));
+            } else {
+                calls += selfCalls(method, stmt);
+            }
+        }
+        return (int) Math.min(calls, Integer.MAX_VALUE);
+    }
+
+    private static long repeated(long calls) {
+        return calls == 0 ? 0 : Integer.MAX_VALUE;
+    }
+
+    private int selfCalls(Ast.Method method, Ast ast) {
+
+        int[] calls = {0};
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Expr.Function ast) {
+                if (graph.getCallee(ast) == method) {
+                    calls[0]++;
+                }
+                return super.visit(ast);
+            }
+        }.visit(ast);
+        return calls[0];
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+
+        if (loops > 0 && ast.getReceiver().getType() == Environment.Type.STRING && ast.getValue() instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary value = (Ast.Expr.Binary) ast.getValue();
+            if (value.getOperator().equals("+") && value.getLeft().equals(ast.getReceiver())) {
+                warnings.add(new Warning(ast.getIndex(), CostClass.ofDegree(loops + 1), "The String "
+                        + ((Ast.Expr.Access) ast.getReceiver()).getName() + " is built by concatenation in a loop, copying it every iteration."));
+            }
+        }
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+
+        visit(ast.getValue());
+        loop(null, ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+
+        loop(ast.getCondition(), ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+
+        if (loops > 0 && receivers(ast) >= 2) {
+            Map<Ast.Expr.Access, Integer> loop = chains.get(chains.size() - 1);
+            if (!loop.containsKey(ast)) {
+                loop.put(ast, ast.getIndex());
+            }
+            //the receivers are part of this chain, not chains of their own
+            return null;
+        }
+        return super.visit(ast);
+    }
+
+    /**
+     * Scans the parts of a loop evaluated on every iteration.
+     */
+    private void loop(Ast.Expr condition, List<Ast.Stmt> statements) {
+
+        chains.add(new LinkedHashMap<>());
+        loops++;
+        try {
+            if (condition != null) {
+                visit(condition);
+            }
+            scan(statements);
+        } finally {
+            loops--;
+            report(chains.remove(chains.size() - 1));
+        }
+    }
+
+    private void report(Map<Ast.Expr.Access, Integer> loop) {
+
+        for (Map.Entry<Ast.Expr.Access, Integer> chain : loop.entrySet()) {
+            warnings.add(new Warning(chain.getValue(), CostClass.ofDegree(loops + 1), "The access chain " + name(chain.getKey())
+                    + " is looked up again on every iteration of the loop."));
+        }
+    }
+
+    private static int receivers(Ast.Expr.Access ast) {
+
+        int receivers = 0;
+        Ast.Expr expr = ast;
+        while (expr instanceof Ast.Expr.Access && ((Ast.Expr.Access) expr).getReceiver().isPresent()) {
+            receivers++;
+            expr = ((Ast.Expr.Access) expr).getReceiver().get();
+        }
+        return receivers;
+    }
+
+    private static String name(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            return access.getReceiver().isPresent() ? name(access.getReceiver().get()) + "." + access.getName() : access.getName();
+        }
+        return "(...)";
+    }
+
+    /**
+     * A single anti-pattern found, at the index of its first token.
+     */
+    public static final class Warning {
+
+        private final int index;
+        private final CostClass cost;
+        private final String message;
+
+        public Warning(int index, CostClass cost, String message) {
+            this.index = index;
+            this.cost = cost;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public CostClass getCost() {
+            return cost;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + message + " [" + cost.getNotation() + "]";
+        }
+
+    }
+
+}
@@ -0,0 +1,231 @@
+package plc.project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution counts of a source recorded by the {@link Interpreter}: how often
+ * each {@code IF} took either branch, how often each call site was reached,
+ * and the runtime types of the values of accesses and calls.
+ *
+ * Nodes are identified by their position in a traversal of the source, so a
+ * profile written to a file applies to the same source parsed again, such as
+ * when the {@link Generator} later reads it.
+ */
+public final class Profile {
+
+    /**
+     * Fraction of observations a type must account for to be dominant.
+     */
+    public static final double DOMINANCE = 0.9;
+
+    private static final String HEADER = "# plc profile v1";
+
+    private final Map<Ast, Integer> ids = new IdentityHashMap<>();
+    private final long[] thens;
+    private final long[] elses;
+    private final long[] calls;
+    private final List<Map<String, Long>> types = new ArrayList<>();
+
+    private Profile(Ast.Source source) {
+
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Stmt.If ast) {
+                number(ast);
+                return super.visit(ast);
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Access ast) {
+                number(ast);
+                return super.visit(ast);
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Function ast) {
+                number(ast);
+                return super.visit(ast);
+            }
+        }.visit(source);
+        thens = new long[ids.size()];
+        elses = new long[ids.size()];
+        calls = new long[ids.size()];
+    }
+
+    private void number(Ast ast) {
+        ids.put(ast, ids.size());
+        types.add(null);
+    }
+
+    /**
+     * Returns an empty profile for a source.
+     */
+    public static Profile of(Ast.Source source) {
+        return new Profile(source);
+    }
+
+    /**
+     * Reads a profile written by {@link #write(Path)} for the same source.
+     */
+    public static Profile read(Ast.Source source, Path path) throws IOException {
+
+        Profile profile = new Profile(source);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IOException("Not a profile: " + path + ".");
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] parts = line.split(" ");
+                try {
+                    int id = Integer.parseInt(parts[1]);
+                    if (id < 0 || id >= profile.ids.size()) {
+                        throw new IOException("The profile " + path + " is for a different source.");
+                    }
+                    switch (parts[0]) {
+                        case "branch":
+                            profile.thens[id] = Long.parseLong(parts[2]);
+                            profile.elses[id] = Long.parseLong(parts[3]);
+                            break;
+                        case "call":
+                            profile.calls[id] = Long.parseLong(parts[2]);
+                            break;
+                        case "type":
+                            profile.typesOf(id).put(parts[2], Long.parseLong(parts[3]));
+                            break;
+                        default:
+                            throw new IOException("Unknown profile entry: " + line + ".");
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Malformed profile entry: " + line + ".", e);
+                }
+            }
+        }
+        return profile;
+    }
+
+    public void write(Path path) throws IOException {
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int id = 0; id < thens.length; id++) {
+                if (thens[id] != 0 || elses[id] != 0) {
+                    writer.write("branch " + id + " " + thens[id] + " " + elses[id]);
+                    writer.newLine();
+                }
+                if (calls[id] != 0) {
+                    writer.write("call " + id + " " + calls[id]);
+                    writer.newLine();
+                }
+                if (types.get(id) != null) {
+                    for (Map.Entry<String, Long> entry : types.get(id).entrySet()) {
+                        writer.write("type " + id + " " + entry.getKey() + " " + entry.getValue());
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    void recordBranch(Ast.Stmt.If ast, boolean taken) {
+
+        Integer id = ids.get(ast);
+        if (id != null) {
+            if (taken) {
+                thens[id]++;
+            } else {
+                elses[id]++;
+            }
+        }
+    }
+
+    void recordCall(Ast.Expr.Function ast) {
+
+        Integer id = ids.get(ast);
+        if (id != null) {
+            calls[id]++;
+        }
+    }
+
+    void recordValue(Ast.Expr ast, Environment.PlcObject value) {
+
+        Integer id = ids.get(ast);
+        if (id != null) {
+            typesOf(id).merge(typeOf(value).getName(), 1L, Long::sum);
+        }
+    }
+
+    public long getThenCount(Ast.Stmt.If ast) {
+        Integer id = ids.get(ast);
+        return id == null ? 0 : thens[id];
+    }
+
+    public long getElseCount(Ast.Stmt.If ast) {
+        Integer id = ids.get(ast);
+        return id == null ? 0 : elses[id];
+    }
+
+    public long getCallCount(Ast.Expr.Function ast) {
+        Integer id = ids.get(ast);
+        return id == null ? 0 : calls[id];
+    }
+
+    /**
+     * Returns the runtime type of at least {@link #DOMINANCE} of the values
+     * observed for an access or call, or null if there is none.
+     */
+    public Environment.Type getDominantType(Ast.Expr ast) {
+
+        Integer id = ids.get(ast);
+        if (id == null || types.get(id) == null) {
+            return null;
+        }
+        long total = types.get(id).values().stream().mapToLong(Long::longValue).sum();
+        for (Map.Entry<String, Long> entry : types.get(id).entrySet()) {
+            if (entry.getValue() >= DOMINANCE * total) {
+                return TypeLattice.forName(entry.getKey());
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Long> typesOf(int id) {
+
+        if (types.get(id) == null) {
+            types.set(id, new HashMap<>());
+        }
+        return types.get(id);
+    }
+
+    private static Environment.Type typeOf(Environment.PlcObject value) {
+
+        Object object = value.getValue();
+        if (object instanceof BigInteger) {
+            return Environment.Type.INTEGER;
+        } else if (object instanceof BigDecimal) {
+            return Environment.Type.DECIMAL;
+        } else if (object instanceof Boolean) {
+            return Environment.Type.BOOLEAN;
+        } else if (object instanceof Character) {
+            return Environment.Type.CHARACTER;
+        } else if (object instanceof String) {
+            return Environment.Type.STRING;
+        } else if (value == Environment.NIL) {
+            return Environment.Type.NIL;
+        }
+        return Environment.Type.ANY;
+    }
+
+}
@@ -0,0 +1,77 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Marks the methods of an analyzed source whose result depends only on their
+ * arguments, so calls with equal arguments may share a result.
+ *
+ * A method is pure if it does not read or write fields, does not access or
+ * call anything through a receiver, does not call builtins (such as
+ * {@code print}), and only calls pure methods. Since recursive methods are
+ * pure unless something in their cycle is not, this is computed as a
+ * greatest fixpoint over the {@link CallGraph}.
+ */
+public final class PurityAnalyzer {
+
+    private PurityAnalyzer() {}
+
+    public static void analyze(Ast.Source source) {
+
+        CallGraph graph = new CallGraph(source);
+        List<Ast.Method> candidates = new ArrayList<>();
+        for (Ast.Method method : source.getMethods()) {
+            Local local = new Local(graph);
+            local.visit(method);
+            //a body the Analyzer has not resolved (see Analyzer#setDemandDriven) is never assumed pure
+            boolean pure = local.pure && method.getFrameSize() >= 0;
+            method.setPure(pure);
+            if (pure) {
+                candidates.add(method);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ast.Method method : candidates) {
+                if (method.isPure() && graph.getCallees(method).stream().anyMatch(callee -> !callee.isPure())) {
+                    method.setPure(false);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks a single method body, ignoring the purity of its callees.
+     */
+    private static final class Local extends AstScanner {
+
+        private final CallGraph graph;
+        private boolean pure = true;
+
+        private Local(CallGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            if (ast.getReceiver().isPresent() || ast.getDepth() != Ast.Expr.Access.LOCAL) {
+                pure = false;
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            if (graph.getCallee(ast) == null) {
+                pure = false;
+            }
+            return super.visit(ast);
+        }
+
+    }
+
+}
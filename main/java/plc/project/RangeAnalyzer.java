@@ -0,0 +1,499 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Finds the INTEGER locals of an analyzed method that never escape - they are
+ * only ever assigned to or used as operands of integer arithmetic and
+ * comparisons - and marks them, along with the arithmetic over them, for
+ * unboxed evaluation.
+ *
+ * Values whose range is proven to fit in an {@code int} are marked
+ * {@link Representation#INT} and need no overflow checks. Everything else that
+ * does not escape is marked {@link Representation#LONG}, which is evaluated
+ * with overflow checks and falls back to {@link BigInteger} when they fail.
+ *
+ * DECIMAL locals are always left boxed, since a {@code double} cannot
+ * represent the exact {@link java.math.BigDecimal} semantics of the language.
+ */
+public final class RangeAnalyzer extends AstScanner {
+
+    public enum Representation {
+        BOXED,
+        INT,
+        LONG
+    }
+
+    /**
+     * Number of fixpoint rounds before any still-growing range is widened to
+     * be unbounded.
+     */
+    private static final int WIDEN_AFTER = 3;
+
+    private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+
+    private final Ast.Method method;
+
+    private final Set<Integer> candidates = new HashSet<>();
+    private final Set<Integer> escaped = new HashSet<>();
+    private final Map<Integer, List<Definition>> definitions = new HashMap<>();
+    private final Map<Integer, Interval> ranges = new HashMap<>();
+
+    //nodes are recorded in post-order so operands are always marked before the nodes using them
+    private final List<Ast.Stmt.Declaration> declarations = new ArrayList<>();
+    private final List<Ast.Expr> expressions = new ArrayList<>();
+
+    private final List<Ast.Stmt.While> loops = new ArrayList<>();
+    private final Map<Ast.Stmt.While, Map<Integer, Integer>> loopDefinitions = new HashMap<>();
+    private boolean operand = false;
+
+    private RangeAnalyzer(Ast.Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Marks the unboxed locals and expressions of a method that has already
+     * been resolved by the {@link Analyzer}.
+     */
+    public static void analyze(Ast.Method method) {
+        new RangeAnalyzer(method).analyze();
+    }
+
+    private void analyze() {
+
+        for (Ast.Stmt stmt : method.getStatements()) {
+            visit(stmt);
+        }
+        candidates.removeAll(escaped);
+
+        computeRanges();
+
+        for (Ast.Stmt.Declaration declaration : declarations) {
+            if (candidates.contains(declaration.getSlot())) {
+                declaration.setRepresentation(representation(ranges.get(declaration.getSlot())));
+            }
+        }
+        for (Ast.Expr expr : expressions) {
+            mark(expr);
+        }
+        method.setUnboxed(!candidates.isEmpty());
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        use(ast.getExpression(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+
+        if (ast.getValue().isPresent()) {
+            use(ast.getValue().get(), false);
+            if (ast.getVariable().getType() == Environment.Type.INTEGER) {
+                candidates.add(ast.getSlot());
+                define(ast.getSlot(), ast, ast.getValue().get());
+            }
+        }
+        declarations.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        use(ast.getValue(), false);
+        if (receiver.getReceiver().isPresent()) {
+            use(receiver.getReceiver().get(), false);
+        } else if (receiver.getDepth() == Ast.Expr.Access.LOCAL) {
+            define(receiver.getSlot(), ast, ast.getValue());
+            expressions.add(receiver);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+
+        use(ast.getCondition(), false);
+        for (Ast.Stmt stmt : ast.getThenStatements()) {
+            visit(stmt);
+        }
+        for (Ast.Stmt stmt : ast.getElseStatements()) {
+            visit(stmt);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+
+        use(ast.getValue(), false);
+        for (Ast.Stmt stmt : ast.getStatements()) {
+            visit(stmt);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+
+        use(ast.getCondition(), false);
+        loops.add(ast);
+        loopDefinitions.put(ast, new HashMap<>());
+        try {
+            for (Ast.Stmt stmt : ast.getStatements()) {
+                visit(stmt);
+            }
+        } finally {
+            loops.remove(loops.size() - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        use(ast.getValue(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        expressions.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        use(ast.getExpression(), operand);
+        expressions.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+
+        boolean integers = isIntegerOperator(ast.getOperator())
+                && ast.getLeft().getType() == Environment.Type.INTEGER
+                && ast.getRight().getType() == Environment.Type.INTEGER;
+        use(ast.getLeft(), integers);
+        use(ast.getRight(), integers);
+        expressions.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            use(ast.getReceiver().get(), false);
+        } else if (ast.getDepth() == Ast.Expr.Access.LOCAL && !operand) {
+            escaped.add(ast.getSlot());
+        }
+        expressions.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+
+        if (ast.getReceiver().isPresent()) {
+            use(ast.getReceiver().get(), false);
+        }
+        for (Ast.Expr argument : ast.getArguments()) {
+            use(argument, false);
+        }
+        return null;
+    }
+
+    /**
+     * Visits an expression, recording whether it is used as an operand of
+     * integer arithmetic (where an unboxed local does not escape).
+     */
+    private void use(Ast.Expr expr, boolean asOperand) {
+
+        boolean previous = operand;
+        operand = asOperand;
+        try {
+            visit(expr);
+        } finally {
+            operand = previous;
+        }
+    }
+
+    private void define(int slot, Ast.Stmt stmt, Ast.Expr value) {
+
+        Ast.Stmt.While loop = null;
+        if (!loops.isEmpty()) {
+            Ast.Stmt.While innermost = loops.get(loops.size() - 1);
+            for (Ast.Stmt s : innermost.getStatements()) {
+                if (s == stmt) {
+                    loop = innermost;
+                }
+            }
+        }
+        for (Ast.Stmt.While enclosing : loops) {
+            loopDefinitions.get(enclosing).merge(slot, 1, Integer::sum);
+        }
+        definitions.computeIfAbsent(slot, k -> new ArrayList<>()).add(new Definition(value, loop));
+    }
+
+    /**
+     * Computes the range of every unboxed local as a fixpoint over its
+     * definitions, starting from empty ranges and widening any range still
+     * growing after {@link #WIDEN_AFTER} rounds to be unbounded. From then on
+     * a range only ever changes to be unbounded, so the fixpoint terminates.
+     */
+    private void computeRanges() {
+
+        boolean changed = true;
+        for (int round = 0; changed; round++) {
+            changed = false;
+            for (int slot : candidates) {
+                Interval current = ranges.get(slot);
+                if (Interval.TOP.equals(current)) {
+                    continue;
+                }
+                Interval next = null;
+                for (Definition definition : definitions.get(slot)) {
+                    next = Interval.join(next, range(slot, definition));
+                }
+                if (round < WIDEN_AFTER) {
+                    if (!Objects.equals(next, current)) {
+                        ranges.put(slot, next);
+                        changed = true;
+                    }
+                } else if (next != null && (current == null || !current.contains(next))) {
+                    ranges.put(slot, Interval.TOP);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the range of a single definition. Counters of the form
+     * {@code WHILE i < n DO ... i = i + c; ... END}, where the increment is the
+     * only definition of {@code i} in the loop, are bounded by the condition
+     * instead of being widened.
+     */
+    private Interval range(int slot, Definition definition) {
+
+        if (definition.loop != null && loopDefinitions.get(definition.loop).get(slot) == 1
+                && definition.value instanceof Ast.Expr.Binary
+                && definition.loop.getCondition() instanceof Ast.Expr.Binary) {
+
+            Ast.Expr.Binary increment = (Ast.Expr.Binary) definition.value;
+            Ast.Expr.Binary condition = (Ast.Expr.Binary) definition.loop.getCondition();
+            Interval step = range(increment.getRight());
+            Interval current = ranges.get(slot);
+            Interval bound = range(condition.getRight());
+
+            if (increment.getOperator().equals("+") && isLocal(increment.getLeft(), slot)
+                    && (condition.getOperator().equals("<") || condition.getOperator().equals("<="))
+                    && isLocal(condition.getLeft(), slot)
+                    && step != null && step.lo != null && step.lo.signum() >= 0 && step.hi != null
+                    && current != null && bound != null && bound.hi != null) {
+                BigInteger limit = condition.getOperator().equals("<") ? bound.hi.subtract(BigInteger.ONE) : bound.hi;
+                BigInteger lo = current.lo == null ? null : current.lo.add(step.lo);
+                return new Interval(lo, limit.add(step.hi));
+            }
+        }
+        return range(definition.value);
+    }
+
+    /**
+     * Returns the range of an expression given the current ranges of the
+     * unboxed locals, or null if it has no value yet.
+     */
+    private Interval range(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            Object literal = ((Ast.Expr.Literal) expr).getLiteral();
+            return literal instanceof BigInteger ? new Interval((BigInteger) literal, (BigInteger) literal) : Interval.TOP;
+        } else if (expr instanceof Ast.Expr.Group) {
+            return range(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            if (!access.getReceiver().isPresent() && access.getDepth() == Ast.Expr.Access.LOCAL && candidates.contains(access.getSlot())) {
+                return ranges.get(access.getSlot());
+            }
+            return Interval.TOP;
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            Interval left = range(binary.getLeft());
+            Interval right = range(binary.getRight());
+            if (left == null || right == null) {
+                return null;
+            }
+            switch (binary.getOperator()) {
+                case "+": return left.add(right);
+                case "-": return left.subtract(right);
+                case "*": return left.multiply(right);
+                case "/": return left.divide();
+            }
+        }
+        return Interval.TOP;
+    }
+
+    private void mark(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            Object literal = ((Ast.Expr.Literal) expr).getLiteral();
+            if (literal instanceof BigInteger) {
+                expr.setRepresentation(representation(range(expr)));
+            }
+        } else if (expr instanceof Ast.Expr.Group) {
+            expr.setRepresentation(((Ast.Expr.Group) expr).getExpression().getRepresentation());
+        } else if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            if (!access.getReceiver().isPresent() && access.getDepth() == Ast.Expr.Access.LOCAL && candidates.contains(access.getSlot())) {
+                expr.setRepresentation(representation(ranges.get(access.getSlot())));
+            }
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            Representation left = binary.getLeft().getRepresentation();
+            Representation right = binary.getRight().getRepresentation();
+            if (isIntegerOperator(binary.getOperator()) && left != Representation.BOXED && right != Representation.BOXED) {
+                if (isComparison(binary.getOperator())) {
+                    expr.setRepresentation(left == Representation.INT && right == Representation.INT ? Representation.INT : Representation.LONG);
+                } else {
+                    expr.setRepresentation(representation(range(expr)));
+                }
+            }
+        }
+    }
+
+    private static Representation representation(Interval interval) {
+
+        if (interval != null && interval.fitsInt()) {
+            return Representation.INT;
+        }
+        return Representation.LONG;
+    }
+
+    private boolean isLocal(Ast.Expr expr, int slot) {
+        return expr instanceof Ast.Expr.Access
+                && !((Ast.Expr.Access) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL
+                && ((Ast.Expr.Access) expr).getSlot() == slot;
+    }
+
+    private static boolean isIntegerOperator(String operator) {
+        return isComparison(operator) || operator.equals("+") || operator.equals("-") || operator.equals("*") || operator.equals("/");
+    }
+
+    private static boolean isComparison(String operator) {
+        switch (operator) {
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "==":
+            case "!=":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class Definition {
+
+        private final Ast.Expr value;
+        private final Ast.Stmt.While loop;
+
+        private Definition(Ast.Expr value, Ast.Stmt.While loop) {
+            this.value = value;
+            this.loop = loop;
+        }
+
+    }
+
+    /**
+     * A closed integer interval, where a null bound is unbounded.
+     */
+    private static final class Interval {
+
+        private static final Interval TOP = new Interval(null, null);
+
+        private final BigInteger lo;
+        private final BigInteger hi;
+
+        private Interval(BigInteger lo, BigInteger hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        private static Interval join(Interval a, Interval b) {
+            if (a == null) {
+                return b;
+            } else if (b == null) {
+                return a;
+            }
+            BigInteger lo = a.lo == null || b.lo == null ? null : a.lo.min(b.lo);
+            BigInteger hi = a.hi == null || b.hi == null ? null : a.hi.max(b.hi);
+            return new Interval(lo, hi);
+        }
+
+        private Interval add(Interval other) {
+            return new Interval(lo == null || other.lo == null ? null : lo.add(other.lo),
+                    hi == null || other.hi == null ? null : hi.add(other.hi));
+        }
+
+        private Interval subtract(Interval other) {
+            return new Interval(lo == null || other.hi == null ? null : lo.subtract(other.hi),
+                    hi == null || other.lo == null ? null : hi.subtract(other.lo));
+        }
+
+        private Interval multiply(Interval other) {
+            if (lo == null || hi == null || other.lo == null || other.hi == null) {
+                return TOP;
+            }
+            BigInteger a = lo.multiply(other.lo), b = lo.multiply(other.hi), c = hi.multiply(other.lo), d = hi.multiply(other.hi);
+            return new Interval(a.min(b).min(c).min(d), a.max(b).max(c).max(d));
+        }
+
+        /**
+         * Integer division never increases the magnitude of the dividend.
+         */
+        private Interval divide() {
+            if (lo == null || hi == null) {
+                return TOP;
+            }
+            BigInteger magnitude = lo.abs().max(hi.abs());
+            return new Interval(magnitude.negate(), magnitude);
+        }
+
+        private boolean contains(Interval other) {
+            return (lo == null || other.lo != null && lo.compareTo(other.lo) <= 0)
+                    && (hi == null || other.hi != null && hi.compareTo(other.hi) >= 0);
+        }
+
+        private boolean fitsInt() {
+            return lo != null && hi != null && lo.compareTo(INT_MIN) >= 0 && hi.compareTo(INT_MAX) <= 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Interval &&
+                    Objects.equals(lo, ((Interval) obj).lo) &&
+                    Objects.equals(hi, ((Interval) obj).hi);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lo, hi);
+        }
+
+    }
+
+}
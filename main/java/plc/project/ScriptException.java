@@ -0,0 +1,31 @@
+package plc.project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An error in the script being run, such as an operand of the wrong type.
+ *
+ * These do not capture a stack trace (the Java stack of the interpreter says
+ * nothing about the script), and type mismatches are preallocated: one
+ * instance is created for each pair of expected and received types, and
+ * thrown again every time that mismatch happens.
+ */
+public final class ScriptException extends RuntimeException {
+
+    private static final Map<Class<?>, Map<Class<?>, ScriptException>> MISMATCHES = new ConcurrentHashMap<>();
+
+    public ScriptException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * Returns the error for a value of the received type where the expected
+     * type was required.
+     */
+    public static ScriptException typeMismatch(Class<?> expected, Class<?> received) {
+        return MISMATCHES.computeIfAbsent(expected, type -> new ConcurrentHashMap<>()).computeIfAbsent(received,
+                type -> new ScriptException("Expected type " + expected.getName() + ", received " + received.getName() + "."));
+    }
+
+}
@@ -0,0 +1,159 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Marks statements of an analyzed source matching a few shapes that dominate
+ * execution, which the {@link Interpreter} then executes as a single fused
+ * step instead of one visit per node:
+ *
+ * <ul>
+ *     <li>{@link Pattern#INCREMENT}: {@code x = x + c} or {@code x = x - c}
+ *     of a boxed INTEGER local by a literal.</li>
+ *     <li>{@link Pattern#COMPARE_BRANCH}: {@code IF a < b} (or any other
+ *     comparison) of simple operands.</li>
+ *     <li>{@link Pattern#RETURN_CALL}: {@code RETURN f(x, ...)} of a call
+ *     that is not a tail call, with simple arguments.</li>
+ *     <li>{@link Pattern#PRINT_SUM}: {@code print(a + b)} of simple
+ *     operands.</li>
+ * </ul>
+ *
+ * Simple operands are non-{@code NIL} literals and accesses without a
+ * receiver, which are read straight from the frame or globals. Since the
+ * marks depend on the exact shape of a statement, this should run after any
+ * passes rewriting the source.
+ */
+public final class Superinstructions extends AstScanner {
+
+    public enum Pattern {
+        INCREMENT,
+        COMPARE_BRANCH,
+        RETURN_CALL,
+        PRINT_SUM
+    }
+
+    private final Map<Pattern, Integer> counts = new EnumMap<>(Pattern.class);
+
+    private Superinstructions() {
+        for (Pattern pattern : Pattern.values()) {
+            counts.put(pattern, 0);
+        }
+    }
+
+    /**
+     * Marks the fused statements of a source resolved by the {@link Analyzer},
+     * returning the number of statements marked for each pattern.
+     */
+    public static Map<Pattern, Integer> fuse(Ast.Source source) {
+
+        Superinstructions superinstructions = new Superinstructions();
+        superinstructions.visit(source);
+        return Collections.unmodifiableMap(superinstructions.counts);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        mark(ast, isPrintSum(ast.getExpression()) ? Pattern.PRINT_SUM : null);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        mark(ast, isIncrement(ast) ? Pattern.INCREMENT : null);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        mark(ast, isComparison(ast.getCondition()) ? Pattern.COMPARE_BRANCH : null);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        mark(ast, !ast.isTailCall() && isSimpleCall(ast.getValue()) ? Pattern.RETURN_CALL : null);
+        return super.visit(ast);
+    }
+
+    private void mark(Ast.Stmt stmt, Pattern pattern) {
+
+        stmt.setFused(pattern);
+        if (pattern != null) {
+            counts.merge(pattern, 1, Integer::sum);
+        }
+    }
+
+    private static boolean isIncrement(Ast.Stmt.Assignment ast) {
+
+        if (!isLocal(ast.getReceiver()) || ast.getReceiver().getRepresentation() != RangeAnalyzer.Representation.BOXED
+                || ast.getReceiver().getType() != Environment.Type.INTEGER || !(ast.getValue() instanceof Ast.Expr.Binary)) {
+            return false;
+        }
+        Ast.Expr.Binary value = (Ast.Expr.Binary) ast.getValue();
+        return (value.getOperator().equals("+") || value.getOperator().equals("-"))
+                && isLocal(value.getLeft())
+                && ((Ast.Expr.Access) value.getLeft()).getSlot() == ((Ast.Expr.Access) ast.getReceiver()).getSlot()
+                && value.getRight() instanceof Ast.Expr.Literal
+                && ((Ast.Expr.Literal) value.getRight()).getLiteral() instanceof BigInteger;
+    }
+
+    private static boolean isComparison(Ast.Expr expr) {
+
+        if (!(expr instanceof Ast.Expr.Binary)) {
+            return false;
+        }
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+        switch (binary.getOperator()) {
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "==":
+            case "!=":
+                return isSimple(binary.getLeft()) && isSimple(binary.getRight());
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSimpleCall(Ast.Expr expr) {
+        return expr instanceof Ast.Expr.Function && !((Ast.Expr.Function) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Function) expr).getArguments().stream().allMatch(Superinstructions::isSimple);
+    }
+
+    private static boolean isPrintSum(Ast.Expr expr) {
+
+        if (!(expr instanceof Ast.Expr.Function)) {
+            return false;
+        }
+        Ast.Expr.Function call = (Ast.Expr.Function) expr;
+        if (call.getReceiver().isPresent() || !call.getName().equals("print") || call.getArguments().size() != 1
+                || !(call.getArguments().get(0) instanceof Ast.Expr.Binary)) {
+            return false;
+        }
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) call.getArguments().get(0);
+        return sum.getOperator().equals("+") && isSimple(sum.getLeft()) && isSimple(sum.getRight());
+    }
+
+    /**
+     * Returns true if an operand can be read without evaluating anything: a
+     * non-{@code NIL} literal or a resolved access without a receiver.
+     */
+    static boolean isSimple(Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            return ((Ast.Expr.Literal) expr).getLiteral() != null;
+        }
+        return expr instanceof Ast.Expr.Access && !((Ast.Expr.Access) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expr).getDepth() >= 0;
+    }
+
+    private static boolean isLocal(Ast.Expr expr) {
+        return expr instanceof Ast.Expr.Access && !((Ast.Expr.Access) expr).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expr).getDepth() == Ast.Expr.Access.LOCAL;
+    }
+
+}
@@ -0,0 +1,191 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The types of the language interned to dense indices, with assignability and
+ * the typing of binary operators precomputed into tables, so the
+ * {@link Analyzer} compares types by identity and checks each node in
+ * constant time.
+ *
+ * Assignability follows the lattice: every type is assignable to
+ * {@code Any}, every type but {@code Any}, {@code Nil} and
+ * {@code IntegerIterable} to {@code Comparable}, and otherwise a type is
+ * only assignable to itself. Types other than the builtins are interned on
+ * first use with the same rules.
+ */
+public final class TypeLattice {
+
+    private static final Environment.Type[] BUILTINS = {
+            Environment.Type.ANY,
+            Environment.Type.NIL,
+            Environment.Type.COMPARABLE,
+            Environment.Type.BOOLEAN,
+            Environment.Type.INTEGER,
+            Environment.Type.DECIMAL,
+            Environment.Type.CHARACTER,
+            Environment.Type.STRING,
+            Environment.Type.INTEGER_ITERABLE,
+    };
+
+    private static final List<String> OPERATORS = Arrays.asList("AND", "OR", "<", "<=", ">", ">=", "==", "!=", "+", "-", "*", "/");
+    private static final Map<String, Integer> OPERATOR_INDICES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < OPERATORS.size(); i++) {
+            OPERATOR_INDICES.put(OPERATORS.get(i), i);
+        }
+    }
+
+    //only ever replaced as a whole, so lookups never need a lock
+    private static volatile Table table = new Table(Arrays.asList(BUILTINS));
+
+    private TypeLattice() {}
+
+    /**
+     * Returns the type with the given name, looking it up in the
+     * {@link Environment} only the first time.
+     */
+    public static Environment.Type forName(String name) {
+
+        Environment.Type type = table.names.get(name);
+        if (type == null) {
+            type = Environment.getType(name);
+            index(type);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the index of a type, interning it if needed.
+     */
+    public static int index(Environment.Type type) {
+
+        Integer index = table.indices.get(type);
+        if (index == null) {
+            synchronized (TypeLattice.class) {
+                index = table.indices.get(type);
+                if (index == null) {
+                    List<Environment.Type> types = new ArrayList<>(table.types);
+                    types.add(type);
+                    table = new Table(types);
+                    index = types.size() - 1;
+                }
+            }
+        }
+        return index;
+    }
+
+    public static boolean isAssignable(Environment.Type target, Environment.Type type) {
+
+        //interning either type may replace the table, so only read it once both are indexed
+        int source = index(type);
+        int destination = index(target);
+        Table t = table;
+        return (t.assignable[destination][source >>> 6] & 1L << source) != 0;
+    }
+
+    /**
+     * Returns the type of a binary operator applied to operands of the given
+     * types, or null if the operator is not defined for them.
+     */
+    public static Environment.Type binary(String operator, Environment.Type left, Environment.Type right) {
+
+        Integer op = OPERATOR_INDICES.get(operator);
+        if (op == null) {
+            return null;
+        }
+        int l = index(left);
+        int r = index(right);
+        //indices never change once assigned, so interning the operands cannot invalidate them
+        return table.binary[op][l][r];
+    }
+
+    private static final class Table {
+
+        private final List<Environment.Type> types;
+        private final Map<Environment.Type, Integer> indices = new IdentityHashMap<>();
+        private final Map<String, Environment.Type> names = new HashMap<>();
+        private final long[][] assignable;
+        private final Environment.Type[][][] binary;
+
+        private Table(List<Environment.Type> types) {
+
+            this.types = types;
+            for (int i = 0; i < types.size(); i++) {
+                indices.put(types.get(i), i);
+                names.put(types.get(i).getName(), types.get(i));
+            }
+
+            int words = (types.size() + 63) >>> 6;
+            assignable = new long[types.size()][words];
+            for (Environment.Type target : types) {
+                for (Environment.Type type : types) {
+                    if (assignable(target, type)) {
+                        int source = indices.get(type);
+                        assignable[indices.get(target)][source >>> 6] |= 1L << source;
+                    }
+                }
+            }
+
+            binary = new Environment.Type[OPERATORS.size()][types.size()][types.size()];
+            for (int op = 0; op < OPERATORS.size(); op++) {
+                for (Environment.Type left : types) {
+                    for (Environment.Type right : types) {
+                        binary[op][indices.get(left)][indices.get(right)] = type(OPERATORS.get(op), left, right);
+                    }
+                }
+            }
+        }
+
+        private static boolean assignable(Environment.Type target, Environment.Type type) {
+
+            if (target == Environment.Type.ANY) {
+                return true;
+            } else if (target == Environment.Type.COMPARABLE) {
+                return type != Environment.Type.ANY && type != Environment.Type.NIL && type != Environment.Type.INTEGER_ITERABLE;
+            }
+            return target == type;
+        }
+
+        private static Environment.Type type(String operator, Environment.Type left, Environment.Type right) {
+
+            switch (operator) {
+                case "AND":
+                case "OR":
+                    return left == Environment.Type.BOOLEAN && right == Environment.Type.BOOLEAN ? Environment.Type.BOOLEAN : null;
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                case "==":
+                case "!=":
+                    return assignable(Environment.Type.COMPARABLE, left) && assignable(Environment.Type.COMPARABLE, right)
+                            && assignable(left, right) ? Environment.Type.BOOLEAN : null;
+                case "+":
+                    if (left == Environment.Type.STRING || right == Environment.Type.STRING) {
+                        return Environment.Type.STRING;
+                    }
+                    //fall through to the arithmetic rules shared with the other operators
+                case "-":
+                case "*":
+                case "/":
+                    if (left == Environment.Type.INTEGER && right == Environment.Type.INTEGER) {
+                        return Environment.Type.INTEGER;
+                    } else if (left == Environment.Type.DECIMAL && right == Environment.Type.DECIMAL) {
+                        return Environment.Type.DECIMAL;
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package plc.project;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds keys identifying the value of an expression built from literals,
+ * accesses and binary operators, so two expressions with the same key compute
+ * the same value when evaluated against the same frame and objects. Unlike
+ * {@link Ast#equals(Object)}, receiver-less accesses are compared by their
+ * resolved slot rather than their name, since blocks may shadow names.
+ */
+final class ValueKey {
+
+    private ValueKey() {}
+
+    /**
+     * Returns the key of an expression, or null if it contains anything other
+     * than literals, resolved accesses (possibly through receivers) and binary
+     * operators.
+     */
+    static String of(Ast.Expr expr) {
+
+        StringBuilder builder = new StringBuilder();
+        return append(builder, expr) ? builder.toString() : null;
+    }
+
+    private static boolean append(StringBuilder builder, Ast.Expr expr) {
+
+        if (expr instanceof Ast.Expr.Literal) {
+            Object literal = ((Ast.Expr.Literal) expr).getLiteral();
+            //BigDecimal equality includes the scale, so 1.0 and 1.00 get different keys as well
+            String value = literal instanceof BigDecimal ? ((BigDecimal) literal).toString() : String.valueOf(literal);
+            builder.append("L").append(literal == null ? "nil" : literal.getClass().getSimpleName()).append(':').append(value.length()).append(':').append(value);
+            return true;
+        } else if (expr instanceof Ast.Expr.Group) {
+            return append(builder, ((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            if (access.getReceiver().isPresent()) {
+                builder.append("(. ");
+                if (!append(builder, access.getReceiver().get())) {
+                    return false;
+                }
+                builder.append(' ').append(access.getName()).append(')');
+                return true;
+            } else if (access.getDepth() < 0) {
+                return false;
+            }
+            builder.append(access.getDepth() == Ast.Expr.Access.LOCAL ? "V" : "F").append(access.getSlot());
+            return true;
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            builder.append('(').append(binary.getOperator()).append(' ');
+            if (!append(builder, binary.getLeft())) {
+                return false;
+            }
+            builder.append(' ');
+            if (!append(builder, binary.getRight())) {
+                return false;
+            }
+            builder.append(')');
+            return true;
+        }
+        return false;
+    }
+
+}
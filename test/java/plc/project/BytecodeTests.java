@@ -0,0 +1,155 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that sources compiled by the {@link BytecodeCompiler} and run on the
+ * {@link BytecodeVM} give the same results as the {@link Interpreter}.
+ */
+final class BytecodeTests {
+
+    private static final Environment.Type COUNTER = counterType();
+
+    @Test
+    void testNilLocal() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    LET s: String;",
+                "    IF x == NIL AND s == NIL DO",
+                "        x = 1;",
+                "    END",
+                "    RETURN x;",
+                "END"
+        );
+        test(input, BigInteger.ONE);
+    }
+
+    @Test
+    void testNilOperand() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    RETURN x + 1;",
+                "END"
+        );
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(analysis()).visit(source);
+        Bytecode.Program program = BytecodeCompiler.compile(source);
+        ScriptException interpreted = Assertions.assertThrows(ScriptException.class, () -> new Interpreter(runtime()).visit(source));
+        ScriptException executed = Assertions.assertThrows(ScriptException.class, () -> new Interpreter(runtime()).execute(program));
+        Assertions.assertEquals(interpreted.getMessage(), executed.getMessage());
+    }
+
+    @Test
+    void testFor() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    FOR i IN range(5) DO",
+                "        total = total * 10 + i;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        test(input, BigInteger.valueOf(1234));
+    }
+
+    @Test
+    void testReceiver() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    counter().count = counter().count + 5;",
+                "    RETURN counter().count * 2;",
+                "END"
+        );
+        test(input, BigInteger.valueOf(12));
+    }
+
+    @Test
+    void testShortCircuit() {
+        String input = String.join(System.lineSeparator(),
+                "LET calls: Integer = 0;",
+                "DEF touch(): Boolean DO",
+                "    calls = calls + 1;",
+                "    RETURN TRUE;",
+                "END",
+                "DEF main(): Integer DO",
+                "    IF FALSE AND touch() DO",
+                "        calls = calls + 1000;",
+                "    END",
+                "    IF TRUE OR touch() DO",
+                "        calls = calls + 10;",
+                "    END",
+                "    IF TRUE AND touch() DO",
+                "        calls = calls + 100;",
+                "    END",
+                "    RETURN calls;",
+                "END"
+        );
+        Bytecode.Program program = test(input, BigInteger.valueOf(111));
+        String disassembly = BytecodeDisassembler.disassemble(program);
+        Assertions.assertTrue(disassembly.contains("JUMP_FALSE"), disassembly);
+        Assertions.assertTrue(disassembly.contains("JUMP_TRUE"), disassembly);
+    }
+
+    private static Bytecode.Program test(String input, Object expected) {
+
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(analysis()).visit(source);
+        Bytecode.Program program = BytecodeCompiler.compile(source);
+        Assertions.assertEquals(expected, new Interpreter(runtime()).visit(source).getValue());
+        Assertions.assertEquals(expected, new Interpreter(runtime()).execute(program).getValue());
+        return program;
+    }
+
+    private static Environment.Type counterType() {
+
+        Scope fields = new Scope(null);
+        fields.defineVariable("count", "count", Environment.Type.INTEGER, Environment.NIL);
+        return new Environment.Type("Counter", "Counter", fields);
+    }
+
+    /**
+     * The builtins as seen by the Analyzer: {@code range(n)}, iterating from
+     * 0 to n - 1, and {@code counter()}, returning a single Counter object.
+     */
+    private static Scope analysis() {
+
+        Scope scope = new Scope(null);
+        scope.defineFunction("range", "range", Arrays.asList(Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+        scope.defineFunction("counter", "counter", Collections.emptyList(), COUNTER, args -> Environment.NIL);
+        return scope;
+    }
+
+    /**
+     * The builtins at runtime, with a new Counter object (its count starting
+     * at 1) for each run.
+     */
+    private static Scope runtime() {
+
+        Scope fields = new Scope(null);
+        fields.defineVariable("count", Environment.create(BigInteger.ONE));
+        Environment.PlcObject counter = new Environment.PlcObject(fields, "counter");
+
+        Scope scope = new Scope(null);
+        scope.defineFunction("range", 1, args -> {
+            List<Environment.PlcObject> values = new ArrayList<>();
+            BigInteger count = (BigInteger) args.get(0).getValue();
+            for (BigInteger i = BigInteger.ZERO; i.compareTo(count) < 0; i = i.add(BigInteger.ONE)) {
+                values.add(Environment.create(i));
+            }
+            return Environment.create(values);
+        });
+        scope.defineFunction("counter", 0, args -> counter);
+        return scope;
+    }
+
+}
@@ -0,0 +1,142 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests of the values {@link CommonSubexpressionElimination} reuses and where
+ * it declares their temporaries, comparing the result of each rewritten
+ * source with the original's.
+ */
+final class CommonSubexpressionEliminationTests {
+
+    @Test
+    void testReuse() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET a: Integer = 3;",
+                "    LET b: Integer = 4;",
+                "    LET x: Integer = a * b + 1;",
+                "    LET y: Integer = a * b + 2;",
+                "    RETURN x + y;",
+                "END"
+        );
+        List<Ast.Stmt> statements = test(input, BigInteger.valueOf(27));
+        Assertions.assertEquals(6, statements.size());
+        //declared directly before the statement first computing it
+        Ast.Stmt.Declaration temporary = (Ast.Stmt.Declaration) statements.get(2);
+        Assertions.assertEquals("$cse0", temporary.getName());
+        Assertions.assertEquals("*", ((Ast.Expr.Binary) temporary.getValue().get()).getOperator());
+        Assertions.assertEquals("$cse0", left(statements.get(3)).getName());
+        Assertions.assertEquals("$cse0", left(statements.get(4)).getName());
+    }
+
+    @Test
+    void testKilledByAssignment() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET a: Integer = 3;",
+                "    LET x: Integer = a * 4;",
+                "    a = 5;",
+                "    LET y: Integer = a * 4;",
+                "    RETURN x + y;",
+                "END"
+        );
+        Assertions.assertTrue(temporaries(test(input, BigInteger.valueOf(32))).isEmpty());
+    }
+
+    @Test
+    void testKilledByCall() {
+        String input = String.join(System.lineSeparator(),
+                "LET g: Integer = 2;",
+                "DEF bump(): Integer DO",
+                "    g = g + 1;",
+                "    RETURN 0;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET a: Integer = 2;",
+                "    LET x: Integer = g * 3 + a * 5;",
+                "    bump();",
+                "    LET y: Integer = g * 3 + a * 5;",
+                "    RETURN x + y;",
+                "END"
+        );
+        List<Ast.Stmt> statements = test(input, BigInteger.valueOf(35));
+        //the call may write the field, but not the local
+        List<Ast.Stmt.Declaration> temporaries = temporaries(statements);
+        Assertions.assertEquals(1, temporaries.size());
+        Ast.Expr.Binary value = (Ast.Expr.Binary) temporaries.get(0).getValue().get();
+        Assertions.assertEquals("a", ((Ast.Expr.Access) value.getLeft()).getName());
+    }
+
+    @Test
+    void testShortCircuitRightNotNumbered() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET a: Integer = 0;",
+                "    LET b: Integer = 4;",
+                "    LET p: Boolean = a > 0 AND a * b > 10;",
+                "    LET q: Boolean = b < 0 OR a * b < 10;",
+                "    LET r: Boolean = a * b < 10;",
+                "    IF q AND r DO",
+                "        IF p DO",
+                "            RETURN 2;",
+                "        END",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        //computing a * b ahead of p or q would evaluate what they skip
+        Assertions.assertTrue(temporaries(test(input, BigInteger.ONE)).isEmpty());
+    }
+
+    @Test
+    void testLoopBodyIsOwnSequence() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    LET total: Integer = 0;",
+                "    WHILE i < 3 DO",
+                "        total = total + (i + 1) * (i + 1);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        List<Ast.Stmt> statements = test(input, BigInteger.valueOf(14));
+        Assertions.assertEquals(4, statements.size());
+        List<Ast.Stmt> body = ((Ast.Stmt.While) statements.get(2)).getStatements();
+        Assertions.assertEquals(3, body.size());
+        Assertions.assertEquals("$cse0", ((Ast.Stmt.Declaration) body.get(0)).getName());
+    }
+
+    /**
+     * Rewrites a source, asserting it still returns the expected result, the
+     * same as the original's, and returns the statements of its last method.
+     */
+    private static List<Ast.Stmt> test(String input, Object expected) {
+
+        Assertions.assertEquals(expected, Scripts.run(Scripts.analyze(input)).getValue());
+        Ast.Source source = new CommonSubexpressionElimination().visit(Scripts.analyze(input));
+        Assertions.assertEquals(expected, Scripts.run(source).getValue());
+        return source.getMethods().get(source.getMethods().size() - 1).getStatements();
+    }
+
+    private static List<Ast.Stmt.Declaration> temporaries(List<Ast.Stmt> statements) {
+        return statements.stream()
+                .filter(stmt -> stmt instanceof Ast.Stmt.Declaration && ((Ast.Stmt.Declaration) stmt).getName().startsWith("$cse"))
+                .map(stmt -> (Ast.Stmt.Declaration) stmt)
+                .collect(Collectors.toList());
+    }
+
+    private static Ast.Expr.Access left(Ast.Stmt declaration) {
+        Ast.Expr.Binary value = (Ast.Expr.Binary) ((Ast.Stmt.Declaration) declaration).getValue().get();
+        return (Ast.Expr.Access) value.getLeft();
+    }
+
+}
@@ -0,0 +1,67 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Tests of propagating constant fields across a source with
+ * {@link ConstantPropagation}, comparing the result of each propagated source
+ * with the original's.
+ */
+final class ConstantPropagationTests {
+
+    @Test
+    void testChainedConstants() {
+        String input = String.join(System.lineSeparator(),
+                "LET CONST a: Integer = 2;",
+                "LET CONST b: Integer = a * 3;",
+                "LET CONST c: Integer = b + a;",
+                "DEF main(): Integer DO",
+                "    RETURN c * 10;",
+                "END"
+        );
+        //b is only known after the round learning a, and c after the one learning b
+        Ast.Source source = test(input, BigInteger.valueOf(80));
+        Assertions.assertEquals(BigInteger.valueOf(6), value(source.getFields().get(1)));
+        Assertions.assertEquals(BigInteger.valueOf(8), value(source.getFields().get(2)));
+        Ast.Expr returned = ((Ast.Stmt.Return) source.getMethods().get(0).getStatements().get(0)).getValue();
+        Assertions.assertEquals(BigInteger.valueOf(80), ((Ast.Expr.Literal) returned).getLiteral());
+    }
+
+    @Test
+    void testNonFoldingConstantLeftInPlace() {
+        String input = String.join(System.lineSeparator(),
+                "LET base: Integer = 1;",
+                "LET CONST offset: Integer = base + 1;",
+                "DEF main(): Integer DO",
+                "    base = 10;",
+                "    RETURN offset + base;",
+                "END"
+        );
+        //base is assigned, so offset's initializer never folds and it stays a field read
+        Ast.Source source = test(input, BigInteger.valueOf(12));
+        Assertions.assertEquals(2, source.getFields().size());
+        Assertions.assertTrue(source.getFields().get(1).getValue().get() instanceof Ast.Expr.Binary);
+        Ast.Expr.Binary returned = (Ast.Expr.Binary) ((Ast.Stmt.Return) source.getMethods().get(0).getStatements().get(1)).getValue();
+        Assertions.assertEquals("offset", ((Ast.Expr.Access) returned.getLeft()).getName());
+    }
+
+    /**
+     * Propagates the constants of a source, asserting it still returns the
+     * expected result, the same as the original's.
+     */
+    private static Ast.Source test(String input, Object expected) {
+
+        Assertions.assertEquals(expected, Scripts.run(Scripts.analyze(input)).getValue());
+        Ast.Source source = ConstantPropagation.propagate(Scripts.analyze(input));
+        Assertions.assertEquals(expected, Scripts.run(source).getValue());
+        return source;
+    }
+
+    private static Object value(Ast.Field field) {
+        return ((Ast.Expr.Literal) field.getValue().get()).getLiteral();
+    }
+
+}
@@ -0,0 +1,117 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the {@link CostModel} estimates and the decisions the
+ * {@link AdmissionControl} takes from them.
+ */
+final class CostModelTests {
+
+    private static final CostModel.Cost LINEAR = CostModel.Cost.UNIT.times();
+
+    @Test
+    void testArithmetic() {
+        CostModel.Cost cost = CostModel.Cost.UNIT.plus(CostModel.Cost.UNIT).times().max(CostModel.Cost.UNIT.plus(CostModel.Cost.UNIT));
+        Assertions.assertEquals(1, cost.getDegree());
+        Assertions.assertEquals(2, cost.getCoefficient(0));
+        Assertions.assertEquals(2, cost.getCoefficient(1));
+        Assertions.assertEquals(0, cost.getCoefficient(2));
+        Assertions.assertEquals(22, cost.evaluate(10));
+        Assertions.assertEquals("2n + 2", cost.toString());
+    }
+
+    @Test
+    void testSaturation() {
+        CostModel.Cost cubic = CostModel.Cost.UNIT.times().times().times();
+        Assertions.assertEquals(3, cubic.getDegree());
+        Assertions.assertEquals(Long.MAX_VALUE, cubic.evaluate(Long.MAX_VALUE / 2));
+        Assertions.assertEquals(Long.MAX_VALUE, cubic.plus(CostModel.Cost.UNIT).evaluate(3_000_000));
+    }
+
+    @Test
+    void testLoopNesting() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 10 DO",
+                "        LET j: Integer = 0;",
+                "        WHILE j < 10 DO",
+                "            j = j + 1;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        );
+        CostModel.Cost cost = CostModel.estimate(Scripts.analyze(input)).getCost();
+        Assertions.assertEquals(2, cost.getDegree());
+        Assertions.assertFalse(cost.isRecursive());
+    }
+
+    @Test
+    void testRecursiveMarking() {
+        String input = String.join(System.lineSeparator(),
+                "DEF down(n: Integer): Integer DO",
+                "    IF n == 0 DO",
+                "        RETURN 0;",
+                "    END",
+                "    RETURN down(n - 1);",
+                "END",
+                "DEF square(n: Integer): Integer DO",
+                "    RETURN n * n;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN down(square(3));",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        CostModel model = CostModel.estimate(source);
+        Assertions.assertTrue(model.getCost(source.getMethods().get(0)).isRecursive());
+        Assertions.assertFalse(model.getCost(source.getMethods().get(1)).isRecursive());
+        //calling a recursive method makes the caller's cost recursive too
+        Assertions.assertTrue(model.getCost().isRecursive());
+    }
+
+    @Test
+    void testDecisionThresholds() {
+        AdmissionControl control = new AdmissionControl(10);
+        control.setAssumedIterations(10);
+        Assertions.assertEquals(AdmissionControl.Decision.ADMIT, control.decide(LINEAR));
+        control.setAssumedIterations(11);
+        Assertions.assertEquals(AdmissionControl.Decision.DEPRIORITIZE, control.decide(LINEAR));
+        control.setAssumedIterations(100);
+        Assertions.assertEquals(AdmissionControl.Decision.DEPRIORITIZE, control.decide(LINEAR));
+        control.setAssumedIterations(101);
+        Assertions.assertEquals(AdmissionControl.Decision.REJECT, control.decide(LINEAR));
+    }
+
+    @Test
+    void testRecursionDecision() {
+        AdmissionControl control = new AdmissionControl(10);
+        Assertions.assertEquals(AdmissionControl.Decision.DEPRIORITIZE, control.decide(CostModel.Cost.UNIT.recursive()));
+        control.setRejectRecursion(true);
+        Assertions.assertEquals(AdmissionControl.Decision.REJECT, control.decide(CostModel.Cost.UNIT.recursive()));
+    }
+
+    @Test
+    void testNegativeSettings() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdmissionControl(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdmissionControl(10).setAssumedIterations(-1));
+    }
+
+    @Test
+    void testDeprioritizeFactor() {
+        AdmissionControl control = new AdmissionControl(10);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> control.setDeprioritizeFactor(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> control.setDeprioritizeFactor(-1));
+        //a factor of 1 leaves nothing between admitting and rejecting
+        control.setDeprioritizeFactor(1);
+        control.setAssumedIterations(10);
+        Assertions.assertEquals(AdmissionControl.Decision.ADMIT, control.decide(LINEAR));
+        control.setAssumedIterations(11);
+        Assertions.assertEquals(AdmissionControl.Decision.REJECT, control.decide(LINEAR));
+    }
+
+}
@@ -0,0 +1,72 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the {@link Analyzer} in demand-driven mode (see
+ * {@link Analyzer#setDemandDriven(boolean)}).
+ */
+final class DemandDrivenAnalyzerTests {
+
+    private static final String INPUT = String.join(System.lineSeparator(),
+            "LET limit: Integer = 10;",
+            "LET scale: Integer = 2;",
+            "DEF reset(): Integer DO",
+            "    limit = 0;",
+            "    RETURN 0;",
+            "END",
+            "DEF main(): Integer DO",
+            "    RETURN limit * scale;",
+            "END"
+    );
+
+    @Test
+    void testDeferredAssignmentIsWrite() {
+        Analyzer analyzer = analyzer();
+        Ast.Source source = new Parser(new Lexer(INPUT).lex()).parseSource();
+        analyzer.visit(source);
+
+        Ast.Method reset = source.getMethods().get(0);
+        Assertions.assertSame(reset, analyzer.getDeferred().get(0));
+        //reset is never called, but its assignment is not resolved and must count as a write
+        Assertions.assertFalse(source.getFields().get(0).isEffectivelyConstant());
+        Assertions.assertTrue(source.getFields().get(1).isEffectivelyConstant());
+
+        analyzer.analyzeDeferred(reset);
+        Assertions.assertTrue(analyzer.getDeferred().isEmpty());
+        Assertions.assertFalse(source.getFields().get(0).isEffectivelyConstant());
+        Assertions.assertTrue(source.getFields().get(1).isEffectivelyConstant());
+    }
+
+    @Test
+    void testDeferredAssignmentToLocal() {
+        String input = String.join(System.lineSeparator(),
+                "LET limit: Integer = 10;",
+                "DEF shadow(): Integer DO",
+                "    LET limit: Integer = 1;",
+                "    limit = 0;",
+                "    RETURN limit;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN limit;",
+                "END"
+        );
+        Analyzer analyzer = analyzer();
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        analyzer.visit(source);
+        Assertions.assertFalse(source.getFields().get(0).isEffectivelyConstant());
+
+        //once resolved, the assignment is to the local, so the field is constant after all
+        analyzer.analyzeDeferred(source.getMethods().get(0));
+        Assertions.assertTrue(source.getFields().get(0).isEffectivelyConstant());
+    }
+
+    private static Analyzer analyzer() {
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        analyzer.setDemandDriven(true);
+        analyzer.setInferConstants(true);
+        return analyzer;
+    }
+
+}
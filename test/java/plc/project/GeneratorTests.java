@@ -0,0 +1,91 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests that the Java the {@link Generator} emits from a profiled source
+ * compiles and computes the same result as the {@link Interpreter}.
+ */
+final class GeneratorTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testHotCallInlined() throws Exception {
+        String input = String.join(System.lineSeparator(),
+                "DEF twice(n: Integer): Integer DO",
+                "    RETURN n * 2;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET big: Integer = 3000000000;",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 1200 DO",
+                "        total = total + twice(i);",
+                "        i = i + 1;",
+                "    END",
+                "    IF big > total DO",
+                "        RETURN total;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Profile profile = Profile.of(source);
+        Object expected = Scripts.run(source, scope -> {
+            Interpreter interpreter = new Interpreter(scope);
+            interpreter.setProfile(profile);
+            return interpreter;
+        }).getValue();
+
+        String java = generate(source, profile);
+        //the call ran more than Generator.HOT_CALLS times, so its body replaces it
+        Assertions.assertFalse(java.contains("twice(i)"), java);
+        Assertions.assertEquals(((Number) expected).intValue(), run(java));
+    }
+
+    private static String generate(Ast.Source source, Profile profile) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), profile).visit(source);
+        return writer.toString();
+    }
+
+    /**
+     * Compiles the generated {@code Main} class and returns the result of its
+     * {@code main} method.
+     */
+    private Object run(String java) throws IOException, ReflectiveOperationException {
+
+        Path file = directory.resolve("Main.java");
+        Files.write(file, java.getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assertions.assertNotNull(compiler, "the tests must run on a JDK");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int status = compiler.run(null, null, errors, "-d", directory.toString(), file.toString());
+        Assertions.assertEquals(0, status, () -> errors.toString() + java);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {directory.toUri().toURL()}, null)) {
+            Class<?> main = loader.loadClass("Main");
+            Method method = main.getDeclaredMethod("main");
+            method.setAccessible(true);
+            return method.invoke(main.getDeclaredConstructor().newInstance());
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Tests of the counted loops recognized by the {@link InductionAnalyzer} and
+ * run by the {@link Interpreter}.
+ */
+final class InductionAnalyzerTests {
+
+    @Test
+    void testCountedLoop() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 10 DO",
+                "        total = total + i;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total + i;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertNotNull(loop(source).getCountedLoop());
+        Assertions.assertEquals(BigInteger.valueOf(55), Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testBoundIsCounter() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET count: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i <= i DO",
+                "        count = count + 1;",
+                "        IF count == 3 DO",
+                "            RETURN count;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        //the bound moves with the counter, so it is not invariant
+        Assertions.assertNull(loop(source).getCountedLoop());
+        Assertions.assertEquals(BigInteger.valueOf(3), Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testNilCounter() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET i: Integer;",
+                "    WHILE i < 3 DO",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertNotNull(loop(source).getCountedLoop());
+        //the counted loop falls back to the generic loop, which reports the NIL operand
+        Assertions.assertThrows(ScriptException.class, () -> Scripts.run(source));
+    }
+
+    private static Ast.Stmt.While loop(Ast.Source source) {
+        for (Ast.Stmt stmt : source.getMethods().get(0).getStatements()) {
+            if (stmt instanceof Ast.Stmt.While) {
+                return (Ast.Stmt.While) stmt;
+            }
+        }
+        throw new AssertionError("No loop.");
+    }
+
+}
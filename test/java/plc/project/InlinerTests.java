@@ -0,0 +1,140 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Tests of the calls the {@link Inliner} substitutes, comparing the result of
+ * each rewritten source with the original's.
+ */
+final class InlinerTests {
+
+    @Test
+    void testBinaryGrouped() {
+        String input = String.join(System.lineSeparator(),
+                "DEF add(a: Integer, b: Integer): Integer DO",
+                "    RETURN a + b;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET x: Integer = 2;",
+                "    RETURN add(x, 3) * 4;",
+                "END"
+        );
+        Ast.Source source = test(input, Inliner.DEFAULT_BUDGET, BigInteger.valueOf(20));
+        //without the group the product would bind to the second operand
+        Ast.Expr.Binary product = (Ast.Expr.Binary) returned(source);
+        Ast.Expr.Group group = (Ast.Expr.Group) product.getLeft();
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) group.getExpression();
+        Assertions.assertEquals("x", ((Ast.Expr.Access) sum.getLeft()).getName());
+        Assertions.assertEquals(BigInteger.valueOf(3), ((Ast.Expr.Literal) sum.getRight()).getLiteral());
+    }
+
+    @Test
+    void testParameterUsedTwice() {
+        String input = String.join(System.lineSeparator(),
+                "DEF square(a: Integer): Integer DO",
+                "    RETURN a * a;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET x: Integer = 7;",
+                "    RETURN square(x) + 1;",
+                "END"
+        );
+        Ast.Source source = test(input, Inliner.DEFAULT_BUDGET, BigInteger.valueOf(50));
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) returned(source);
+        Ast.Expr.Binary product = (Ast.Expr.Binary) ((Ast.Expr.Group) sum.getLeft()).getExpression();
+        //each use is a separate copy of the argument
+        Assertions.assertNotSame(product.getLeft(), product.getRight());
+    }
+
+    @Test
+    void testOverBudget() {
+        String input = String.join(System.lineSeparator(),
+                "DEF poly(a: Integer): Integer DO",
+                "    RETURN a * a + a;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN poly(3);",
+                "END"
+        );
+        Assertions.assertTrue(returned(test(input, 4, BigInteger.valueOf(12))) instanceof Ast.Expr.Function);
+        Assertions.assertTrue(returned(test(input, 5, BigInteger.valueOf(12))) instanceof Ast.Expr.Group);
+    }
+
+    @Test
+    void testRecursiveNotInlined() {
+        String input = String.join(System.lineSeparator(),
+                "DEF stop(n: Integer): Boolean DO",
+                "    RETURN n < 1 OR stop(n - 1);",
+                "END",
+                "DEF main(): Integer DO",
+                "    IF stop(3) DO",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = test(input, Inliner.DEFAULT_BUDGET, BigInteger.ONE);
+        Ast.Stmt.If branch = (Ast.Stmt.If) source.getMethods().get(1).getStatements().get(0);
+        Assertions.assertTrue(branch.getCondition() instanceof Ast.Expr.Function);
+    }
+
+    @Test
+    void testNonTrivialArgument() {
+        String input = String.join(System.lineSeparator(),
+                "DEF square(a: Integer): Integer DO",
+                "    RETURN a * a;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET x: Integer = 2;",
+                "    RETURN square(x + 1);",
+                "END"
+        );
+        //substituting x + 1 for both uses of a would evaluate it twice
+        Assertions.assertTrue(returned(test(input, Inliner.DEFAULT_BUDGET, BigInteger.valueOf(9))) instanceof Ast.Expr.Function);
+    }
+
+    @Test
+    void testFieldArgument() {
+        String input = String.join(System.lineSeparator(),
+                "LET g: Integer = 5;",
+                "DEF bump(): Integer DO",
+                "    g = g + 1;",
+                "    RETURN g;",
+                "END",
+                "DEF twice(a: Integer): Integer DO",
+                "    RETURN a + a;",
+                "END",
+                "DEF before(a: Integer): Integer DO",
+                "    RETURN bump() + a;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN twice(g) + before(g);",
+                "END"
+        );
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) returned(test(input, Inliner.DEFAULT_BUDGET, BigInteger.valueOf(21)));
+        //a field is substituted only into a body that makes no calls that could write to it
+        Assertions.assertTrue(sum.getLeft() instanceof Ast.Expr.Group);
+        Assertions.assertTrue(sum.getRight() instanceof Ast.Expr.Function);
+    }
+
+    /**
+     * Inlines a source with the given budget, asserting it still returns the
+     * expected result, the same as the original's.
+     */
+    private static Ast.Source test(String input, int budget, Object expected) {
+
+        Assertions.assertEquals(expected, Scripts.run(Scripts.analyze(input)).getValue());
+        Ast.Source source = new Inliner(budget).visit(Scripts.analyze(input));
+        Assertions.assertEquals(expected, Scripts.run(source).getValue());
+        return source;
+    }
+
+    private static Ast.Expr returned(Ast.Source source) {
+        Ast.Method main = source.getMethods().get(source.getMethods().size() - 1);
+        return ((Ast.Stmt.Return) main.getStatements().get(main.getStatements().size() - 1)).getValue();
+    }
+
+}
@@ -0,0 +1,341 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Timing comparisons of the interpreter on small, hot scripts. These are not
+ * part of the regular test run (exclude the {@code benchmark} tag); each one
+ * checks that the optimized program computes the same result and prints the
+ * average time per run of both versions.
+ */
+@Tag("benchmark")
+final class InterpreterBenchmarks {
+
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    @Test
+    void testLoopInvariantMotion() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET limit: Integer = 20000;",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < limit DO",
+                "        total = total + limit * 2 * 3;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        compare("Loop invariant motion (WHILE)", input, source -> new LoopInvariantMotion().visit(source));
+    }
+
+    @Test
+    void testLoopInvariantMotionNested() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET n: Integer = 150;",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < n DO",
+                "        LET j: Integer = 0;",
+                "        WHILE j < n DO",
+                "            total = total + (n * n - i * 2);",
+                "            j = j + 1;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        compare("Loop invariant motion (nested WHILE)", input, source -> new LoopInvariantMotion().visit(source));
+    }
+
+    @Test
+    void testTailCallsMillionDeep() {
+        String input = String.join(System.lineSeparator(),
+                "DEF count(n: Integer, total: Integer): Integer DO",
+                "    IF n == 0 DO",
+                "        RETURN total;",
+                "    END",
+                "    RETURN count(n - 1, total + 1);",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN count(1000000, 0);",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(BigInteger.valueOf(1000000), Scripts.run(source).getValue());
+        System.out.printf("Tail calls (1,000,000 deep): %.3f ms%n", time(source));
+    }
+
+    @Test
+    void testTailCallsShallow() {
+        //deep enough to matter, shallow enough for the baseline not to overflow the stack
+        String input = String.join(System.lineSeparator(),
+                "DEF even(n: Integer): Boolean DO",
+                "    IF n == 0 DO",
+                "        RETURN TRUE;",
+                "    END",
+                "    RETURN odd(n - 1);",
+                "END",
+                "DEF odd(n: Integer): Boolean DO",
+                "    IF n == 0 DO",
+                "        RETURN FALSE;",
+                "    END",
+                "    RETURN even(n - 1);",
+                "END",
+                "DEF main(): Integer DO",
+                "    IF even(2000) DO",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        UnaryOperator<Ast.Source> withoutTailCalls = source -> new AstRewriter() {
+            @Override
+            public Ast.Stmt visit(Ast.Stmt.Return ast) {
+                return new Ast.Stmt.Return(rewrite(ast.getValue()));
+            }
+        }.visit(source);
+        compare("Tail calls (mutual, 2,000 deep)", input, withoutTailCalls, UnaryOperator.identity());
+    }
+
+    @Test
+    void testCountedLoops() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 100000 DO",
+                "        total = total + i;",
+                "        i = i + 1;",
+                "    END",
+                "    LET j: Integer = 100000;",
+                "    WHILE j > 0 DO",
+                "        total = total - j;",
+                "        j = j - 2;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        UnaryOperator<Ast.Source> uncounted = source -> {
+            new AstScanner() {
+                @Override
+                public Void visit(Ast.Stmt.While ast) {
+                    ast.setCountedLoop(null);
+                    return super.visit(ast);
+                }
+            }.visit(source);
+            return source;
+        };
+        compare("Counted loops (WHILE)", input, uncounted, UnaryOperator.identity());
+    }
+
+    @Test
+    void testSuperinstructions() {
+        String input = String.join(System.lineSeparator(),
+                "DEF half(n: Integer): Integer DO",
+                "    RETURN n / 2;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i != 20000 DO",
+                "        IF i < 10000 DO",
+                "            total = total + 1;",
+                "        ELSE",
+                "            total = total + half(i);",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN half(total);",
+                "END"
+        );
+        compare("Superinstructions", input, source -> {
+            Superinstructions.fuse(source);
+            return source;
+        });
+    }
+
+    @Test
+    void testBinaryOperators() {
+        //Decimal arithmetic is never unboxed, so every operator goes through the operator engine
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Decimal DO",
+                "    LET total: Decimal = 0.0;",
+                "    LET x: Decimal = 1.5;",
+                "    LET i: Integer = 0;",
+                "    WHILE i != 1000 DO",
+                "        total = total + (x * 2.0 - (x + 1.0)) * (x / 3.0 + 0.5);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(Scripts.run(source, RepeatedOperands::new).getValue(), Scripts.run(source).getValue());
+
+        double before = time(source, RepeatedOperands::new);
+        double after = time(source);
+        System.out.printf("Binary operators: %.3f ms -> %.3f ms (%.2fx)%n", before, after, before / after);
+    }
+
+    @Test
+    void testReturns() {
+        //next updates a field, so its calls are not memoized, and none is a tail call
+        String input = String.join(System.lineSeparator(),
+                "LET calls: Integer = 0;",
+                "DEF next(n: Integer): Integer DO",
+                "    calls = calls + 1;",
+                "    RETURN n + 1;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    WHILE i != 100000 DO",
+                "        i = next(i);",
+                "    END",
+                "    RETURN calls;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(BigInteger.valueOf(100000), Scripts.run(source).getValue());
+        System.out.printf("Returns (100,000 calls): %.3f ms%n", time(source));
+    }
+
+    @Test
+    void testNodeCompiler() {
+        String input = String.join(System.lineSeparator(),
+                "LET scale: Decimal = 0.5;",
+                "DEF step(x: Decimal): Decimal DO",
+                "    RETURN x * scale + 1.5;",
+                "END",
+                "DEF main(): Decimal DO",
+                "    LET total: Decimal = 0.0;",
+                "    LET label: String = \"\";",
+                "    LET i: Integer = 0;",
+                "    WHILE i != 5000 DO",
+                "        total = step(total) - 1.0;",
+                "        IF i < 10 DO",
+                "            label = label + i;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(Scripts.run(source).getValue(), new Interpreter(new Scope(null)).execute(source).getValue());
+
+        double before = time(source);
+        double after = time(() -> new Interpreter(new Scope(null)).execute(source));
+        System.out.printf("Node compiler: %.3f ms -> %.3f ms (%.2fx)%n", before, after, before / after);
+    }
+
+    @Test
+    void testBytecode() {
+        String input = String.join(System.lineSeparator(),
+                "LET calls: Integer = 0;",
+                "DEF gcd(a: Integer, b: Integer): Integer DO",
+                "    calls = calls + 1;",
+                "    WHILE b != 0 DO",
+                "        LET t: Integer = b;",
+                "        b = a - a / b * b;",
+                "        a = t;",
+                "    END",
+                "    RETURN a;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 1;",
+                "    WHILE i <= 2000 DO",
+                "        total = total + gcd(i, 360);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total + calls;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Bytecode.Program program = BytecodeCompiler.compile(source);
+        Assertions.assertEquals(Scripts.run(source).getValue(), new Interpreter(new Scope(null)).execute(program).getValue());
+
+        double before = time(source);
+        double after = time(() -> new Interpreter(new Scope(null)).execute(program));
+        System.out.printf("Bytecode: %.3f ms -> %.3f ms (%.2fx)%n", before, after, before / after);
+    }
+
+    static void compare(String name, String input, UnaryOperator<Ast.Source> optimization) {
+        compare(name, input, UnaryOperator.identity(), optimization);
+    }
+
+    /**
+     * Runs the analyzed script after the baseline and optimized
+     * transformations, asserting both return the same value and printing their
+     * timings.
+     */
+    static void compare(String name, String input, UnaryOperator<Ast.Source> baselining, UnaryOperator<Ast.Source> optimization) {
+        Ast.Source baseline = baselining.apply(Scripts.analyze(input));
+        Ast.Source optimized = optimization.apply(Scripts.analyze(input));
+
+        Assertions.assertEquals(Scripts.run(baseline).getValue(), Scripts.run(optimized).getValue());
+
+        double before = time(baseline);
+        double after = time(optimized);
+        System.out.printf("%s: %.3f ms -> %.3f ms (%.2fx)%n", name, before, after, before / after);
+    }
+
+    static double time(Ast.Source source) {
+        return time(source, Interpreter::new);
+    }
+
+    static double time(Ast.Source source, Function<Scope, Interpreter> interpreter) {
+        return time(() -> Scripts.run(source, interpreter));
+    }
+
+    /**
+     * Returns the average time of a run in milliseconds, after warming up.
+     */
+    static double time(Supplier<Environment.PlcObject> run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            run.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+
+    /**
+     * The evaluation of the former string-switch operators on Decimals: the
+     * left operand was evaluated four times (two String checks, the type
+     * check and the operation) and the right three.
+     */
+    private static final class RepeatedOperands extends Interpreter {
+
+        private RepeatedOperands(Scope parent) {
+            super(parent);
+        }
+
+        @Override
+        public Environment.PlcObject visit(Ast.Expr.Binary ast) {
+            for (int i = 0; i < 3; i++) {
+                visit(ast.getLeft());
+            }
+            for (int i = 0; i < 2; i++) {
+                visit(ast.getRight());
+            }
+            return super.visit(ast);
+        }
+
+    }
+
+}
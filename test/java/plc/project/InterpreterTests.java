@@ -0,0 +1,49 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Collections;
+
+/**
+ * Tests of the {@link Interpreter} running analyzed sources, including
+ * several interpreters sharing one source.
+ */
+final class InterpreterTests {
+
+    @Test
+    void testLinksPerInterpreter() {
+        String input = String.join(System.lineSeparator(),
+                "DEF twice(): Integer DO",
+                "    RETURN answer() + answer();",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN twice();",
+                "END"
+        );
+        Scope analysis = new Scope(null);
+        analysis.defineFunction("answer", "answer", Collections.emptyList(), Environment.Type.INTEGER, args -> Environment.NIL);
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(analysis).visit(source);
+
+        Interpreter one = interpreter(BigInteger.ONE);
+        Interpreter ten = interpreter(BigInteger.TEN);
+        //each call site is linked by whichever interpreter reaches it first, which must not leak into the other
+        Assertions.assertEquals(BigInteger.valueOf(2), one.visit(source).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(20), ten.visit(source).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(2), one.visit(source).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(20), ten.visit(source).getValue());
+    }
+
+    /**
+     * Returns an interpreter whose {@code answer} builtin returns the given
+     * value.
+     */
+    private static Interpreter interpreter(BigInteger answer) {
+        Scope scope = new Scope(null);
+        scope.defineFunction("answer", 0, args -> Environment.create(answer));
+        return new Interpreter(scope);
+    }
+
+}
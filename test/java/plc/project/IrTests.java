@@ -0,0 +1,186 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Tests of the SSA form built by the {@link IrBuilder}, the {@link Dominators}
+ * computed on it, and running it with the {@link IrInterpreter}.
+ */
+final class IrTests {
+
+    private static final String DIAMOND = String.join(System.lineSeparator(),
+            "DEF pick(c: Boolean): Integer DO",
+            "    LET x: Integer = 1;",
+            "    IF c DO",
+            "        x = 2;",
+            "    ELSE",
+            "        x = 3;",
+            "    END",
+            "    RETURN x;",
+            "END",
+            "DEF main(): Integer DO",
+            "    RETURN pick(TRUE);",
+            "END"
+    );
+
+    private static final String LOOP = String.join(System.lineSeparator(),
+            "DEF count(n: Integer): Integer DO",
+            "    LET i: Integer = 0;",
+            "    WHILE i < n DO",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN i;",
+            "END",
+            "DEF main(): Integer DO",
+            "    RETURN count(3);",
+            "END"
+    );
+
+    @Test
+    void testIfPhi() {
+        List<Ir.Block> blocks = build(DIAMOND).getBlocks();
+        Ir.Block join = blocks.get(3);
+        Assertions.assertEquals(1, join.getPhis().size());
+        Ir.Phi phi = join.getPhis().get(0);
+        //one operand per predecessor, in the order of the predecessors
+        Assertions.assertEquals(Arrays.asList(blocks.get(1), blocks.get(2)), join.getPredecessors());
+        Assertions.assertEquals(BigInteger.valueOf(2), ((Ir.Constant) phi.getOperand(0)).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(3), ((Ir.Constant) phi.getOperand(1)).getValue());
+        Assertions.assertTrue(blocks.get(1).getPhis().isEmpty());
+        Assertions.assertTrue(blocks.get(2).getPhis().isEmpty());
+    }
+
+    @Test
+    void testWhilePhi() {
+        List<Ir.Block> blocks = build(LOOP).getBlocks();
+        Ir.Block header = blocks.get(1);
+        Assertions.assertEquals(1, header.getPhis().size());
+        Ir.Phi phi = header.getPhis().get(0);
+        Assertions.assertEquals(Arrays.asList(blocks.get(0), blocks.get(2)), header.getPredecessors());
+        Assertions.assertEquals(BigInteger.ZERO, ((Ir.Constant) phi.getOperand(0)).getValue());
+        Assertions.assertTrue(phi.getOperand(1) instanceof Ir.Binary);
+        //the increment reads the phi around the back edge
+        Assertions.assertSame(phi, ((Ir.Binary) phi.getOperand(1)).getOperand(0));
+    }
+
+    @Test
+    void testAndPhi() {
+        String input = String.join(System.lineSeparator(),
+                "DEF both(a: Boolean, b: Boolean): Boolean DO",
+                "    RETURN a AND b;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN 0;",
+                "END"
+        );
+        List<Ir.Block> blocks = build(input).getBlocks();
+        Assertions.assertEquals(3, blocks.size());
+        Ir.Block join = blocks.get(2);
+        Assertions.assertEquals(1, join.getPhis().size());
+        Ir.Phi phi = join.getPhis().get(0);
+        //the left operand decides the result when control comes straight from the entry
+        Assertions.assertEquals(Arrays.asList(blocks.get(0), blocks.get(1)), join.getPredecessors());
+        Assertions.assertEquals(0, ((Ir.Parameter) phi.getOperand(0)).getIndex());
+        Assertions.assertEquals(1, ((Ir.Parameter) phi.getOperand(1)).getIndex());
+    }
+
+    @Test
+    void testTrivialPhisRemoved() {
+        String input = String.join(System.lineSeparator(),
+                "DEF unchanged(c: Boolean, n: Integer): Integer DO",
+                "    LET x: Integer = 1;",
+                "    IF c DO",
+                "        print(x);",
+                "    END",
+                "    LET i: Integer = 0;",
+                "    WHILE i < n DO",
+                "        print(x);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN 0;",
+                "END"
+        );
+        int phis = 0;
+        for (Ir.Block block : build(input).getBlocks()) {
+            phis += block.getPhis().size();
+        }
+        //only i changes in the loop, x reaches every read unchanged
+        Assertions.assertEquals(1, phis);
+    }
+
+    @Test
+    void testDiamondDominators() {
+        Ir.Function function = build(DIAMOND);
+        List<Ir.Block> blocks = function.getBlocks();
+        Dominators dominators = new Dominators(function);
+        Assertions.assertNull(dominators.getImmediateDominator(blocks.get(0)));
+        for (int i = 1; i < 4; i++) {
+            Assertions.assertSame(blocks.get(0), dominators.getImmediateDominator(blocks.get(i)));
+        }
+        Assertions.assertEquals(new HashSet<>(blocks.subList(1, 4)), new HashSet<>(dominators.getChildren(blocks.get(0))));
+        Assertions.assertFalse(dominators.dominates(blocks.get(1), blocks.get(3)));
+        Assertions.assertEquals(Collections.singleton(blocks.get(3)), dominators.getFrontier(blocks.get(1)));
+        Assertions.assertEquals(Collections.singleton(blocks.get(3)), dominators.getFrontier(blocks.get(2)));
+        Assertions.assertTrue(dominators.getFrontier(blocks.get(0)).isEmpty());
+    }
+
+    @Test
+    void testLoopDominators() {
+        Ir.Function function = build(LOOP);
+        List<Ir.Block> blocks = function.getBlocks();
+        Dominators dominators = new Dominators(function);
+        Ir.Block header = blocks.get(1);
+        Assertions.assertSame(blocks.get(0), dominators.getImmediateDominator(header));
+        Assertions.assertSame(header, dominators.getImmediateDominator(blocks.get(2)));
+        Assertions.assertSame(header, dominators.getImmediateDominator(blocks.get(3)));
+        Assertions.assertTrue(dominators.dominates(header, blocks.get(2)));
+        Assertions.assertFalse(dominators.dominates(blocks.get(2), header));
+        //the back edge puts the header in its own frontier and in the body's
+        Assertions.assertEquals(Collections.singleton(header), dominators.getFrontier(header));
+        Assertions.assertEquals(Collections.singleton(header), dominators.getFrontier(blocks.get(2)));
+    }
+
+    @Test
+    void testInterpreterAgrees() {
+        String input = String.join(System.lineSeparator(),
+                "LET base: Integer = 10;",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO",
+                "        RETURN n;",
+                "    END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET total: Integer = base;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 10 AND total < 1000 DO",
+                "        IF i > 5 OR total == base DO",
+                "            total = total + fib(i);",
+                "        ELSE",
+                "            total = total * 2;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Environment.PlcObject expected = Scripts.run(source);
+        Assertions.assertEquals(expected.getValue(), new Interpreter(new Scope(null)).execute(IrBuilder.build(source)).getValue());
+    }
+
+    private static Ir.Function build(String input) {
+        return IrBuilder.build(Scripts.analyze(input).getMethods().get(0));
+    }
+
+}
@@ -0,0 +1,98 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Tests that {@link LoopInvariantMotion} never evaluates a hoisted expression
+ * the original loop would not have evaluated.
+ */
+final class LoopInvariantMotionTests {
+
+    @Test
+    void testZeroTripLoop() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    WHILE FALSE DO",
+                "        print(x + 1);",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = new LoopInvariantMotion().visit(Scripts.analyze(input));
+        List<Ast.Stmt> statements = source.getMethods().get(0).getStatements();
+        //x may be NIL, so x + 1 is only evaluated behind the condition
+        Assertions.assertTrue(statements.get(1) instanceof Ast.Stmt.If);
+        Assertions.assertEquals(BigInteger.ZERO, Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testGuardedExpression() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 3 DO",
+                "        IF i > 5 DO",
+                "            print(x + 1);",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        );
+        Ast.Source source = new LoopInvariantMotion().visit(Scripts.analyze(input));
+        Assertions.assertEquals(BigInteger.valueOf(3), Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testInvertedLoopRuns() {
+        String input = String.join(System.lineSeparator(),
+                "DEF scale(x: Integer): Integer DO",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 3 DO",
+                "        total = total + x * 2;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN scale(7);",
+                "END"
+        );
+        Ast.Source source = new LoopInvariantMotion().visit(Scripts.analyze(input));
+        Assertions.assertEquals(BigInteger.valueOf(42), Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testNonThrowingExpressionHoisted() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET limit: Integer = 10;",
+                "    LET total: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < limit DO",
+                "        IF i > 100 DO",
+                "            total = total + limit * 2;",
+                "        END",
+                "        total = total + limit * 3;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN total;",
+                "END"
+        );
+        Ast.Source source = new LoopInvariantMotion().visit(Scripts.analyze(input));
+        List<Ast.Stmt> statements = source.getMethods().get(0).getStatements();
+        //both products are declared before the loop, which needs no inversion
+        Assertions.assertTrue(statements.get(3) instanceof Ast.Stmt.Declaration);
+        Assertions.assertTrue(statements.get(4) instanceof Ast.Stmt.Declaration);
+        Assertions.assertTrue(statements.get(5) instanceof Ast.Stmt.While);
+        Assertions.assertEquals(BigInteger.valueOf(30), Scripts.run(source).getValue());
+    }
+
+}
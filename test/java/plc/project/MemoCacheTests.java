@@ -0,0 +1,108 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests of the entries a {@link MemoCache} keeps, evicts and refuses, and of
+ * its hit accounting.
+ */
+final class MemoCacheTests {
+
+    private static final Ast.Method METHOD = Scripts.analyze("DEF main(): Integer DO RETURN 0; END").getMethods().get(0);
+
+    private int computed = 0;
+
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        MemoCache cache = new MemoCache(2);
+        invoke(cache, 1);
+        invoke(cache, 2);
+        //a hit makes 1 the most recently used, leaving 2 to be evicted
+        invoke(cache, 1);
+        invoke(cache, 3);
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertEquals(2, cache.getSize());
+        Assertions.assertEquals(3, computed);
+
+        invoke(cache, 1);
+        invoke(cache, 3);
+        Assertions.assertEquals(3, computed);
+        invoke(cache, 2);
+        Assertions.assertEquals(4, computed);
+        Assertions.assertEquals(2, cache.getEvictions());
+        Assertions.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void testHitRate() {
+        MemoCache cache = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+        Assertions.assertEquals(0, cache.getHitRate());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(BigInteger.valueOf(7), invoke(cache, 7).getValue());
+        }
+        Assertions.assertEquals(3, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertEquals(0.75, cache.getHitRate());
+        Assertions.assertEquals(1, computed);
+    }
+
+    @Test
+    void testUncacheableArgument() {
+        MemoCache cache = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+        List<Environment.PlcObject> args = Collections.singletonList(Environment.create(new ArrayList<>()));
+        for (int i = 0; i < 2; i++) {
+            cache.invoke(METHOD, args, a -> compute(BigInteger.ZERO));
+        }
+        //a mutable argument is neither a hit nor a miss
+        Assertions.assertEquals(2, computed);
+        Assertions.assertEquals(0, cache.getSize());
+        Assertions.assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    void testNilArgument() {
+        MemoCache cache = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+        List<Environment.PlcObject> args = Collections.singletonList(Environment.NIL);
+        cache.invoke(METHOD, args, a -> compute(BigInteger.ZERO));
+        cache.invoke(METHOD, args, a -> compute(BigInteger.ZERO));
+        Assertions.assertEquals(1, computed);
+        Assertions.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testZeroCapacity() {
+        MemoCache cache = new MemoCache(0);
+        invoke(cache, 1);
+        invoke(cache, 1);
+        Assertions.assertEquals(2, computed);
+        Assertions.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testFailureNotCached() {
+        MemoCache cache = new MemoCache(MemoCache.DEFAULT_CAPACITY);
+        List<Environment.PlcObject> args = Collections.singletonList(Environment.create(BigInteger.ONE));
+        Assertions.assertThrows(ArithmeticException.class, () -> cache.invoke(METHOD, args, a -> {
+            throw new ArithmeticException();
+        }));
+        Assertions.assertEquals(0, cache.getSize());
+        Assertions.assertEquals(BigInteger.ONE, cache.invoke(METHOD, args, a -> compute(BigInteger.ONE)).getValue());
+    }
+
+    private Environment.PlcObject invoke(MemoCache cache, int argument) {
+        BigInteger value = BigInteger.valueOf(argument);
+        return cache.invoke(METHOD, Collections.singletonList(Environment.create(value)), a -> compute(value));
+    }
+
+    private Environment.PlcObject compute(BigInteger value) {
+        computed++;
+        return Environment.create(value);
+    }
+
+}
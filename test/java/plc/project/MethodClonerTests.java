@@ -0,0 +1,113 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Tests of cloning methods with general parameters for the argument types
+ * of their call sites with the {@link MethodCloner}.
+ */
+final class MethodClonerTests {
+
+    private static final String INPUT = String.join(System.lineSeparator(),
+            "DEF identity(x: Any): Any DO",
+            "    RETURN x;",
+            "END",
+            "DEF main(): Integer DO",
+            "    identity(1);",
+            "    identity(2);",
+            "    identity(\"a\");",
+            "    RETURN 0;",
+            "END"
+    );
+
+    @Test
+    void testCloning() {
+        Ast.Source specialized = MethodCloner.specialize(analyze(INPUT, new Scope(null)), () -> new Analyzer(new Scope(null)));
+        Assertions.assertEquals(Arrays.asList("identity", "main", "identity$Integer", "identity$String"), names(specialized));
+        Assertions.assertEquals(BigInteger.ZERO, Scripts.run(specialized).getValue());
+    }
+
+    @Test
+    void testBudget() {
+        Ast.Source specialized = MethodCloner.specialize(analyze(INPUT, new Scope(null)), () -> new Analyzer(new Scope(null)), 1);
+        //the signature with the most call sites is cloned first
+        Assertions.assertEquals(Arrays.asList("identity", "main", "identity$Integer"), names(specialized));
+    }
+
+    @Test
+    void testRejection() {
+        String input = String.join(System.lineSeparator(),
+                "DEF reset(x: Any): Any DO",
+                "    x = \"text\";",
+                "    RETURN x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    reset(1);",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = analyze(input, new Scope(null));
+        //the body assigns a String to the parameter, which does not type check once it is an Integer
+        Assertions.assertSame(source, MethodCloner.specialize(source, () -> new Analyzer(new Scope(null))));
+    }
+
+    @Test
+    void testHostBuiltins() {
+        String input = String.join(System.lineSeparator(),
+                "DEF report(x: Any): Any DO",
+                "    RETURN log(x);",
+                "END",
+                "DEF main(): Integer DO",
+                "    report(1);",
+                "    RETURN 0;",
+                "END"
+        );
+        Supplier<Analyzer> analyzers = () -> new Analyzer(host());
+        Ast.Source specialized = MethodCloner.specialize(analyze(input, host()), analyzers);
+        Assertions.assertEquals(Arrays.asList("report", "main", "report$Integer"), names(specialized));
+    }
+
+    @Test
+    void testAnalyzersMissingBuiltins() {
+        String input = String.join(System.lineSeparator(),
+                "DEF report(x: Any): Any DO",
+                "    RETURN log(x);",
+                "END",
+                "DEF main(): Integer DO",
+                "    report(1);",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = analyze(input, host());
+        //the analyzers cannot resolve log at all, which is not a rejection of the clone
+        Assertions.assertThrows(RuntimeException.class, () -> MethodCloner.specialize(source, () -> new Analyzer(new Scope(null))));
+    }
+
+    private static Scope host() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("log", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.ANY, args -> args.get(0));
+        return scope;
+    }
+
+    private static Ast.Source analyze(String input, Scope parent) {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(parent).visit(source);
+        return source;
+    }
+
+    private static List<String> names(Ast.Source source) {
+        List<String> names = new ArrayList<>();
+        for (Ast.Method method : source.getMethods()) {
+            names.add(method.getName());
+        }
+        return names;
+    }
+
+}
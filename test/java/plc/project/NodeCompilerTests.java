@@ -0,0 +1,73 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Tests of the self-specializing nodes of the {@link NodeCompiler} when the
+ * operands seen at a site change type, compared with the {@link Interpreter}.
+ */
+final class NodeCompilerTests {
+
+    @Test
+    void testAnyOperandChangesType() {
+        String input = String.join(System.lineSeparator(),
+                "DEF join(x: Any, s: String): String DO",
+                "    RETURN x + s;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET count: Integer = 0;",
+                "    IF join(1, \"a\") == \"1a\" DO",
+                "        count = count + 1;",
+                "    END",
+                "    IF join(\"b\", \"a\") == \"ba\" DO",
+                "        count = count + 10;",
+                "    END",
+                "    IF join(2, \"a\") == \"2a\" DO",
+                "        count = count + 100;",
+                "    END",
+                "    RETURN count;",
+                "END"
+        );
+        test(input, BigInteger.valueOf(111));
+    }
+
+    @Test
+    void testGeneralized() {
+        String input = String.join(System.lineSeparator(),
+                "DEF same(a: Integer, b: Integer): Boolean DO",
+                "    RETURN a == b;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET n: Integer;",
+                "    LET count: Integer = 0;",
+                "    IF same(1, 1) DO",
+                "        count = count + 1;",
+                "    END",
+                //the NIL operand replaces the Integer node with the generic one
+                "    IF same(1, n) DO",
+                "        count = count + 10;",
+                "    END",
+                //which must be linked into the parent for the next call
+                "    IF same(2, 2) DO",
+                "        count = count + 100;",
+                "    END",
+                "    IF same(2, 3) DO",
+                "        count = count + 1000;",
+                "    END",
+                "    RETURN count;",
+                "END"
+        );
+        test(input, BigInteger.valueOf(101));
+    }
+
+    private static void test(String input, Object expected) {
+
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(expected, Scripts.run(source).getValue());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).execute(source).getValue());
+    }
+
+}
@@ -0,0 +1,107 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests of the expressions and declarations the {@link NullabilityAnalyzer}
+ * proves never hold {@code NIL}.
+ */
+final class NullabilityAnalyzerTests {
+
+    @Test
+    void testDeclarationWithoutValue() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    LET y: Integer = 1;",
+                "    RETURN x + y;",
+                "END"
+        );
+        List<Ast.Stmt> statements = analyze(input).getMethods().get(0).getStatements();
+        Assertions.assertFalse(((Ast.Stmt.Declaration) statements.get(0)).isNonNil());
+        Assertions.assertTrue(((Ast.Stmt.Declaration) statements.get(1)).isNonNil());
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) ((Ast.Stmt.Return) statements.get(2)).getValue();
+        Assertions.assertFalse(sum.getLeft().isNonNil());
+        Assertions.assertTrue(sum.getRight().isNonNil());
+    }
+
+    @Test
+    void testNilParameter() {
+        String input = String.join(System.lineSeparator(),
+                "LET limit: Integer;",
+                "DEF id(x: Integer): Integer DO",
+                "    RETURN x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN id(limit) + id(1);",
+                "END"
+        );
+        Ast.Source source = analyze(input);
+        //id is analyzed before the call passing NIL is seen, so this takes a second round
+        Ast.Expr parameter = ((Ast.Stmt.Return) source.getMethods().get(0).getStatements().get(0)).getValue();
+        Assertions.assertFalse(parameter.isNonNil());
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) ((Ast.Stmt.Return) source.getMethods().get(1).getStatements().get(0)).getValue();
+        //which makes every call of id possibly NIL, whatever its argument
+        Assertions.assertFalse(sum.getRight().isNonNil());
+        Assertions.assertTrue(((Ast.Expr.Function) sum.getRight()).getArguments().get(0).isNonNil());
+    }
+
+    @Test
+    void testNilField() {
+        String input = String.join(System.lineSeparator(),
+                "LET cache: Integer = 0;",
+                "DEF read(): Integer DO",
+                "    RETURN cache;",
+                "END",
+                "DEF clear(): Integer DO",
+                "    LET none: Integer;",
+                "    cache = none;",
+                "    RETURN 0;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN read();",
+                "END"
+        );
+        Ast.Source source = analyze(input);
+        Ast.Expr read = ((Ast.Stmt.Return) source.getMethods().get(0).getStatements().get(0)).getValue();
+        Assertions.assertFalse(read.isNonNil());
+    }
+
+    @Test
+    void testNilInLaterIteration() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET none: Integer;",
+                "    LET x: Integer = 1;",
+                "    LET y: Integer = 1;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 3 DO",
+                "        print(x);",
+                "        x = y;",
+                "        y = none;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        );
+        List<Ast.Stmt> statements = analyze(input).getMethods().get(0).getStatements();
+        Ast.Stmt.While loop = (Ast.Stmt.While) statements.get(4);
+        //x only becomes NIL on the second iteration and is read as NIL on the third
+        Ast.Expr.Function print = (Ast.Expr.Function) ((Ast.Stmt.Expression) loop.getStatements().get(0)).getExpression();
+        Assertions.assertFalse(print.getArguments().get(0).isNonNil());
+        Assertions.assertFalse(((Ast.Stmt.Declaration) statements.get(1)).isNonNil());
+        Assertions.assertFalse(((Ast.Stmt.Declaration) statements.get(2)).isNonNil());
+        Assertions.assertTrue(((Ast.Stmt.Declaration) statements.get(3)).isNonNil());
+        Assertions.assertTrue(((Ast.Expr.Binary) loop.getCondition()).getLeft().isNonNil());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source source = Scripts.analyze(input);
+        NullabilityAnalyzer.analyze(source);
+        return source;
+    }
+
+}
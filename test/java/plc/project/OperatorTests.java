@@ -0,0 +1,76 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Tests of the {@link Operator} table and of the Interpreter evaluating
+ * binary operators through it.
+ */
+final class OperatorTests {
+
+    @Test
+    void testConcatenationOrder() {
+        Assertions.assertEquals("1a", Operator.ADD.apply(BigInteger.ONE, "a"));
+        Assertions.assertEquals("a1", Operator.ADD.apply("a", BigInteger.ONE));
+    }
+
+    @Test
+    void testInterpretedConcatenationOrder() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    IF 1 + \"a\" == \"1a\" AND \"a\" + 1 == \"a1\" DO",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Assertions.assertEquals(BigInteger.ONE, Scripts.run(Scripts.analyze(input)).getValue());
+    }
+
+    @Test
+    void testOperandsEvaluatedOnce() {
+        String input = String.join(System.lineSeparator(),
+                "LET calls: Integer = 0;",
+                "DEF text(): String DO",
+                "    calls = calls + 1;",
+                "    RETURN \"a\";",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET s: String = text() + 1;",
+                "    RETURN calls;",
+                "END"
+        );
+        Assertions.assertEquals(BigInteger.ONE, Scripts.run(Scripts.analyze(input)).getValue());
+    }
+
+    @Test
+    void testShortCircuit() {
+        //each operand runs once, and the right of AND/OR only when the left does not decide the result
+        String input = String.join(System.lineSeparator(),
+                "LET count: Integer = 0;",
+                "DEF tick(): Integer DO",
+                "    count = count + 1;",
+                "    RETURN 1;",
+                "END",
+                "DEF yes(): Boolean DO",
+                "    count = count + 10;",
+                "    RETURN TRUE;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET sum: Integer = tick() + tick() * tick();",
+                "    IF FALSE AND yes() DO",
+                "        count = count + 100;",
+                "    END",
+                "    IF TRUE OR yes() DO",
+                "        count = count + 1000;",
+                "    END",
+                "    RETURN count;",
+                "END"
+        );
+        Assertions.assertEquals(BigInteger.valueOf(1003), Scripts.run(Scripts.analyze(input)).getValue());
+    }
+
+}
@@ -0,0 +1,103 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that analyzing the method bodies of a large source on the fork-join
+ * pool annotates it exactly like analyzing them one at a time.
+ */
+final class ParallelAnalyzerTests {
+
+    //above the Analyzer's threshold for analyzing bodies in parallel, spanning several leaf tasks
+    private static final int METHODS = 300;
+
+    @Test
+    void testSameAnnotations() {
+        String input = source(-1, -1);
+        Ast.Source parallel = parse(input);
+        new Analyzer(new Scope(null)).visit(parallel);
+
+        //main calls only f0, which calls only f1, and so on, so each wave is one body analyzed on this thread
+        Ast.Source sequential = parse(input);
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        analyzer.setDemandDriven(true);
+        analyzer.visit(sequential);
+        Assertions.assertTrue(analyzer.getDeferred().isEmpty());
+
+        for (int i = 0; i < parallel.getMethods().size(); i++) {
+            Assertions.assertEquals(annotations(sequential.getMethods().get(i)), annotations(parallel.getMethods().get(i)));
+        }
+    }
+
+    @Test
+    void testErrorsInSourceOrder() {
+        //the errors are in bodies analyzed by different leaf tasks
+        Ast.Source source = parse(source(10, 250));
+        RuntimeException error = Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(new Scope(null)).visit(source));
+        Assertions.assertTrue(error.getMessage().contains("Boolean and Integer"), error.getMessage());
+    }
+
+    /**
+     * Returns a chain of methods where f{@code early} adds a Boolean to an
+     * Integer and f{@code late} an Integer to a Boolean (-1 for neither).
+     */
+    private static String source(int early, int late) {
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < METHODS; i++) {
+            String value = i == early ? "TRUE + n" : i == late ? "n + TRUE" : "n + " + i;
+            lines.add("DEF f" + i + "(n: Integer): Integer DO");
+            lines.add("    LET x: Integer = " + value + ";");
+            lines.add("    LET s: String = \"f" + i + "\";");
+            lines.add("    IF n > 0 DO");
+            lines.add("        LET y: Integer = x * 2;");
+            lines.add("        RETURN f" + i + "(n - 1);");
+            lines.add("    END");
+            lines.add(i + 1 < METHODS ? "    RETURN f" + (i + 1) + "(x);" : "    RETURN x;");
+            lines.add("END");
+        }
+        lines.add("DEF main(): Integer DO");
+        lines.add("    RETURN f0(1);");
+        lines.add("END");
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    private static Ast.Source parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseSource();
+    }
+
+    /**
+     * Returns the slots, tail-call marks and representations the Analyzer
+     * set in a method, in source order.
+     */
+    private static List<String> annotations(Ast.Method method) {
+
+        List<String> annotations = new ArrayList<>();
+        annotations.add(method.getName() + " frame " + method.getFrameSize());
+        new AstScanner() {
+            @Override
+            public Void visit(Ast.Stmt.Declaration ast) {
+                annotations.add("declaration " + ast.getName() + " slot " + ast.getSlot() + " " + ast.getRepresentation());
+                return super.visit(ast);
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Access ast) {
+                annotations.add("access " + ast.getName() + " depth " + ast.getDepth() + " slot " + ast.getSlot() + " " + ast.getRepresentation());
+                return super.visit(ast);
+            }
+
+            @Override
+            public Void visit(Ast.Expr.Function ast) {
+                annotations.add("call " + ast.getName() + " tail " + ast.isTailCall() + " " + ast.getRepresentation());
+                return super.visit(ast);
+            }
+        }.visit(method);
+        return annotations;
+    }
+
+}
@@ -34,15 +34,34 @@ final class ParserTests {
                 ),
                 Arguments.of("Field",
                         Arrays.asList(
-                                //LET name = expr;
+                                //LET name: Type = expr;
                                 new Token(Token.Type.IDENTIFIER, "LET", 0),
                                 new Token(Token.Type.IDENTIFIER, "name", 4),
-                                new Token(Token.Type.OPERATOR, "=", 9),
-                                new Token(Token.Type.IDENTIFIER, "expr", 11),
-                                new Token(Token.Type.OPERATOR, ";", 15)
+                                new Token(Token.Type.OPERATOR, ":", 8),
+                                new Token(Token.Type.IDENTIFIER, "Type", 10),
+                                new Token(Token.Type.OPERATOR, "=", 15),
+                                new Token(Token.Type.IDENTIFIER, "expr", 17),
+                                new Token(Token.Type.OPERATOR, ";", 21)
+                        ),
+                        new Ast.Source(
+                                Arrays.asList(new Ast.Field("name", "Type", false, Optional.of(new Ast.Expr.Access(Optional.empty(), "expr")))),
+                                Arrays.asList()
+                        )
+                ),
+                Arguments.of("Constant Field",
+                        Arrays.asList(
+                                //LET CONST name: Type = expr;
+                                new Token(Token.Type.IDENTIFIER, "LET", 0),
+                                new Token(Token.Type.IDENTIFIER, "CONST", 4),
+                                new Token(Token.Type.IDENTIFIER, "name", 10),
+                                new Token(Token.Type.OPERATOR, ":", 14),
+                                new Token(Token.Type.IDENTIFIER, "Type", 16),
+                                new Token(Token.Type.OPERATOR, "=", 21),
+                                new Token(Token.Type.IDENTIFIER, "expr", 23),
+                                new Token(Token.Type.OPERATOR, ";", 27)
                         ),
                         new Ast.Source(
-                                Arrays.asList(new Ast.Field("name", Optional.of(new Ast.Expr.Access(Optional.empty(), "expr")))),
+                                Arrays.asList(new Ast.Field("name", "Type", true, Optional.of(new Ast.Expr.Access(Optional.empty(), "expr")))),
                                 Arrays.asList()
                         )
                 ),
@@ -470,7 +489,7 @@ final class ParserTests {
     @Test
     void testExample1() {
         List<Token> input = Arrays.asList(
-                /* LET first = 1;
+                /* LET first: Integer = 1;
                  * DEF main() DO
                  *     WHILE first != 10 DO
                  *         print(first);
@@ -478,44 +497,46 @@ final class ParserTests {
                  *     END
                  * END
                  */
-                //LET first = 1;
+                //LET first: Integer = 1;
                 new Token(Token.Type.IDENTIFIER, "LET", 0),
                 new Token(Token.Type.IDENTIFIER, "first", 4),
-                new Token(Token.Type.OPERATOR, "=", 10),
-                new Token(Token.Type.INTEGER, "1", 12),
-                new Token(Token.Type.OPERATOR, ";", 13),
+                new Token(Token.Type.OPERATOR, ":", 9),
+                new Token(Token.Type.IDENTIFIER, "Integer", 11),
+                new Token(Token.Type.OPERATOR, "=", 19),
+                new Token(Token.Type.INTEGER, "1", 21),
+                new Token(Token.Type.OPERATOR, ";", 22),
                 //DEF main() DO
-                new Token(Token.Type.IDENTIFIER, "DEF", 15),
-                new Token(Token.Type.IDENTIFIER, "main", 19),
-                new Token(Token.Type.OPERATOR, "(", 23),
-                new Token(Token.Type.OPERATOR, ")", 24),
-                new Token(Token.Type.IDENTIFIER, "DO", 26),
+                new Token(Token.Type.IDENTIFIER, "DEF", 24),
+                new Token(Token.Type.IDENTIFIER, "main", 28),
+                new Token(Token.Type.OPERATOR, "(", 32),
+                new Token(Token.Type.OPERATOR, ")", 33),
+                new Token(Token.Type.IDENTIFIER, "DO", 35),
                 //    WHILE first != 10 DO
-                new Token(Token.Type.IDENTIFIER, "WHILE", 33),
-                new Token(Token.Type.IDENTIFIER, "first", 39),
-                new Token(Token.Type.OPERATOR, "!=", 45),
-                new Token(Token.Type.INTEGER, "10", 48),
-                new Token(Token.Type.IDENTIFIER, "DO", 51),
+                new Token(Token.Type.IDENTIFIER, "WHILE", 42),
+                new Token(Token.Type.IDENTIFIER, "first", 48),
+                new Token(Token.Type.OPERATOR, "!=", 54),
+                new Token(Token.Type.INTEGER, "10", 57),
+                new Token(Token.Type.IDENTIFIER, "DO", 60),
                 //        print(first);
-                new Token(Token.Type.IDENTIFIER, "print", 62),
-                new Token(Token.Type.OPERATOR, "(", 67),
-                new Token(Token.Type.IDENTIFIER, "first", 68),
-                new Token(Token.Type.OPERATOR, ")", 73),
-                new Token(Token.Type.OPERATOR, ";", 74),
+                new Token(Token.Type.IDENTIFIER, "print", 71),
+                new Token(Token.Type.OPERATOR, "(", 76),
+                new Token(Token.Type.IDENTIFIER, "first", 77),
+                new Token(Token.Type.OPERATOR, ")", 82),
+                new Token(Token.Type.OPERATOR, ";", 83),
                 //        first = first + 1;
-                new Token(Token.Type.IDENTIFIER, "first", 84),
-                new Token(Token.Type.OPERATOR, "=", 90),
-                new Token(Token.Type.IDENTIFIER, "first", 92),
-                new Token(Token.Type.OPERATOR, "+", 98),
-                new Token(Token.Type.INTEGER, "1", 100),
-                new Token(Token.Type.OPERATOR, ";", 101),
+                new Token(Token.Type.IDENTIFIER, "first", 93),
+                new Token(Token.Type.OPERATOR, "=", 99),
+                new Token(Token.Type.IDENTIFIER, "first", 101),
+                new Token(Token.Type.OPERATOR, "+", 107),
+                new Token(Token.Type.INTEGER, "1", 109),
+                new Token(Token.Type.OPERATOR, ";", 110),
                 //    END
-                new Token(Token.Type.IDENTIFIER, "END", 107),
+                new Token(Token.Type.IDENTIFIER, "END", 116),
                 //END
-                new Token(Token.Type.IDENTIFIER, "END", 111)
+                new Token(Token.Type.IDENTIFIER, "END", 120)
         );
         Ast.Source expected = new Ast.Source(
-                Arrays.asList(new Ast.Field("first", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))),
+                Arrays.asList(new Ast.Field("first", "Integer", false, Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))),
                 Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
                         new Ast.Stmt.While(
                                 new Ast.Expr.Binary("!=",
@@ -0,0 +1,170 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests of specializing sources for known field values with the
+ * {@link PartialEvaluator}.
+ */
+final class PartialEvaluatorTests {
+
+    @Test
+    void testFolding() {
+        String input = String.join(System.lineSeparator(),
+                "LET scale: Integer;",
+                "DEF main(): Integer DO",
+                "    RETURN scale * 2 + 1;",
+                "END"
+        );
+        Ast.Source source = specialize(input, "scale", BigInteger.valueOf(20));
+        Ast.Expr value = ((Ast.Stmt.Return) statements(source).get(0)).getValue();
+        Assertions.assertTrue(value instanceof Ast.Expr.Literal);
+        Assertions.assertEquals(BigInteger.valueOf(41), ((Ast.Expr.Literal) value).getLiteral());
+    }
+
+    @Test
+    void testPureCallFolded() {
+        String input = String.join(System.lineSeparator(),
+                "LET n: Integer;",
+                "DEF square(x: Integer): Integer DO",
+                "    RETURN x * x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN square(n);",
+                "END"
+        );
+        Ast.Source source = specialize(input, "n", BigInteger.valueOf(12));
+        Ast.Expr value = ((Ast.Stmt.Return) source.getMethods().get(1).getStatements().get(0)).getValue();
+        Assertions.assertEquals(BigInteger.valueOf(144), ((Ast.Expr.Literal) value).getLiteral());
+    }
+
+    @Test
+    void testIfResolved() {
+        String input = String.join(System.lineSeparator(),
+                "LET debug: Boolean;",
+                "DEF main(): Integer DO",
+                "    IF debug DO",
+                "        print(\"debug\");",
+                "    ELSE",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        List<Ast.Stmt> statements = statements(specialize(input, "debug", false));
+        Assertions.assertEquals(2, statements.size());
+        Assertions.assertEquals(BigInteger.ONE, ((Ast.Expr.Literal) ((Ast.Stmt.Return) statements.get(0)).getValue()).getLiteral());
+    }
+
+    @Test
+    void testIfWithDeclarationsKeptNested() {
+        String input = String.join(System.lineSeparator(),
+                "LET debug: Boolean;",
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 0;",
+                "    IF debug DO",
+                "        LET x: Integer = 1;",
+                "        total = total + x;",
+                "    END",
+                "    LET x: Integer = 10;",
+                "    RETURN total + x;",
+                "END"
+        );
+        Ast.Source source = specialize(input, "debug", true);
+        List<Ast.Stmt> statements = statements(source);
+        //splicing the branch would declare x twice in the generated method
+        Assertions.assertEquals(4, statements.size());
+        Ast.Stmt.If block = (Ast.Stmt.If) statements.get(1);
+        Assertions.assertEquals(Boolean.TRUE, ((Ast.Expr.Literal) block.getCondition()).getLiteral());
+        Assertions.assertEquals(2, block.getThenStatements().size());
+        Assertions.assertTrue(block.getElseStatements().isEmpty());
+        Assertions.assertEquals(BigInteger.valueOf(11), Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testWhileFalseRemoved() {
+        String input = String.join(System.lineSeparator(),
+                "LET verbose: Boolean;",
+                "DEF main(): Integer DO",
+                "    WHILE verbose DO",
+                "        print(\"verbose\");",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        List<Ast.Stmt> statements = statements(specialize(input, "verbose", false));
+        Assertions.assertEquals(1, statements.size());
+        Assertions.assertTrue(statements.get(0) instanceof Ast.Stmt.Return);
+    }
+
+    @Test
+    void testUnknownField() {
+        Ast.Source source = Scripts.analyze("DEF main(): Integer DO RETURN 0; END");
+        Assertions.assertThrows(RuntimeException.class,
+                () -> PartialEvaluator.specialize(source, Collections.singletonMap("missing", BigInteger.ONE)));
+    }
+
+    @Test
+    void testIllTypedField() {
+        String input = String.join(System.lineSeparator(),
+                "LET scale: Integer;",
+                "DEF main(): Integer DO",
+                "    RETURN scale;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertThrows(RuntimeException.class,
+                () -> PartialEvaluator.specialize(source, Collections.singletonMap("scale", "twenty")));
+    }
+
+    @Test
+    void testNonTerminatingCallLeftInPlace() {
+        String input = String.join(System.lineSeparator(),
+                "LET n: Integer;",
+                "DEF spin(x: Integer): Integer DO",
+                "    WHILE TRUE DO",
+                "    END",
+                "    RETURN x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN spin(n);",
+                "END"
+        );
+        Ast.Source source = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> specialize(input, "n", BigInteger.ONE));
+        Ast.Expr value = ((Ast.Stmt.Return) source.getMethods().get(1).getStatements().get(0)).getValue();
+        Assertions.assertTrue(value instanceof Ast.Expr.Function);
+    }
+
+    @Test
+    void testUnboundedRecursionLeftInPlace() {
+        String input = String.join(System.lineSeparator(),
+                "LET n: Integer;",
+                "DEF down(x: Integer): Integer DO",
+                "    RETURN down(x + 1) + 1;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN down(n);",
+                "END"
+        );
+        Ast.Source source = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> specialize(input, "n", BigInteger.ONE));
+        Ast.Expr value = ((Ast.Stmt.Return) source.getMethods().get(1).getStatements().get(0)).getValue();
+        Assertions.assertTrue(value instanceof Ast.Expr.Function);
+    }
+
+    private static Ast.Source specialize(String input, String field, Object value) {
+        return PartialEvaluator.specialize(Scripts.analyze(input), Collections.singletonMap(field, value));
+    }
+
+    private static List<Ast.Stmt> statements(Ast.Source source) {
+        return source.getMethods().get(source.getMethods().size() - 1).getStatements();
+    }
+
+}
@@ -0,0 +1,81 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests of the warnings reported by the {@link PerformanceLinter}, including
+ * their token indices after a rewriting pass.
+ */
+final class PerformanceLinterTests {
+
+    private static final String CONCATENATION = String.join(System.lineSeparator(),
+            "DEF main(): String DO",
+            "    LET s: String = \"\";",
+            "    LET i: Integer = 0;",
+            "    WHILE i < 10 DO",
+            "        s = s + \"x\";",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN s;",
+            "END"
+    );
+
+    @Test
+    void testSelfCallInEachBranch() {
+        String input = String.join(System.lineSeparator(),
+                "DEF f(n: Integer): Integer DO",
+                "    print(n);",
+                "    IF n < 2 DO",
+                "        RETURN f(n - 1);",
+                "    ELSE",
+                "        RETURN f(n - 2);",
+                "    END",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN f(5);",
+                "END"
+        );
+        //only one branch runs, so each call makes a single recursive call
+        Assertions.assertTrue(PerformanceLinter.lint(Scripts.analyze(input)).isEmpty());
+    }
+
+    @Test
+    void testExponentialRecursion() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    RETURN f(5);",
+                "END",
+                "DEF f(n: Integer): Integer DO",
+                "    print(n);",
+                "    IF n < 2 DO",
+                "        RETURN n;",
+                "    END",
+                "    RETURN f(n - 1) + f(n - 2);",
+                "END"
+        );
+        List<PerformanceLinter.Warning> warnings = PerformanceLinter.lint(Scripts.analyze(input));
+        Assertions.assertEquals(1, warnings.size());
+        Assertions.assertEquals(PerformanceLinter.CostClass.EXPONENTIAL, warnings.get(0).getCost());
+        Assertions.assertEquals(input.indexOf("DEF f"), warnings.get(0).getIndex());
+    }
+
+    @Test
+    void testConcatenationInLoop() {
+        List<PerformanceLinter.Warning> warnings = PerformanceLinter.lint(Scripts.analyze(CONCATENATION));
+        Assertions.assertEquals(1, warnings.size());
+        Assertions.assertEquals(PerformanceLinter.CostClass.QUADRATIC, warnings.get(0).getCost());
+        Assertions.assertEquals(CONCATENATION.indexOf("s = s"), warnings.get(0).getIndex());
+    }
+
+    @Test
+    void testIndexAfterRewrite() {
+        Ast.Source source = new LoopInvariantMotion().visit(Scripts.analyze(CONCATENATION));
+        List<PerformanceLinter.Warning> warnings = PerformanceLinter.lint(source);
+        Assertions.assertEquals(1, warnings.size());
+        Assertions.assertEquals(CONCATENATION.indexOf("s = s"), warnings.get(0).getIndex());
+    }
+
+}
@@ -0,0 +1,128 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests of the counts a {@link Profile} records and of reading it back from a
+ * file for the same source.
+ */
+final class ProfileTests {
+
+    private static final String INPUT = String.join(System.lineSeparator(),
+            "DEF half(n: Integer): Integer DO",
+            "    RETURN n / 2;",
+            "END",
+            "DEF main(): Integer DO",
+            "    LET i: Integer = 0;",
+            "    LET evens: Integer = 0;",
+            "    WHILE i < 10 DO",
+            "        IF half(i) * 2 == i DO",
+            "            evens = evens + 1;",
+            "        END",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN evens;",
+            "END"
+    );
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordedCounts() {
+        Ast.Source source = Scripts.analyze(INPUT);
+        Profile profile = profile(source);
+        Assertions.assertEquals(5, profile.getThenCount(condition(source)));
+        Assertions.assertEquals(5, profile.getElseCount(condition(source)));
+        Assertions.assertEquals(10, profile.getCallCount(call(source)));
+        Assertions.assertEquals(Environment.Type.INTEGER, profile.getDominantType(call(source)));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Ast.Source source = Scripts.analyze(INPUT);
+        Path file = directory.resolve("profile");
+        profile(source).write(file);
+
+        //the ids apply to the same source parsed again
+        Ast.Source reparsed = Scripts.analyze(INPUT);
+        Profile profile = Profile.read(reparsed, file);
+        Assertions.assertEquals(5, profile.getThenCount(condition(reparsed)));
+        Assertions.assertEquals(5, profile.getElseCount(condition(reparsed)));
+        Assertions.assertEquals(10, profile.getCallCount(call(reparsed)));
+        Assertions.assertEquals(Environment.Type.INTEGER, profile.getDominantType(call(reparsed)));
+    }
+
+    @Test
+    void testMissingHeader() {
+        assertMalformed("call 0 1");
+    }
+
+    @Test
+    void testMalformedCount() {
+        assertMalformed("# plc profile v1", "call 0 many");
+    }
+
+    @Test
+    void testMissingCount() {
+        assertMalformed("# plc profile v1", "branch 0 1");
+    }
+
+    @Test
+    void testMalformedId() {
+        assertMalformed("# plc profile v1", "call");
+        assertMalformed("# plc profile v1", "call x 1");
+    }
+
+    @Test
+    void testNegativeId() {
+        assertMalformed("# plc profile v1", "call -1 1");
+    }
+
+    @Test
+    void testIdOutOfRange() {
+        assertMalformed("# plc profile v1", "call 1000 1");
+    }
+
+    @Test
+    void testUnknownEntry() {
+        assertMalformed("# plc profile v1", "loop 0 1");
+    }
+
+    private void assertMalformed(String... lines) {
+        Path file = directory.resolve("malformed");
+        Assertions.assertThrows(IOException.class, () -> {
+            Files.write(file, String.join(System.lineSeparator(), lines).getBytes(StandardCharsets.UTF_8));
+            Profile.read(Scripts.analyze(INPUT), file);
+        });
+    }
+
+    private static Profile profile(Ast.Source source) {
+        Profile profile = Profile.of(source);
+        Scripts.run(source, scope -> {
+            Interpreter interpreter = new Interpreter(scope);
+            interpreter.setProfile(profile);
+            return interpreter;
+        });
+        return profile;
+    }
+
+    private static Ast.Stmt.If condition(Ast.Source source) {
+        Ast.Stmt.While loop = (Ast.Stmt.While) source.getMethods().get(1).getStatements().get(2);
+        return (Ast.Stmt.If) loop.getStatements().get(0);
+    }
+
+    private static Ast.Expr.Function call(Ast.Source source) {
+        Ast.Expr.Binary equality = (Ast.Expr.Binary) condition(source).getCondition();
+        Ast.Expr.Binary product = (Ast.Expr.Binary) equality.getLeft();
+        return (Ast.Expr.Function) product.getLeft();
+    }
+
+}
@@ -0,0 +1,94 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the methods the {@link PurityAnalyzer} marks pure, including
+ * cycles of calls.
+ */
+final class PurityAnalyzerTests {
+
+    private static final String PARITY = String.join(System.lineSeparator(),
+            "DEF even(n: Integer): Boolean DO",
+            "    IF n == 0 DO",
+            "        RETURN TRUE;",
+            "    END",
+            "    RETURN odd(n - 1);",
+            "END",
+            "DEF odd(n: Integer): Boolean DO",
+            "    IF n == %s DO",
+            "        RETURN FALSE;",
+            "    END",
+            "    RETURN even(n - 1);",
+            "END",
+            "DEF parity(n: Integer): Boolean DO",
+            "    RETURN even(n);",
+            "END",
+            "DEF main(): Integer DO",
+            "    RETURN 0;",
+            "END"
+    );
+
+    @Test
+    void testMutualRecursion() {
+        Ast.Source source = analyze(String.format(PARITY, "0"));
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(source.getMethods().get(i).isPure(), source.getMethods().get(i).getName());
+        }
+    }
+
+    @Test
+    void testFieldReadInCycle() {
+        Ast.Source source = analyze("LET zero: Integer = 0;" + System.lineSeparator() + String.format(PARITY, "zero"));
+        //odd reads the field, so even, which calls it, and parity, which calls even, are impure too
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertFalse(source.getMethods().get(i).isPure(), source.getMethods().get(i).getName());
+        }
+    }
+
+    @Test
+    void testBuiltinCall() {
+        String input = String.join(System.lineSeparator(),
+                "DEF square(n: Integer): Integer DO",
+                "    RETURN n * n;",
+                "END",
+                "DEF log(n: Integer): Integer DO",
+                "    print(n);",
+                "    RETURN n;",
+                "END",
+                "DEF logged(n: Integer): Integer DO",
+                "    RETURN square(log(n));",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN logged(2);",
+                "END"
+        );
+        Ast.Source source = analyze(input);
+        Assertions.assertTrue(source.getMethods().get(0).isPure());
+        Assertions.assertFalse(source.getMethods().get(1).isPure());
+        Assertions.assertFalse(source.getMethods().get(2).isPure());
+    }
+
+    @Test
+    void testFieldWrite() {
+        String input = String.join(System.lineSeparator(),
+                "LET count: Integer = 0;",
+                "DEF next(n: Integer): Integer DO",
+                "    count = n;",
+                "    RETURN n + 1;",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN next(1);",
+                "END"
+        );
+        Assertions.assertFalse(analyze(input).getMethods().get(0).isPure());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source source = Scripts.analyze(input);
+        PurityAnalyzer.analyze(source);
+        return source;
+    }
+
+}
@@ -0,0 +1,81 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests of the representations chosen by the {@link RangeAnalyzer}, which runs
+ * as part of the {@link Analyzer}.
+ */
+final class RangeAnalyzerTests {
+
+    @Test
+    void testChainedDefinitionsTerminate() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET a: Integer = 0;",
+                "    LET b: Integer = 0;",
+                "    LET c: Integer = 0;",
+                "    LET d: Integer = 5;",
+                "    a = b + 1;",
+                "    b = c + 1;",
+                "    c = d + 1;",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Scripts.analyze(input));
+        List<Ast.Stmt> statements = source.getMethods().get(0).getStatements();
+        //d and c settle before widening, a is still growing and may only be widened
+        Assertions.assertEquals(RangeAnalyzer.Representation.INT, ((Ast.Stmt.Declaration) statements.get(3)).getRepresentation());
+        Assertions.assertEquals(RangeAnalyzer.Representation.INT, ((Ast.Stmt.Declaration) statements.get(2)).getRepresentation());
+        Assertions.assertNotEquals(RangeAnalyzer.Representation.BOXED, ((Ast.Stmt.Declaration) statements.get(0)).getRepresentation());
+    }
+
+    @Test
+    void testCounterBoundedByCondition() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 100 DO",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Ast.Stmt.Declaration counter = (Ast.Stmt.Declaration) source.getMethods().get(0).getStatements().get(0);
+        Assertions.assertEquals(RangeAnalyzer.Representation.INT, counter.getRepresentation());
+    }
+
+    @Test
+    void testOverflowingLongFallsBack() {
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET total: Integer = 2000000000;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 10 DO",
+                "        total = total * total;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        Ast.Source source = Scripts.analyze(input);
+        Ast.Stmt.Declaration total = (Ast.Stmt.Declaration) source.getMethods().get(0).getStatements().get(0);
+        Assertions.assertEquals(RangeAnalyzer.Representation.LONG, total.getRepresentation());
+
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(source);
+        String generated = writer.toString();
+        //the operands are widened before the checked multiply, which is recomputed exactly when it overflows
+        Assertions.assertTrue(generated.contains("Math.multiplyExact((long) "), generated);
+        Assertions.assertTrue(generated.contains("catch (ArithmeticException e)"), generated);
+        Assertions.assertTrue(generated.contains(".multiply("), generated);
+    }
+
+}
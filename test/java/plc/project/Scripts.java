@@ -0,0 +1,34 @@
+package plc.project;
+
+import java.util.function.Function;
+
+/**
+ * Helpers shared by the tests and benchmarks to analyze and run scripts with
+ * only the default builtins.
+ */
+final class Scripts {
+
+    private Scripts() {}
+
+    /**
+     * Parses and analyzes a script.
+     */
+    static Ast.Source analyze(String input) {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(source);
+        return source;
+    }
+
+    /**
+     * Runs an analyzed script with the Interpreter, returning the result of
+     * {@code main}.
+     */
+    static Environment.PlcObject run(Ast.Source source) {
+        return run(source, Interpreter::new);
+    }
+
+    static Environment.PlcObject run(Ast.Source source, Function<Scope, Interpreter> interpreter) {
+        return interpreter.apply(new Scope(null)).visit(source);
+    }
+
+}
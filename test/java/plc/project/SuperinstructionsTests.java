@@ -0,0 +1,106 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Tests of the statements {@link Superinstructions} marks and of the
+ * {@link Interpreter} executing them fused, compared with unfused runs.
+ */
+final class SuperinstructionsTests {
+
+    private static final String INPUT = String.join(System.lineSeparator(),
+            "LET limit: Integer = 5;",
+            "LET step: Integer = 2;",
+            "DEF show(n: Integer): Any DO",
+            "    RETURN print(n);",
+            "END",
+            "DEF half(n: Integer): Integer DO",
+            "    RETURN n / 2;",
+            "END",
+            "DEF main(): Integer DO",
+            "    LET total: Integer = 0;",
+            "    LET i: Integer = 0;",
+            "    WHILE i != 10 DO",
+            "        IF i < limit DO",
+            "            total = total + 3;",
+            "        ELSE",
+            "            total = total - 1;",
+            "        END",
+            "        print(i + step);",
+            "        show(total);",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN half(total);",
+            "END"
+    );
+
+    @Test
+    void testCounts() {
+        Map<Superinstructions.Pattern, Integer> counts = Superinstructions.fuse(Scripts.analyze(INPUT));
+        //i is unboxed, so only the updates of total are increments, and RETURN half(total) is a tail call
+        Assertions.assertEquals(2, counts.get(Superinstructions.Pattern.INCREMENT));
+        Assertions.assertEquals(1, counts.get(Superinstructions.Pattern.COMPARE_BRANCH));
+        Assertions.assertEquals(1, counts.get(Superinstructions.Pattern.RETURN_CALL));
+        Assertions.assertEquals(1, counts.get(Superinstructions.Pattern.PRINT_SUM));
+    }
+
+    @Test
+    void testFusedHits() {
+        Ast.Source source = Scripts.analyze(INPUT);
+        Superinstructions.fuse(source);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        Assertions.assertEquals(BigInteger.valueOf(5), interpreter.visit(source).getValue());
+
+        Map<Superinstructions.Pattern, Long> hits = interpreter.getFusedHits();
+        Assertions.assertEquals(10, hits.get(Superinstructions.Pattern.INCREMENT));
+        Assertions.assertEquals(10, hits.get(Superinstructions.Pattern.COMPARE_BRANCH));
+        Assertions.assertEquals(10, hits.get(Superinstructions.Pattern.RETURN_CALL));
+        Assertions.assertEquals(10, hits.get(Superinstructions.Pattern.PRINT_SUM));
+    }
+
+    @Test
+    void testSameAsUnfused() {
+        //the fused statements read the unboxed counter and the fields directly
+        Interpreter unfused = new Interpreter(new Scope(null));
+        Object expected = unfused.visit(Scripts.analyze(INPUT)).getValue();
+        Assertions.assertTrue(unfused.getFusedHits().values().stream().allMatch(hits -> hits == 0));
+
+        Ast.Source source = Scripts.analyze(INPUT);
+        Superinstructions.fuse(source);
+        Assertions.assertEquals(expected, Scripts.run(source).getValue());
+    }
+
+    @Test
+    void testNilLeftOperand() {
+        testSameError("n < 1");
+    }
+
+    @Test
+    void testNilRightOperand() {
+        testSameError("1 < n");
+    }
+
+    private static void testSameError(String condition) {
+
+        String input = String.join(System.lineSeparator(),
+                "DEF main(): Integer DO",
+                "    LET n: Integer;",
+                "    IF " + condition + " DO",
+                "        RETURN 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"
+        );
+        ScriptException unfused = Assertions.assertThrows(ScriptException.class, () -> Scripts.run(Scripts.analyze(input)));
+
+        Ast.Source source = Scripts.analyze(input);
+        Assertions.assertEquals(1, Superinstructions.fuse(source).get(Superinstructions.Pattern.COMPARE_BRANCH));
+        ScriptException fused = Assertions.assertThrows(ScriptException.class, () -> Scripts.run(source));
+        Assertions.assertEquals(unfused.getMessage(), fused.getMessage());
+    }
+
+}
@@ -0,0 +1,76 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the interned types, assignability and operator typing of the
+ * {@link TypeLattice}.
+ */
+final class TypeLatticeTests {
+
+    @Test
+    void testAssignable() {
+        Assertions.assertTrue(TypeLattice.isAssignable(Environment.Type.ANY, Environment.Type.NIL));
+        Assertions.assertTrue(TypeLattice.isAssignable(Environment.Type.COMPARABLE, Environment.Type.STRING));
+        Assertions.assertFalse(TypeLattice.isAssignable(Environment.Type.COMPARABLE, Environment.Type.ANY));
+        Assertions.assertFalse(TypeLattice.isAssignable(Environment.Type.COMPARABLE, Environment.Type.INTEGER_ITERABLE));
+        Assertions.assertTrue(TypeLattice.isAssignable(Environment.Type.INTEGER, Environment.Type.INTEGER));
+        Assertions.assertFalse(TypeLattice.isAssignable(Environment.Type.INTEGER, Environment.Type.DECIMAL));
+        Assertions.assertFalse(TypeLattice.isAssignable(Environment.Type.INTEGER, Environment.Type.ANY));
+    }
+
+    @Test
+    void testUnseenTarget() {
+        //interning the target replaces the table while the assignability is being checked
+        Environment.Type point = type("UnseenTarget");
+        Assertions.assertFalse(TypeLattice.isAssignable(point, Environment.Type.INTEGER));
+        Assertions.assertTrue(TypeLattice.isAssignable(point, point));
+    }
+
+    @Test
+    void testUnseenSource() {
+        Environment.Type point = type("UnseenSource");
+        Assertions.assertTrue(TypeLattice.isAssignable(Environment.Type.ANY, point));
+        Assertions.assertTrue(TypeLattice.isAssignable(Environment.Type.COMPARABLE, point));
+        Assertions.assertFalse(TypeLattice.isAssignable(Environment.Type.STRING, point));
+    }
+
+    @Test
+    void testInterning() {
+        int integer = TypeLattice.index(Environment.Type.INTEGER);
+        Environment.Type point = type("Interned");
+        int index = TypeLattice.index(point);
+        Assertions.assertEquals(index, TypeLattice.index(point));
+        //interning a new type never moves the existing ones
+        Assertions.assertEquals(integer, TypeLattice.index(Environment.Type.INTEGER));
+        Assertions.assertNotEquals(integer, index);
+    }
+
+    @Test
+    void testBinary() {
+        Assertions.assertEquals(Environment.Type.INTEGER, TypeLattice.binary("+", Environment.Type.INTEGER, Environment.Type.INTEGER));
+        Assertions.assertEquals(Environment.Type.DECIMAL, TypeLattice.binary("/", Environment.Type.DECIMAL, Environment.Type.DECIMAL));
+        Assertions.assertEquals(Environment.Type.STRING, TypeLattice.binary("+", Environment.Type.ANY, Environment.Type.STRING));
+        Assertions.assertEquals(Environment.Type.BOOLEAN, TypeLattice.binary("<", Environment.Type.CHARACTER, Environment.Type.CHARACTER));
+        Assertions.assertEquals(Environment.Type.BOOLEAN, TypeLattice.binary("AND", Environment.Type.BOOLEAN, Environment.Type.BOOLEAN));
+        Assertions.assertNull(TypeLattice.binary("-", Environment.Type.STRING, Environment.Type.STRING));
+        Assertions.assertNull(TypeLattice.binary("+", Environment.Type.INTEGER, Environment.Type.DECIMAL));
+        Assertions.assertNull(TypeLattice.binary("==", Environment.Type.INTEGER, Environment.Type.STRING));
+        Assertions.assertNull(TypeLattice.binary("OR", Environment.Type.BOOLEAN, Environment.Type.INTEGER));
+        Assertions.assertNull(TypeLattice.binary("%", Environment.Type.INTEGER, Environment.Type.INTEGER));
+    }
+
+    @Test
+    void testBinaryUnseenType() {
+        Environment.Type point = type("UnseenOperand");
+        Assertions.assertEquals(Environment.Type.STRING, TypeLattice.binary("+", point, Environment.Type.STRING));
+        Assertions.assertEquals(Environment.Type.BOOLEAN, TypeLattice.binary("==", point, point));
+        Assertions.assertNull(TypeLattice.binary("*", point, point));
+    }
+
+    private static Environment.Type type(String name) {
+        return new Environment.Type(name, name, new Scope(null));
+    }
+
+}